@@ -0,0 +1,143 @@
+package com.lvfq.code.database.sqlite;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BookDao 按 pages 过滤的查询、更新、删除都走 index_Book_pages，分页的排序不需要临时 B 树，翻到后面的页不会变慢
+ */
+@RunWith(AndroidJUnit4.class)
+public class BookDaoQueryPlanTest {
+
+    private static final String DB_NAME = "BookDaoQueryPlanTest.db";
+
+    private Context mContext;
+    private SqlDataBaseHelper mHelper;
+    private BookDao mDao;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DB_NAME);
+        mHelper = new SqlDataBaseHelper(mContext, DB_NAME, null, SqlDataBaseHelper.DATABASE_VERSION);
+        // onCreate 中会弹 Toast，需要在主线程中建表
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mHelper.getWritableDatabase();
+            }
+        });
+        mDao = new BookDao(mHelper);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            books.add(new Book("name" + i, "author" + i, i, i % 500));
+        }
+        mDao.insertAll(books);
+    }
+
+    @After
+    public void tearDown() {
+        mDao.close();
+        mHelper.close();
+        mContext.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void queryByPages_firstPage_usesIndexWithoutSort() {
+        assertUsesPagesIndex(mDao.explainQueryPlan(BookDao.queryByPagesSql(BookDao.COLUMNS_ALL, false, 20),
+                new String[]{"100"}));
+    }
+
+    @Test
+    public void queryByPages_nextPage_usesIndexWithoutSort() {
+        assertUsesPagesIndex(mDao.explainQueryPlan(BookDao.queryByPagesSql(BookDao.COLUMNS_ALL, true, 20),
+                new String[]{"200", "200", "50"}));
+    }
+
+    @Test
+    public void queryByPages_pagesThroughAllRowsInOrder() {
+        String[] columns = {"id", "pages"};
+        List<Book> all = new ArrayList<>();
+        List<Book> page = mDao.queryByPages(columns, 100, null, 64);
+        while (!page.isEmpty()) {
+            all.addAll(page);
+            page = mDao.queryByPages(columns, 100, page.get(page.size() - 1), 64);
+        }
+
+        // pages 为 101..499，每个值 2 行
+        assertEquals(399 * 2, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            Book prev = all.get(i - 1);
+            Book book = all.get(i);
+            assertTrue(prev.pages < book.pages || (prev.pages == book.pages && prev.id < book.id));
+        }
+    }
+
+    @Test
+    public void queryByPages_deepPage_isAsFastAsFirstPage() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            books.add(new Book("deep" + i, "author", i, 1000 + i));
+        }
+        mDao.insertAll(books);
+        String[] columns = {"id", "pages"};
+        Book first = books.get(0);
+        Book deep = books.get(books.size() - 100);
+
+        List<Book> page = mDao.queryByPages(columns, 100, deep, 20);
+        assertEquals(20, page.size());
+        assertEquals(books.get(books.size() - 99).id, page.get(0).id);
+
+        // 索引从 after.pages 开始查找时两页的耗时相同；从 minPages 开始扫的话 deep 要多扫过约 5 万行
+        long firstNanos = minQueryNanos(columns, first);
+        long deepNanos = minQueryNanos(columns, deep);
+        assertTrue("first=" + firstNanos + "ns, deep=" + deepNanos + "ns",
+                deepNanos < firstNanos * 4 + TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    public void updateAuthorByPages_usesIndex() {
+        assertUsesPagesIndex(mDao.explainQueryPlan(BookDao.UPDATE_AUTHOR_BY_PAGES, new String[]{"author", "100"}));
+        assertEquals(199 * 2, mDao.updateAuthorByPages("author", 300));
+    }
+
+    @Test
+    public void deleteByPages_usesIndex() {
+        assertUsesPagesIndex(mDao.explainQueryPlan(BookDao.DELETE_BY_PAGES, new String[]{"100"}));
+        assertEquals(199 * 2, mDao.deleteByPages(300));
+    }
+
+    /**
+     * 多次查询取最短的一次，排除 GC、调度的干扰
+     */
+    private long minQueryNanos(String[] columns, Book after) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            mDao.queryByPages(columns, 100, after, 20);
+            min = Math.min(min, System.nanoTime() - start);
+        }
+        return min;
+    }
+
+    private static void assertUsesPagesIndex(String plan) {
+        // 不同版本的 SQLite 输出略有不同：SEARCH TABLE Book USING INDEX ... / SEARCH Book USING COVERING INDEX ...
+        assertTrue(plan, plan.contains("INDEX index_Book_pages"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+        assertFalse(plan, plan.contains("SCAN"));
+    }
+}
@@ -0,0 +1,152 @@
+package com.lvfq.code.database.sqlite;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用旧版本的建表语句建库并写入数据，再用当前版本打开，检查数据保留、表和索引都已补齐
+ */
+@RunWith(AndroidJUnit4.class)
+public class SqlDataBaseHelperMigrationTest {
+
+    private static final String DB_NAME = "SqlDataBaseHelperMigrationTest.db";
+
+    // 版本 1、2 中的建表语句
+    private static final String CREATE_BOOK_V1 = "create table Book (" +
+            "id integer primary key autoincrement," +
+            "author text," +
+            "price real," +
+            "pages integer," +
+            "name text)";
+    private static final String CREATE_TYPE_V2 = "create table Type( id integer primary key autoincrement , type_name text , type_code)";
+
+    private Context mContext;
+    private SqlDataBaseHelper mHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (mHelper != null) {
+            mHelper.close();
+        }
+        mContext.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void migrate_1_to_current_keepsBooksAndAddsTypeAndIndex() {
+        SQLiteDatabase db = createOldDatabase(1);
+        db.execSQL(CREATE_BOOK_V1);
+        insertBooks(db);
+        db.close();
+
+        SQLiteDatabase migrated = openCurrent();
+
+        assertBooks();
+        assertTrue(exists(migrated, "table", "Type"));
+        assertTrue(exists(migrated, "index", "index_Book_pages"));
+    }
+
+    @Test
+    public void migrate_2_to_current_keepsBooksAndTypesAndAddsIndex() {
+        SQLiteDatabase db = createOldDatabase(2);
+        db.execSQL(CREATE_BOOK_V1);
+        db.execSQL(CREATE_TYPE_V2);
+        insertBooks(db);
+        db.execSQL("insert into Type (type_name, type_code) values ('novel', 1)");
+        db.close();
+
+        SQLiteDatabase migrated = openCurrent();
+
+        assertBooks();
+        Cursor cursor = migrated.rawQuery("select type_name, type_code from Type", null);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals("novel", cursor.getString(0));
+            assertEquals(1, cursor.getInt(1));
+        } finally {
+            cursor.close();
+        }
+        assertTrue(exists(migrated, "index", "index_Book_pages"));
+    }
+
+    @Test
+    public void migratedIndex_isUsedByPagesQueries() {
+        SQLiteDatabase db = createOldDatabase(1);
+        db.execSQL(CREATE_BOOK_V1);
+        insertBooks(db);
+        db.close();
+
+        openCurrent();
+        BookDao dao = new BookDao(mHelper);
+        try {
+            assertTrue(dao.explainQueryPlan(BookDao.DELETE_BY_PAGES, new String[]{"100"})
+                    .contains("INDEX index_Book_pages"));
+        } finally {
+            dao.close();
+        }
+    }
+
+    /**
+     * 直接用 SQLiteDatabase 建库并设置版本号，不经过 SqlDataBaseHelper
+     */
+    private SQLiteDatabase createOldDatabase(int version) {
+        File file = mContext.getDatabasePath(DB_NAME);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        db.setVersion(version);
+        return db;
+    }
+
+    private SQLiteDatabase openCurrent() {
+        mHelper = new SqlDataBaseHelper(mContext, DB_NAME, null, SqlDataBaseHelper.DATABASE_VERSION);
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        assertEquals(SqlDataBaseHelper.DATABASE_VERSION, db.getVersion());
+        return db;
+    }
+
+    private static void insertBooks(SQLiteDatabase db) {
+        db.execSQL("insert into Book (name, author, price, pages) values ('Java', 'author1', 59.5, 450)");
+        db.execSQL("insert into Book (name, author, price, pages) values ('Android', 'author2', 79.0, 620)");
+    }
+
+    private void assertBooks() {
+        List<Book> books = new BookDao(mHelper).queryPage(BookDao.COLUMNS_ALL, 0, 10);
+        assertEquals(2, books.size());
+        assertEquals("Java", books.get(0).name);
+        assertEquals("author1", books.get(0).author);
+        assertEquals(59.5, books.get(0).price, 0);
+        assertEquals(450, books.get(0).pages);
+        assertEquals("Android", books.get(1).name);
+        assertEquals(620, books.get(1).pages);
+    }
+
+    private static boolean exists(SQLiteDatabase db, String type, String name) {
+        Cursor cursor = db.rawQuery("select 1 from sqlite_master where type = ? and name = ?",
+                new String[]{type, name});
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.lvfq.code.dynamic.view;
+
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.widget.ImageView;
+import android.widget.ImageView.ScaleType;
+
+import com.lvfq.library.utils.LvDPUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MultiImageView 1、4、9 张图时的测量、摆放和分配次数，以及 child 复用时的显示方式。
+ * Glide 的 into 和 clear 需要在主线程中调用，测试都在主线程中执行
+ */
+@RunWith(AndroidJUnit4.class)
+public class MultiImageViewTest {
+
+    private static final int WIDTH = 900;
+    private static final int PASSES = 100;
+
+    private MultiImageView mView;
+    private int mGap;
+
+    @Before
+    public void setUp() {
+        mView = new MultiImageView(InstrumentationRegistry.getTargetContext());
+        mGap = LvDPUtil.dip2px(3);
+    }
+
+    @Test
+    @UiThreadTest
+    public void oneImage_usesTwoThirdsOfWidth() {
+        bind(1);
+        measureAndLayout();
+
+        View child = mView.getChildAt(0);
+        assertEquals(WIDTH * 2 / 3, child.getWidth());
+        assertTrue(child.getHeight() <= WIDTH * 2 / 3);
+        assertEquals(child.getHeight(), mView.getMeasuredHeight());
+        assertEquals(ScaleType.FIT_START, ((ImageView) child).getScaleType());
+    }
+
+    @Test
+    @UiThreadTest
+    public void fourImages_layOutTwoByTwo() {
+        bind(4);
+        measureAndLayout();
+        assertGrid(4, 2);
+    }
+
+    @Test
+    @UiThreadTest
+    public void nineImages_layOutThreeByThree() {
+        bind(9);
+        measureAndLayout();
+        assertGrid(9, 3);
+    }
+
+    @Test
+    @UiThreadTest
+    public void measureAndLayout_doNotAllocate() {
+        for (int count : new int[]{1, 4, 9}) {
+            bind(count);
+            // 先跑一遍，让 measure cache 等分配好
+            measureAndLayout();
+            measureAndLayout();
+
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+            for (int i = 0; i < PASSES; i++) {
+                measureAndLayout();
+            }
+            Debug.stopAllocCounting();
+            int allocs = Debug.getThreadAllocCount();
+            assertTrue(count + " images: " + allocs + " allocations in " + PASSES + " passes",
+                    allocs < PASSES);
+        }
+    }
+
+    @Test
+    @UiThreadTest
+    public void singleThenEmptyThenGrid_restoresCenterCrop() {
+        bind(1);
+        bind(0);
+        bind(4);
+        measureAndLayout();
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(ScaleType.CENTER_CROP, ((ImageView) mView.getChildAt(i)).getScaleType());
+        }
+        assertGrid(4, 2);
+    }
+
+    @Test
+    @UiThreadTest
+    public void rebind_reusesChildren() {
+        bind(9);
+        View first = mView.getChildAt(0);
+        bind(4);
+        bind(9);
+
+        assertEquals(9, mView.getChildCount());
+        assertTrue(first == mView.getChildAt(0));
+        for (int i = 0; i < 9; i++) {
+            assertEquals(View.VISIBLE, mView.getChildAt(i).getVisibility());
+        }
+    }
+
+    private void bind(int count) {
+        List<String> urls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            urls.add("file:///android_asset/image" + i + ".jpg");
+        }
+        mView.setList(count == 0 ? Collections.<String>emptyList() : urls);
+    }
+
+    private void measureAndLayout() {
+        mView.forceLayout();
+        mView.measure(MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        mView.layout(0, 0, mView.getMeasuredWidth(), mView.getMeasuredHeight());
+    }
+
+    private void assertGrid(int count, int columns) {
+        int cell = (WIDTH - mGap * 2) / 3;
+        int rows = (count + columns - 1) / columns;
+        assertEquals(rows * cell + (rows - 1) * mGap, mView.getMeasuredHeight());
+        for (int i = 0; i < count; i++) {
+            View child = mView.getChildAt(i);
+            assertEquals(View.VISIBLE, child.getVisibility());
+            assertEquals((i % columns) * (cell + mGap), child.getLeft());
+            assertEquals((i / columns) * (cell + mGap), child.getTop());
+            assertEquals(cell, child.getWidth());
+            assertEquals(cell, child.getHeight());
+        }
+        for (int i = count; i < mView.getChildCount(); i++) {
+            assertEquals(View.GONE, mView.getChildAt(i).getVisibility());
+        }
+    }
+}
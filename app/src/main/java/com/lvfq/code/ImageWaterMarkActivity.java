@@ -18,11 +18,14 @@ import android.util.TypedValue;
 import android.view.View;
 import android.widget.ImageView;
 
+import com.lvfq.code.designpatterns.imageload.BitmapPool;
+import com.lvfq.code.designpatterns.imageload.CloseUtils;
 import com.lvfq.code.util.FileUtils;
 import com.lvfq.code.util.ImageUtils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
 
 /**
  * ImageWaterMarkActivity
@@ -68,7 +71,7 @@ public class ImageWaterMarkActivity extends FragmentActivity {
             int angle = FileUtils.readPictureDegree(imgPath.getEncodedPath());
             Log.i("lfq", "angle = " + angle);
             try {
-                Bitmap bitmap = createBitmap(BitmapFactory.decodeStream(getContentResolver().openInputStream(imgPath)), "添加的水印文字");
+                Bitmap bitmap = createBitmap(decodeImage(imgPath), "添加的水印文字");
                 ImageUtils.saveFile(bitmap, imgPath.getEncodedPath());
                 Bitmap bitmap1 = FileUtils.ratingImage(imgPath.getEncodedPath(), bitmap);
 
@@ -83,6 +86,38 @@ public class ImageWaterMarkActivity extends FragmentActivity {
         }
     }
 
+    /**
+     * 解码拍摄的图片，优先复用 BitmapPool 中的 Bitmap
+     *
+     * @param uri
+     * @return
+     * @throws FileNotFoundException
+     */
+    private Bitmap decodeImage(Uri uri) throws FileNotFoundException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(uri, options);
+        options.inJustDecodeBounds = false;
+        BitmapPool pool = BitmapPool.getInstance();
+        if (pool.applyInBitmap(options)) {
+            try {
+                return decodeStream(uri, options);
+            } catch (IllegalArgumentException e) {
+                pool.releaseInBitmap(options);
+            }
+        }
+        return decodeStream(uri, options);
+    }
+
+    private Bitmap decodeStream(Uri uri, BitmapFactory.Options options) throws FileNotFoundException {
+        InputStream inputStream = getContentResolver().openInputStream(uri);
+        try {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } finally {
+            CloseUtils.close(inputStream);
+        }
+    }
+
     /**
      * @param src   添加水印的图片
      * @param title 水印文字
@@ -96,7 +131,12 @@ public class ImageWaterMarkActivity extends FragmentActivity {
         // 获取原始图片的宽与高
         int w = bitmap.getWidth();
         int h = bitmap.getHeight();
-        Bitmap newBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap newBitmap = BitmapPool.getInstance().get(w, h, Bitmap.Config.ARGB_8888);
+        if (newBitmap != null) {
+            newBitmap.eraseColor(Color.TRANSPARENT);
+        } else {
+            newBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        }
         Canvas mCanvas = new Canvas(newBitmap);
         // 往位图中开始画入src原始图片
         mCanvas.drawBitmap(bitmap, 0, 0, null);
@@ -123,7 +163,12 @@ public class ImageWaterMarkActivity extends FragmentActivity {
         }
         mCanvas.save(Canvas.ALL_SAVE_FLAG);
         mCanvas.restore();
-        bitmap.recycle();
+        // 原图可复用时放回复用池，否则直接回收
+        if (bitmap.isMutable() && BitmapPool.isSupported()) {
+            BitmapPool.getInstance().put(bitmap);
+        } else {
+            bitmap.recycle();
+        }
         return newBitmap;
     }
 
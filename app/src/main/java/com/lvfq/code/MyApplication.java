@@ -2,6 +2,7 @@ package com.lvfq.code;
 
 import android.support.multidex.MultiDexApplication;
 
+import com.lvfq.code.http.OkHttpProvider;
 import com.lvfq.library.utils.LvUtils;
 
 /**
@@ -21,5 +22,6 @@ public class MyApplication extends MultiDexApplication {
         super.onCreate();
 
         LvUtils.init(this).initLog("lfq", true);
+        OkHttpProvider.init(this);
     }
 }
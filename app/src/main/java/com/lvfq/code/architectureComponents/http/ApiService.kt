@@ -4,6 +4,7 @@ import com.lvfq.code.architectureComponents.bean.FreshNewsBean
 import io.reactivex.Observable
 import retrofit2.http.GET
 import retrofit2.http.QueryMap
+import retrofit2.http.Streaming
 import retrofit2.http.Url
 
 
@@ -22,6 +23,15 @@ interface ApiService {
                      @QueryMap map: Map<String, @JvmSuppressWildcards Any>
     ): Observable<FreshNewsBean>
 
+    /**
+     * 流式读取，posts 由 FreshNewsReader 分批解析，读完后需要 close
+     */
+    @Streaming
+    @GET
+    fun getFreshNewsStream(@Url url: String,
+                           @QueryMap map: Map<String, @JvmSuppressWildcards Any>
+    ): Observable<FreshNewsReader>
+
 
 //    @GET
 //    fun getDetailData(@Url url: String, @Query("oxwlxojflwblxbsapi") oxwlxojflwblxbsapi: String,
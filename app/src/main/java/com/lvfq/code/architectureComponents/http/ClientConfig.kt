@@ -1,5 +1,9 @@
 package com.lvfq.code.architectureComponents.http
 
+import com.lvfq.code.architectureComponents.Constants
+import com.lvfq.code.http.CoalescingInterceptor
+import com.lvfq.code.http.HttpCacheInterceptor
+import com.lvfq.code.http.OkHttpProvider
 import dagger.Module
 import dagger.Provides
 import okhttp3.HttpUrl
@@ -27,12 +31,24 @@ class ClientConfig {
     @Singleton
     @Provides
     fun provideClientBuilder(): OkHttpClient.Builder {
-        return OkHttpClient.Builder()
+        // 从全局 client 派生，共用 Dispatcher 和连接池
+        return OkHttpProvider.newBuilder()
                 .connectTimeout(TIME_OUT, TimeUnit.SECONDS)
                 .readTimeout(TIME_OUT, TimeUnit.SECONDS)
     }
 
 
+    /**
+     * 接口缓存策略：列表缓存 5 分钟，过期 30 分钟内先显示缓存再后台更新，离线时 7 天内的缓存仍可显示
+     */
+    @Singleton
+    @Provides
+    fun provideCacheInterceptor(): HttpCacheInterceptor {
+        return HttpCacheInterceptor()
+                .policy(Constants.sApi, 5 * 60, 30 * 60, 7 * 24 * 60 * 60)
+    }
+
+
     /**
      * 生成 HttpUrl 用于 Retfofit 添加
      */
@@ -42,14 +58,26 @@ class ClientConfig {
         return HttpUrl.parse("http://i.jandan.net/") ?: throw IllegalAccessException(" BuildConfig.HttpUrl is Null, Configure HttpUrl in app build.gradle please")
     }
 
+    /**
+     * 合并同时发出的相同请求，例如 ActivityModule.sendRequset 重复调用
+     */
+    @Singleton
+    @Provides
+    fun provideCoalescingInterceptor(): CoalescingInterceptor {
+        return CoalescingInterceptor()
+    }
+
     /**
      * 添加过滤器
      */
     @Singleton
     @Provides
-    fun provideInterceptors(): ArrayList<Interceptor> {
+    fun provideInterceptors(coalescingInterceptor: CoalescingInterceptor): ArrayList<Interceptor> {
         val interceptors = ArrayList<Interceptor>()
 
+        // 放在最前面，合并之后的请求才会经过后面的拦截器和缓存
+        interceptors.add(coalescingInterceptor)
+
         interceptors.add(Interceptor { c ->
             // 添加公共参数
             val request = c.request()
@@ -1,5 +1,6 @@
 package com.lvfq.code.architectureComponents.http
 
+import com.lvfq.code.http.HttpCacheInterceptor
 import dagger.Module
 import dagger.Provides
 import okhttp3.HttpUrl
@@ -32,6 +33,8 @@ class ClientModule {
     fun providesRetrofit(builder: Retrofit.Builder, url: HttpUrl, client: OkHttpClient): Retrofit {
 
         return builder.baseUrl(url)
+                // 需要在 Gson 之前，FreshNewsBean 使用流式解析
+                .addConverterFactory(FreshNewsConverterFactory.create())
                 .addConverterFactory(GsonConverterFactory.create())
 //                .addConverterFactory(ScalarsConverterFactory.create())
                 .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
@@ -45,11 +48,12 @@ class ClientModule {
      */
     @Singleton
     @Provides
-    fun provideOkHttpClient(builder: OkHttpClient.Builder, interceptors: ArrayList<Interceptor>): OkHttpClient {
+    fun provideOkHttpClient(builder: OkHttpClient.Builder, interceptors: ArrayList<Interceptor>,
+                            cacheInterceptor: HttpCacheInterceptor): OkHttpClient {
 
         interceptors.map { builder.interceptors().add(it) }
 
-        return builder.build()
+        return cacheInterceptor.install(builder)
     }
 
 
@@ -0,0 +1,34 @@
+package com.lvfq.code.architectureComponents.http
+
+import com.lvfq.code.architectureComponents.bean.FreshNewsBean
+import okhttp3.ResponseBody
+import retrofit2.Converter
+import retrofit2.Retrofit
+import java.lang.reflect.Type
+
+/**
+ * FreshNewsConverterFactory
+ * @date 2026/10/17
+ * @desc :
+ *  FreshNewsBean / FreshNewsReader 使用流式解析，需要添加在 GsonConverterFactory 之前，其他类型仍然交给 Gson。
+ *  返回 FreshNewsReader 时不关闭响应，由调用方边读边用，读完后 close。
+ */
+class FreshNewsConverterFactory private constructor() : Converter.Factory() {
+
+    companion object {
+        fun create(): FreshNewsConverterFactory {
+            return FreshNewsConverterFactory()
+        }
+    }
+
+    override fun responseBodyConverter(type: Type, annotations: Array<out Annotation>,
+                                       retrofit: Retrofit): Converter<ResponseBody, *>? {
+        return when (type) {
+            FreshNewsReader::class.java -> Converter<ResponseBody, FreshNewsReader> { FreshNewsReader(it) }
+            FreshNewsBean::class.java -> Converter<ResponseBody, FreshNewsBean> { body ->
+                FreshNewsReader(body).use { it.readAll() }
+            }
+            else -> null
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.lvfq.code.architectureComponents.http
+
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.lvfq.code.architectureComponents.bean.AuthorBean
+import com.lvfq.code.architectureComponents.bean.FreshNewsBean
+import com.lvfq.code.architectureComponents.bean.PostsBean
+import okhttp3.ResponseBody
+import java.io.Closeable
+
+/**
+ * FreshNewsReader
+ * @date 2026/10/17
+ * @desc :
+ *  按 JsonReader 流式读取 FreshNewsBean，不先把整个响应解析成对象树。
+ *  posts 通过 nextChunk 分批读取，每批解析完就可以交给界面显示；
+ *  PostsBean / AuthorBean 中没有的字段（custom_fields、tags 等）直接 skipValue，不会生成对象。
+ *  读完或者不再需要时必须 close，否则连接不会释放。
+ */
+class FreshNewsReader(private val body: ResponseBody) : Closeable {
+
+    companion object {
+        private const val STATE_START = 0
+        private const val STATE_IN_POSTS = 1
+        private const val STATE_DONE = 2
+
+        const val DEFAULT_CHUNK_SIZE = 8
+    }
+
+    private val reader = JsonReader(body.charStream())
+    private var state = STATE_START
+
+    // posts 之外的字段，出现在 posts 之后时要读完 posts 才有值
+    var countTotal = 0
+        private set
+    var pages = 0
+        private set
+    var count = 0
+        private set
+    var status = ""
+        private set
+
+    /**
+     * 读取下一批 posts，最多 size 条，没有更多时返回 null
+     */
+    fun nextChunk(size: Int = DEFAULT_CHUNK_SIZE): ArrayList<PostsBean>? {
+        if (!moveToPosts()) {
+            return null
+        }
+        val chunk = ArrayList<PostsBean>(size)
+        while (chunk.size < size && reader.hasNext()) {
+            chunk.add(readPost())
+        }
+        if (!reader.hasNext()) {
+            reader.endArray()
+            readFields()
+        }
+        return if (chunk.isEmpty()) null else chunk
+    }
+
+    /**
+     * 一次读完，给 Observable<FreshNewsBean> 使用
+     */
+    fun readAll(): FreshNewsBean {
+        val posts = ArrayList<PostsBean>()
+        while (true) {
+            posts.addAll(nextChunk() ?: break)
+        }
+        return FreshNewsBean(countTotal, pages, count, status, posts)
+    }
+
+    override fun close() {
+        reader.close()
+        body.close()
+    }
+
+    /**
+     * 移动到 posts 数组中，已经读完时返回 false
+     */
+    private fun moveToPosts(): Boolean {
+        if (state == STATE_START) {
+            reader.beginObject()
+            readFields()
+        }
+        return state == STATE_IN_POSTS
+    }
+
+    /**
+     * 读取顶层字段，遇到 posts 数组时停下
+     */
+    private fun readFields() {
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "count_total" -> countTotal = readInt()
+                "pages" -> pages = readInt()
+                "count" -> count = readInt()
+                "status" -> status = readString()
+                "posts" -> if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray()
+                    state = STATE_IN_POSTS
+                    return
+                } else {
+                    reader.skipValue()
+                }
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        state = STATE_DONE
+    }
+
+    private fun readPost(): PostsBean {
+        var id = 0
+        var url = ""
+        var title = ""
+        var excerpt = ""
+        var date = ""
+        var author: AuthorBean? = null
+        var commentCount = 0
+        var commentStatus = ""
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "id" -> id = readInt()
+                "url" -> url = readString()
+                "title" -> title = readString()
+                "excerpt" -> excerpt = readString()
+                "date" -> date = readString()
+                "author" -> author = readAuthor()
+                "comment_count" -> commentCount = readInt()
+                "comment_status" -> commentStatus = readString()
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return PostsBean(id, url, title, excerpt, date,
+                author ?: AuthorBean(0, "", "", "", "", "", "", ""), commentCount, commentStatus)
+    }
+
+    private fun readAuthor(): AuthorBean? {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue()
+            return null
+        }
+        var id = 0
+        var slug = ""
+        var name = ""
+        var firstName = ""
+        var lastName = ""
+        var nickname = ""
+        var url = ""
+        var description = ""
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "id" -> id = readInt()
+                "slug" -> slug = readString()
+                "name" -> name = readString()
+                "first_name" -> firstName = readString()
+                "last_name" -> lastName = readString()
+                "nickname" -> nickname = readString()
+                "url" -> url = readString()
+                "description" -> description = readString()
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return AuthorBean(id, slug, name, firstName, lastName, nickname, url, description)
+    }
+
+    private fun readString(): String {
+        return when (reader.peek()) {
+            JsonToken.NULL -> {
+                reader.nextNull()
+                ""
+            }
+            JsonToken.STRING, JsonToken.NUMBER -> reader.nextString()
+            else -> {
+                reader.skipValue()
+                ""
+            }
+        }
+    }
+
+    private fun readInt(): Int {
+        return when (reader.peek()) {
+            // JsonReader 的 nextInt 也能读取 "12" 这样的字符串
+            JsonToken.NUMBER, JsonToken.STRING -> try {
+                reader.nextInt()
+            } catch (e: NumberFormatException) {
+                0
+            }
+            else -> {
+                reader.skipValue()
+                0
+            }
+        }
+    }
+}
@@ -39,36 +39,51 @@ abstract class NetworkBoundResource<ResultType, RequestType> @MainThread constru
     private val result = MediatorLiveData<ResultType>()
 
     init {
-        fetchFromNetwork()
+        val dbSource = loadFromDb()
+        if (dbSource == null) {
+            fetchFromNetwork(null)
+        } else {
+            // 先显示本地数据，再由 shouldFetch 决定是否请求网络
+            result.addSource(dbSource) { data ->
+                result.removeSource(dbSource)
+                result.addSource(dbSource) { newData -> result.value = newData }
+                if (shouldFetch(data)) {
+                    fetchFromNetwork(data)
+                }
+            }
+        }
     }
 
-    private fun fetchFromNetwork() {
+    /**
+     * @param cached 请求前的本地数据，请求结束前每一批网络数据都先经过 mergeChunk
+     */
+    private fun fetchFromNetwork(cached: ResultType?) {
 
         val requestObservable: Observable<RequestType> = createCall()
+        // 最后一批是完整结果，只保存这一次
+        var last: ResultType? = null
 
         requestObservable
                 .subscribeOn(Schedulers.io())
-                .flatMap { it ->
-                    val rt: ResultType? = processResponse(it)
-                    if (null == rt) {
-                        Observable.empty<ResultType>()
-                    } else {
-                        // 执行保存数据操作
-                        saveCallResult(rt)
-
-                        Observable.just(rt)
-                    }
-
+                .flatMap { it -> processResponseChunks(it) }
+                .doOnNext { rt -> last = rt }
+                .doOnComplete {
+                    // 执行保存数据操作，保存后 loadFromDb 的 LiveData 会再回调一次
+                    last?.let { saveCallResult(it) }
                 }
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribeWith(object : DisposableObserver<ResultType>() {
 
                     override fun onComplete() {
+                        onFetchSucceeded(last)
                         onFinally()
                     }
 
-                    override fun onNext(res: ResultType?) {
-                        result.value = res
+                    override fun onNext(res: ResultType) {
+                        val value = mergeChunk(cached, res)
+                        if (value !== result.value) {
+                            result.value = value
+                        }
                     }
 
                     override fun onError(t: Throwable?) {
@@ -76,6 +91,7 @@ abstract class NetworkBoundResource<ResultType, RequestType> @MainThread constru
                             Log.d("onError", t.message)
                         }
 
+                        // 已经显示的本地数据保留
                         onFetchFailed()
                         onFinally()
                     }
@@ -107,12 +123,62 @@ abstract class NetworkBoundResource<ResultType, RequestType> @MainThread constru
 
 
     /**
-     * 将数据保存到数据库
+     * 将 RequestType 转换为一个或多个 ResultType，默认只调用一次 processResponse。
+     * 数据量大时可以重写，边解析边发送，界面先显示已经解析好的部分。
+     * 每一批都必须是到目前为止的完整结果（而不是增量），都会回调给 LiveData，只有最后一批会调用 saveCallResult
+     */
+    @WorkerThread
+    protected open fun processResponseChunks(response: RequestType): Observable<ResultType> {
+        val rt: ResultType? = processResponse(response)
+        return if (null == rt) Observable.empty<ResultType>() else Observable.just(rt)
+    }
+
+    /**
+     * 网络数据的一批回调给 LiveData 之前调用，返回实际回调的数据，默认直接使用这一批。
+     * 分批回调时前几批可能比本地数据少，可以重写后先保留本地数据，请求结束保存后数据库会回调完整结果
+     *
+     * @param cached 请求前的本地数据，没有本地数据时为 null
+     */
+    @MainThread
+    protected open fun mergeChunk(cached: ResultType?, chunk: ResultType): ResultType {
+        return chunk
+    }
+
+    /**
+     * 请求成功结束时执行，在 onFinally 之前
+     *
+     * @param item 最后一批网络数据，也就是保存到数据库的数据；响应中没有数据时为 null
+     */
+    @MainThread
+    protected open fun onFetchSucceeded(item: ResultType?) {
+    }
+
+    /**
+     * 将数据保存到数据库，请求完成后调用一次
      */
     @WorkerThread
     protected open fun saveCallResult(item: ResultType) {
     }
 
+    /**
+     * 本地数据，返回 null 时只请求网络。
+     * 第一次回调后调用 shouldFetch，之后数据库的每次变化（包括 saveCallResult）都会回调给 LiveData
+     */
+    @MainThread
+    protected open fun loadFromDb(): LiveData<ResultType>? {
+        return null
+    }
+
+    /**
+     * 是否需要请求网络
+     *
+     * @param data 本地数据
+     */
+    @MainThread
+    protected open fun shouldFetch(data: ResultType?): Boolean {
+        return true
+    }
+
     /**
      * 请求错误处理
      */
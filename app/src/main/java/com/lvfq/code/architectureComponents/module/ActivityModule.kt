@@ -1,12 +1,13 @@
 package com.lvfq.code.architectureComponents.module
 
 import android.arch.lifecycle.LiveData
+import android.arch.lifecycle.MediatorLiveData
 import android.arch.lifecycle.MutableLiveData
-import android.arch.lifecycle.Transformations
 import android.arch.lifecycle.ViewModel
 import com.lvfq.code.architectureComponents.bean.PostsBean
 import com.lvfq.code.architectureComponents.repository.ListRepository
 import com.lvfq.library.utils.LvLog
+import java.util.TreeMap
 import javax.inject.Inject
 
 /**
@@ -18,28 +19,171 @@ import javax.inject.Inject
  *
  */
 class ActivityModule @Inject constructor(val repository: ListRepository) : ViewModel() {
-    private var datas: LiveData<ArrayList<PostsBean>>
-    private val page = MutableLiveData<Int>()
+
+    companion object {
+        /**
+         * 内存中最多保留的页数，超出时丢掉离当前请求最远的一页，长列表一直往下滑内存也不会增长。
+         * 丢掉的页往回滑时重新从本地缓存读取
+         */
+        const val MAX_CACHED_PAGES = 5
+    }
+
+    private val datas = MediatorLiveData<ArrayList<PostsBean>>()
+    // 内存中的页，每页的 LiveData 会先回调本地缓存，需要时再回调网络数据
+    private val pages = TreeMap<Int, ArrayList<PostsBean>>()
+    private val sources = TreeMap<Int, LiveData<ArrayList<PostsBean>>>()
+    // 每页网络请求的结果，还没有结束或者不需要请求网络的页没有记录
+    private val fetchResults = HashMap<Int, FetchResult>()
+    private val loadState = MutableLiveData<LoadState>()
+
+    private enum class FetchResult {
+        LOADED, EMPTY, FAILED
+    }
 
     init {
         LvLog.i("------------init")
-        datas = Transformations.switchMap(page) { input -> repository.getResult(configParams(input)) }
     }
 
+    /**
+     * 同一页只请求一次，直到被 trim 丢掉
+     */
     fun sendRequset(pageNum: Int) {
-//        datas = repository.getResult()
         LvLog.i("------------sendRequest")
-        page.value = pageNum
+        if (pageNum < 1 || sources.containsKey(pageNum)) {
+            return
+        }
+        lateinit var source: LiveData<ArrayList<PostsBean>>
+        source = repository.getResult(pageNum, configParams(pageNum)) { posts ->
+            // 请求期间这一页可能已经被 trim 丢掉又重新请求
+            if (sources[pageNum] === source) {
+                onFetched(pageNum, posts)
+            }
+        }
+        fetchResults.remove(pageNum)
+        sources[pageNum] = source
+        trim(pageNum)
+        datas.addSource(source) { posts ->
+            if (null != posts) {
+                pages[pageNum] = posts
+                datas.value = merge()
+            }
+        }
+    }
+
+    /**
+     * loadNext 和 getLoadState 的结果，调用方据此通知 adapter 结束加载更多的状态
+     */
+    enum class LoadState {
+        // 发出了新的请求，数据回调时结束
+        REQUESTED,
+        // 最后一页还没有数据，网络请求还没有结束，没有发出新的请求
+        LOADING,
+        // 最后一页的网络请求成功并且为空，没有更多
+        END,
+        // 最后一页的网络请求失败并且没有本地缓存，下次 loadNext 时重新请求
+        FAILED
+    }
+
+    /**
+     * 加载内存中最后一页的下一页。
+     * 没有缓存的页会先回调一个空列表，所以最后一页为空时要等网络请求的结果：
+     * 还没有结束时不重复请求，成功并且为空时认为没有更多，失败时重新请求这一页
+     */
+    fun loadNext(): LoadState {
+        if (sources.isEmpty()) {
+            sendRequset(1)
+            return LoadState.REQUESTED
+        }
+        val last = sources.lastKey()
+        val result = fetchResults[last]
+        if (pages[last]?.isNotEmpty() == true || result == FetchResult.LOADED) {
+            sendRequset(last + 1)
+            return LoadState.REQUESTED
+        }
+        return when (result) {
+            FetchResult.EMPTY -> LoadState.END
+            FetchResult.FAILED -> {
+                // 清掉之前的 FAILED，重新订阅时不会再显示失败
+                loadState.value = null
+                drop(last)
+                sendRequset(last)
+                LoadState.REQUESTED
+            }
+            else -> LoadState.LOADING
+        }
+    }
+
+    /**
+     * 最后一页的网络请求结束但是没有数据时回调 END 或者 FAILED，有数据时由 getDatas 回调
+     */
+    fun getLoadState(): LiveData<LoadState> {
+        return loadState
+    }
+
+    private fun onFetched(pageNum: Int, posts: ArrayList<PostsBean>?) {
+        fetchResults[pageNum] = when {
+            posts == null -> FetchResult.FAILED
+            posts.isEmpty() -> FetchResult.EMPTY
+            else -> FetchResult.LOADED
+        }
+        if (pageNum == sources.lastKey() && pages[pageNum]?.isNotEmpty() != true) {
+            when {
+                posts == null -> loadState.value = LoadState.FAILED
+                posts.isEmpty() -> loadState.value = LoadState.END
+            }
+        }
+    }
+
+    /**
+     * 往回滑时加载之前被 trim 丢掉的页
+     */
+    fun loadPrevious() {
+        if (sources.isEmpty()) {
+            return
+        }
+        val first = sources.firstKey()
+        if (first > 1 && pages.containsKey(first)) {
+            sendRequset(first - 1)
+        }
+    }
+
+    /**
+     * 超出 MAX_CACHED_PAGES 时丢掉离 pageNum 最远的页
+     */
+    private fun trim(pageNum: Int) {
+        while (sources.size > MAX_CACHED_PAGES) {
+            val first = sources.firstKey()
+            val last = sources.lastKey()
+            drop(if (pageNum - first >= last - pageNum) first else last)
+        }
+    }
+
+    private fun drop(pageNum: Int) {
+        sources.remove(pageNum)?.let { datas.removeSource(it) }
+        fetchResults.remove(pageNum)
+        if (null != pages.remove(pageNum)) {
+            datas.value = merge()
+        }
     }
 
     fun remove(bean: PostsBean) {
+        pages.values.forEach { it.remove(bean) }
         datas.value?.remove(bean)
     }
 
+    /**
+     * 每次回调的是所有已加载页按页码顺序合并后的完整列表
+     */
     fun getDatas(): LiveData<ArrayList<PostsBean>> {
         return datas
     }
 
+    private fun merge(): ArrayList<PostsBean> {
+        val list = ArrayList<PostsBean>()
+        pages.values.forEach { list.addAll(it) }
+        return list
+    }
+
     private fun configParams(pageNum: Int): HashMap<String, Any> {
         LvLog.i("------------configParams")
         return hashMapOf("oxwlxojflwblxbsapi" to "get_recent_posts",
@@ -0,0 +1,29 @@
+package com.lvfq.code.architectureComponents.repository
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * FreshnessPolicy
+ * @date 2026/10/17
+ * @desc :
+ *  本地数据是否需要从网络刷新
+ */
+interface FreshnessPolicy {
+
+    /**
+     * @param updatedAt 本地数据写入的时间，没有本地数据时为 0
+     */
+    fun shouldFetch(updatedAt: Long): Boolean
+}
+
+/**
+ * 超过 maxAge 后刷新
+ */
+class MaxAgeFreshnessPolicy(maxAge: Long, unit: TimeUnit) : FreshnessPolicy {
+
+    private val maxAgeMs = unit.toMillis(maxAge)
+
+    override fun shouldFetch(updatedAt: Long): Boolean {
+        return updatedAt <= 0 || System.currentTimeMillis() - updatedAt > maxAgeMs
+    }
+}
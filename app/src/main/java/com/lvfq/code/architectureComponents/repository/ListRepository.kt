@@ -2,11 +2,12 @@ package com.lvfq.code.architectureComponents.repository
 
 import android.arch.lifecycle.LiveData
 import com.lvfq.code.architectureComponents.Constants
-import com.lvfq.code.architectureComponents.bean.FreshNewsBean
 import com.lvfq.code.architectureComponents.bean.PostsBean
 import com.lvfq.code.architectureComponents.http.ApiService
+import com.lvfq.code.architectureComponents.http.FreshNewsReader
 import com.lvfq.code.architectureComponents.http.NetworkBoundResource
 import io.reactivex.Observable
+import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 
 /**
@@ -17,7 +18,12 @@ import javax.inject.Inject
  * @desc :
  *
  */
-class ListRepository @Inject constructor(val apiService: ApiService) {
+class ListRepository @Inject constructor(val apiService: ApiService, val store: PostsStore) {
+
+    /**
+     * 本地数据超过这个时间才请求网络
+     */
+    var freshnessPolicy: FreshnessPolicy = MaxAgeFreshnessPolicy(5, TimeUnit.MINUTES)
 
 //    fun getResult(): MutableLiveData<ArrayList<PostsBean>> {
 //        val datas = MutableLiveData<ArrayList<PostsBean>>()
@@ -44,21 +50,64 @@ class ListRepository @Inject constructor(val apiService: ApiService) {
 //        return datas
 //    }
 
-    fun getResult(params: HashMap<String, Any>): LiveData<ArrayList<PostsBean>> {
-        return object : NetworkBoundResource<ArrayList<PostsBean>, FreshNewsBean>() {
-            override fun createCall(): Observable<FreshNewsBean> {
-                return apiService.getFreshNews(Constants.sApi, params)
+    /**
+     * 返回的 LiveData 每次回调的都是第 page 页目前的完整 posts：
+     * 先回调本地缓存（没有缓存时为空列表），需要刷新时网络数据每解析完一批（FreshNewsReader.DEFAULT_CHUNK_SIZE 条）回调一次，
+     * 保存后再回调一次。解析出的数据比本地缓存少时先保留缓存，不会回调一个变短的列表。
+     *
+     * @param onFetched 网络请求结束时在主线程回调，成功时为网络返回的完整 posts（可能为空），失败时为 null；
+     * 本地缓存足够新、不请求网络时不回调
+     */
+    fun getResult(page: Int, params: HashMap<String, Any>,
+                  onFetched: ((ArrayList<PostsBean>?) -> Unit)? = null): LiveData<ArrayList<PostsBean>> {
+        return object : NetworkBoundResource<ArrayList<PostsBean>, FreshNewsReader>() {
+            override fun loadFromDb(): LiveData<ArrayList<PostsBean>>? {
+                return store.load(page)
+            }
+
+            override fun shouldFetch(data: ArrayList<PostsBean>?): Boolean {
+                return data == null || data.isEmpty() || freshnessPolicy.shouldFetch(store.updatedAt(page))
+            }
+
+            override fun createCall(): Observable<FreshNewsReader> {
+                return apiService.getFreshNewsStream(Constants.sApi, params)
             }
 
-            override fun processResponse(response: FreshNewsBean): ArrayList<PostsBean>? {
-                return response.posts
+            override fun processResponse(response: FreshNewsReader): ArrayList<PostsBean>? {
+                return response.use { it.readAll().posts }
+            }
+
+            override fun processResponseChunks(response: FreshNewsReader): Observable<ArrayList<PostsBean>> {
+                return Observable.create<ArrayList<PostsBean>> { emitter ->
+                    // 取消订阅时关闭连接，停止解析
+                    emitter.setCancellable { response.close() }
+                    val posts = ArrayList<PostsBean>()
+                    try {
+                        while (!emitter.isDisposed) {
+                            posts.addAll(response.nextChunk() ?: break)
+                            emitter.onNext(ArrayList(posts))
+                        }
+                    } finally {
+                        response.close()
+                    }
+                    emitter.onComplete()
+                }
+            }
+
+            override fun mergeChunk(cached: ArrayList<PostsBean>?, chunk: ArrayList<PostsBean>): ArrayList<PostsBean> {
+                return if (cached != null && chunk.size < cached.size) cached else chunk
             }
 
             override fun saveCallResult(item: ArrayList<PostsBean>) {
+                store.save(page, item)
+            }
 
+            override fun onFetchSucceeded(item: ArrayList<PostsBean>?) {
+                onFetched?.invoke(item ?: ArrayList())
             }
 
             override fun onFetchFailed() {
+                onFetched?.invoke(null)
             }
 
         }.asLiveData()
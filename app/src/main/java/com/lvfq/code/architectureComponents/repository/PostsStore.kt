@@ -0,0 +1,133 @@
+package com.lvfq.code.architectureComponents.repository
+
+import android.app.Application
+import android.arch.lifecycle.LiveData
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+import android.support.annotation.MainThread
+import android.support.annotation.WorkerThread
+import com.google.gson.Gson
+import com.lvfq.code.architectureComponents.bean.PostsBean
+import io.reactivex.schedulers.Schedulers
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * PostsStore
+ * @date 2026/10/17
+ * @desc :
+ *  FreshNews 列表的本地缓存，按页保存。
+ *  每页的 posts 以 json 保存在 Post 表中，Page 表记录每页的写入时间，供 FreshnessPolicy 判断是否刷新。
+ *  load 返回的 LiveData 在有观察者时从数据库读取一次，之后每次 save 这一页都会重新读取并回调。
+ *  只记录有观察者的 LiveData，页面不再观察后这一页不占内存。
+ */
+@Singleton
+class PostsStore @Inject constructor(app: Application) {
+
+    companion object {
+        private const val DATABASE_NAME = "posts.db"
+        private const val DATABASE_VERSION = 1
+    }
+
+    private val helper = object : SQLiteOpenHelper(app, DATABASE_NAME, null, DATABASE_VERSION) {
+        override fun onCreate(db: SQLiteDatabase) {
+            db.execSQL("create table Post (page integer, position integer, id integer, json text, primary key (page, position))")
+            db.execSQL("create table Page (page integer primary key, updated_at integer)")
+        }
+
+        override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        }
+    }
+
+    private val gson = Gson()
+    private val pages = ConcurrentHashMap<Int, PageLiveData>()
+    private val updatedAt = ConcurrentHashMap<Int, Long>()
+
+    /**
+     * 有观察者后在 io 线程中读取数据库，没有缓存时回调空列表
+     */
+    @MainThread
+    fun load(page: Int): LiveData<ArrayList<PostsBean>> {
+        return PageLiveData(page)
+    }
+
+    /**
+     * 这一页的写入时间，load 的第一次回调之后才有值
+     */
+    fun updatedAt(page: Int): Long {
+        return updatedAt[page] ?: 0
+    }
+
+    /**
+     * 在一个事务中替换这一页的全部 posts，然后重新读取并回调给 load 返回的 LiveData
+     */
+    @WorkerThread
+    fun save(page: Int, posts: List<PostsBean>) {
+        val now = System.currentTimeMillis()
+        val db = helper.writableDatabase
+        db.beginTransaction()
+        val insert = db.compileStatement("insert into Post (page, position, id, json) values (?, ?, ?, ?)")
+        try {
+            db.delete("Post", "page = ?", arrayOf(page.toString()))
+            posts.forEachIndexed { position, post ->
+                insert.clearBindings()
+                insert.bindLong(1, page.toLong())
+                insert.bindLong(2, position.toLong())
+                insert.bindLong(3, post.id.toLong())
+                insert.bindString(4, gson.toJson(post))
+                insert.executeInsert()
+            }
+            db.execSQL("insert or replace into Page (page, updated_at) values (?, ?)", arrayOf<Any>(page, now))
+            db.setTransactionSuccessful()
+        } finally {
+            insert.close()
+            db.endTransaction()
+        }
+        pages[page]?.postValue(query(page))
+    }
+
+    @WorkerThread
+    private fun query(page: Int): ArrayList<PostsBean> {
+        val db = helper.readableDatabase
+        val args = arrayOf(page.toString())
+        // API 16 之前 Cursor 没有实现 Closeable，不能用 use
+        val pageCursor = db.rawQuery("select updated_at from Page where page = ?", args)
+        try {
+            updatedAt[page] = if (pageCursor.moveToFirst()) pageCursor.getLong(0) else 0L
+        } finally {
+            pageCursor.close()
+        }
+        val cursor = db.rawQuery("select json from Post where page = ? order by position", args)
+        try {
+            val posts = ArrayList<PostsBean>(cursor.count)
+            while (cursor.moveToNext()) {
+                posts.add(gson.fromJson(cursor.getString(0), PostsBean::class.java))
+            }
+            return posts
+        } finally {
+            cursor.close()
+        }
+    }
+
+    private inner class PageLiveData(private val page: Int) : LiveData<ArrayList<PostsBean>>() {
+
+        private var loaded = false
+
+        override fun onActive() {
+            pages[page] = this
+            if (!loaded) {
+                loaded = true
+                Schedulers.io().scheduleDirect { postValue(query(page)) }
+            }
+        }
+
+        override fun onInactive() {
+            pages.remove(page, this)
+        }
+
+        public override fun postValue(value: ArrayList<PostsBean>?) {
+            super.postValue(value)
+        }
+    }
+}
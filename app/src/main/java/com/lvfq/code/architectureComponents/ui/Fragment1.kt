@@ -3,6 +3,7 @@ package com.lvfq.code.architectureComponents.ui
 import android.arch.lifecycle.Observer
 import android.arch.lifecycle.ViewModelProviders
 import android.os.Bundle
+import android.support.v7.util.DiffUtil
 import android.support.v7.widget.LinearLayoutManager
 import android.support.v7.widget.RecyclerView
 import android.view.LayoutInflater
@@ -17,6 +18,10 @@ import com.lvfq.code.architectureComponents.bean.PostsBean
 import com.lvfq.code.architectureComponents.module.ActivityModule
 import com.lvfq.code.swipe.SwipeRefreshView
 import com.lvfq.library.utils.LvLog
+import io.reactivex.Single
+import io.reactivex.android.schedulers.AndroidSchedulers
+import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
 
 /**
  * Fragment1
@@ -29,6 +34,11 @@ import com.lvfq.library.utils.LvLog
 class Fragment1 : BaseFragment() {
 
     companion object {
+        /**
+         * 距离列表底部 / 顶部还有这么多条时预加载下一页 / 上一页
+         */
+        private const val PREFETCH_DISTANCE = 5
+
         fun getInstanse(): Fragment1 {
             return Fragment1()
         }
@@ -36,6 +46,8 @@ class Fragment1 : BaseFragment() {
 
     private var mAdapter: BaseQuickAdapter<PostsBean, BaseViewHolder>? = null
     private var posts = ArrayList<PostsBean>()
+    // 正在计算的 diff，新数据到来时取消
+    private var diffDisposable: Disposable? = null
 
     private lateinit var swipeView: SwipeRefreshView
     private lateinit var module: ActivityModule
@@ -69,13 +81,21 @@ class Fragment1 : BaseFragment() {
         }
         initAdapter()
 
+        // 每次回调的是完整列表（内存中的所有页），和当前列表 diff 后只刷新变化的 item
         module.getDatas().observe(this, Observer<ArrayList<PostsBean>> {
             LvLog.i("界面刷新。。。${it?.size}")
+            swipeView.loadMoreComplete()
             if (null != it) {
-                posts.addAll(it)
+                submitList(it)
+            }
+        })
+        // 最后一页没有数据时，网络请求结束后才知道是没有更多还是失败
+        module.getLoadState().observe(this, Observer<ActivityModule.LoadState> {
+            when (it) {
+                ActivityModule.LoadState.END -> swipeView.loadMoreEnd()
+                ActivityModule.LoadState.FAILED -> swipeView.loadMoreFail()
+                else -> Unit
             }
-            swipeView.loadMoreComplete()
-            mAdapter?.notifyDataSetChanged()
         })
         swipeView.initOptions(object : SwipeRefreshView.ConfigOptions {
             override fun layoutManager(): RecyclerView.LayoutManager {
@@ -89,6 +109,10 @@ class Fragment1 : BaseFragment() {
             override fun setEnableLoadMore(): Boolean {
                 return true
             }
+
+            override fun configRecyclerView(recyclerView: RecyclerView) {
+                recyclerView.addOnScrollListener(prefetchListener)
+            }
         })
         swipeView.swipeRefreshListener = object : SwipeRefreshView.SwipeRefreshListener {
             override fun onRefresh() {
@@ -96,12 +120,56 @@ class Fragment1 : BaseFragment() {
             }
 
             override fun onLoadMoreRequested() {
-                module.sendRequset(2)
+                // 每种结果都要结束 adapter 的加载状态，否则底部一直显示加载中，也不会再触发加载更多
+                when (module.loadNext()) {
+                    ActivityModule.LoadState.END -> swipeView.loadMoreEnd()
+                    // 有数据时 getDatas 的 observer 中会 loadMoreComplete，没有数据时由 getLoadState 结束
+                    ActivityModule.LoadState.REQUESTED,
+                    ActivityModule.LoadState.LOADING,
+                    ActivityModule.LoadState.FAILED -> Unit
+                }
             }
 
         }
     }
 
+    override fun onDestroyView() {
+        super.onDestroyView()
+        diffDisposable?.dispose()
+    }
+
+    /**
+     * 滑动到距离边缘 PREFETCH_DISTANCE 条以内时预加载，ActivityModule 中按页码去重
+     */
+    private val prefetchListener = object : RecyclerView.OnScrollListener() {
+        override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+            val layoutManager = recyclerView.layoutManager as? LinearLayoutManager ?: return
+            val header = mAdapter?.headerLayoutCount ?: 0
+            if (dy > 0 && layoutManager.findLastVisibleItemPosition() - header >= posts.size - PREFETCH_DISTANCE) {
+                module.loadNext()
+            } else if (dy < 0 && layoutManager.findFirstVisibleItemPosition() - header <= PREFETCH_DISTANCE) {
+                module.loadPrevious()
+            }
+        }
+    }
+
+    /**
+     * 在后台线程计算 diff，回到主线程后替换数据并分发局部刷新
+     */
+    private fun submitList(newList: ArrayList<PostsBean>) {
+        diffDisposable?.dispose()
+        val oldList = ArrayList(posts)
+        diffDisposable = Single.fromCallable { DiffUtil.calculateDiff(PostsDiffCallback(oldList, newList)) }
+                .subscribeOn(Schedulers.computation())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe { result ->
+                    val adapter = mAdapter ?: return@subscribe
+                    posts.clear()
+                    posts.addAll(newList)
+                    result.dispatchUpdatesTo(OffsetListUpdateCallback(adapter, adapter.headerLayoutCount))
+                }
+    }
+
     private fun initAdapter() {
         mAdapter = object : BaseQuickAdapter<PostsBean, BaseViewHolder>(R.layout.item_fragment1, posts) {
             override fun convert(helper: BaseViewHolder, item: PostsBean) {
@@ -0,0 +1,51 @@
+package com.lvfq.code.architectureComponents.ui
+
+import android.support.v7.util.DiffUtil
+import android.support.v7.util.ListUpdateCallback
+import android.support.v7.widget.RecyclerView
+import com.lvfq.code.architectureComponents.bean.PostsBean
+
+/**
+ * PostsDiffCallback
+ * @date 2026/10/17
+ * @desc :
+ *  按 id 判断是否同一条 post，内容用 data class 的 equals 比较
+ */
+class PostsDiffCallback(private val oldList: List<PostsBean>,
+                        private val newList: List<PostsBean>) : DiffUtil.Callback() {
+
+    override fun getOldListSize(): Int = oldList.size
+
+    override fun getNewListSize(): Int = newList.size
+
+    override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
+        return oldList[oldItemPosition].id == newList[newItemPosition].id
+    }
+
+    override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
+        return oldList[oldItemPosition] == newList[newItemPosition]
+    }
+}
+
+/**
+ * DiffUtil 的结果分发给 adapter，position 加上 header 的数量（BaseQuickAdapter 的 header 也占 position）
+ */
+class OffsetListUpdateCallback(private val adapter: RecyclerView.Adapter<*>,
+                               private val offset: Int) : ListUpdateCallback {
+
+    override fun onInserted(position: Int, count: Int) {
+        adapter.notifyItemRangeInserted(position + offset, count)
+    }
+
+    override fun onRemoved(position: Int, count: Int) {
+        adapter.notifyItemRangeRemoved(position + offset, count)
+    }
+
+    override fun onMoved(fromPosition: Int, toPosition: Int) {
+        adapter.notifyItemMoved(fromPosition + offset, toPosition + offset)
+    }
+
+    override fun onChanged(position: Int, count: Int, payload: Any?) {
+        adapter.notifyItemRangeChanged(position + offset, count, payload)
+    }
+}
@@ -2,9 +2,9 @@ package com.lvfq.code.coroutines
 
 import android.os.AsyncTask
 import android.widget.TextView
+import com.lvfq.code.http.OkHttpProvider
 import kotlinx.coroutines.experimental.*
 import kotlinx.coroutines.experimental.android.UI
-import okhttp3.OkHttpClient
 import okhttp3.Request
 import java.net.URL
 import kotlin.coroutines.experimental.CoroutineContext
@@ -33,7 +33,7 @@ fun launchCoroutine3() = async {
 }
 
 
-private val mOkHttpClient = OkHttpClient()
+private val mOkHttpClient = OkHttpProvider.get()
 val request = Request.Builder().url("https://baidu.com").get().build()
 
 fun displayDashboard(textview: TextView) = runBlocking {
@@ -1,5 +1,6 @@
 package com.lvfq.code.dagger2;
 
+import com.lvfq.code.http.OkHttpProvider;
 import com.lvfq.library.utils.LvLog;
 
 import javax.inject.Singleton;
@@ -25,7 +26,8 @@ public class HttpModule {
     @Provides
     public OkHttpClient provideOkHttp() {
         LvLog.i("provideOkHttp: ");
-        return new OkHttpClient.Builder().build();
+        // 不加 @Singleton 时每次注入都会调用这里，返回全局 client 避免每次新建连接池
+        return OkHttpProvider.get();
     }
 
     @Singleton
@@ -1,5 +1,7 @@
 package com.lvfq.code.dagger_android;
 
+import com.lvfq.code.http.OkHttpProvider;
+
 import javax.inject.Singleton;
 
 import dagger.Module;
@@ -30,7 +32,7 @@ public class DAGlobalSingleModule {
     @Singleton
     @Provides
     public OkHttpClient getOkHttp() {
-        return new OkHttpClient.Builder().build();
+        return OkHttpProvider.get();
     }
 
 }
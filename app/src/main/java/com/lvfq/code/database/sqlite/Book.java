@@ -0,0 +1,32 @@
+package com.lvfq.code.database.sqlite;
+
+/**
+ * Book
+ *
+ * @date 2026/10/17
+ * @desc : Book 表的一行
+ */
+
+public class Book {
+
+    public long id;
+    public String name;
+    public String author;
+    public double price;
+    public int pages;
+
+    public Book() {
+    }
+
+    public Book(String name, String author, double price, int pages) {
+        this.name = name;
+        this.author = author;
+        this.price = price;
+        this.pages = pages;
+    }
+
+    @Override
+    public String toString() {
+        return "Book{id=" + id + ", name=" + name + ", author=" + author + ", price=" + price + ", pages=" + pages + "}";
+    }
+}
@@ -0,0 +1,261 @@
+package com.lvfq.code.database.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BookDao
+ *
+ * @date 2026/10/17
+ * @desc : Book 表的批量读写。
+ * <p>
+ * db.insert(ContentValues) 每次都要拼 SQL、编译语句，没有事务时每一行都是一次单独提交（一次 fsync）。
+ * 这里的 SQL 只编译一次，SQLiteStatement 缓存起来重复绑定参数执行，一批数据放在一个事务里提交。
+ * 所有方法加锁，同一个 SQLiteStatement 不能被多个线程同时绑定。用完调用 close() 释放语句。
+ * <p>
+ * 查询只取需要的列，列下标每个 Cursor 只查一次（RowReader），分页用上一页最后一行的 key（keyset），
+ * 不用 offset。key 的条件要能直接作为索引查找的起点，否则翻到后面的页仍然要从第一行扫起，
+ * 见 queryByPages 的 BY_PAGES_AFTER。
+ */
+
+public class BookDao {
+
+    private static final String INSERT = "insert into Book (name, author, price, pages) values (?, ?, ?, ?)";
+    private static final String UPDATE = "update Book set name = ?, author = ?, price = ?, pages = ? where id = ?";
+    // 以下按 pages 过滤的语句都应该走 index_Book_pages，由 androidTest 中的 BookDaoQueryPlanTest 检查
+    static final String UPDATE_AUTHOR_BY_PAGES = "update Book set author = ? where pages > ?";
+    static final String DELETE_BY_PAGES = "delete from Book where pages > ?";
+    private static final String BY_PAGES_FIRST = "pages > ?";
+    // 等价于 (pages, id) > (after.pages, after.id)，低版本的 SQLite 不支持 row value。
+    // 索引从 pages >= after.pages 开始查找，只需要跳过和 after 的 pages 相同、id 更小的行；
+    // after.pages 一定大于 minPages，不需要再带上 minPages 的条件，带上后索引会从 minPages 开始扫
+    private static final String BY_PAGES_AFTER = "pages >= ? and (pages > ? or id > ?)";
+
+    public static final String[] COLUMNS_ALL = {"id", "name", "author", "price", "pages"};
+    public static final String[] COLUMNS_NAME = {"id", "name"};
+
+    private final SQLiteOpenHelper mHelper;
+    private SQLiteStatement mInsert;
+    private SQLiteStatement mUpdate;
+
+    public BookDao(SQLiteOpenHelper helper) {
+        mHelper = helper;
+    }
+
+    /**
+     * 在一个事务中插入，成功后回填 book.id，任意一行失败时整批回滚
+     *
+     * @return 插入的行数
+     */
+    public synchronized int insertAll(List<Book> books) {
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        if (mInsert == null) {
+            mInsert = db.compileStatement(INSERT);
+        }
+        db.beginTransaction();
+        try {
+            for (Book book : books) {
+                bind(mInsert, book);
+                book.id = mInsert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+            return books.size();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 在一个事务中按 id 更新
+     *
+     * @return 更新的行数
+     */
+    public synchronized int updateAll(List<Book> books) {
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        if (mUpdate == null) {
+            mUpdate = db.compileStatement(UPDATE);
+        }
+        int count = 0;
+        db.beginTransaction();
+        try {
+            for (Book book : books) {
+                bind(mUpdate, book);
+                mUpdate.bindLong(5, book.id);
+                count += mUpdate.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+            return count;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 页数大于 pages 的书修改作者
+     */
+    public int updateAuthorByPages(String author, int pages) {
+        SQLiteStatement statement = mHelper.getWritableDatabase().compileStatement(UPDATE_AUTHOR_BY_PAGES);
+        try {
+            statement.bindString(1, author);
+            statement.bindLong(2, pages);
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * 按 id 分页
+     *
+     * @param columns 需要的列，必须包含 id
+     * @param afterId 上一页最后一行的 id，第一页传 0
+     */
+    public List<Book> queryPage(String[] columns, long afterId, int limit) {
+        Cursor cursor = mHelper.getReadableDatabase().query("Book", columns, "id > ?",
+                new String[]{String.valueOf(afterId)}, null, null, "id", String.valueOf(limit));
+        return readAll(cursor);
+    }
+
+    /**
+     * 页数大于 minPages 的书，按 (pages, id) 分页，走 index_Book_pages
+     *
+     * @param columns 需要的列，必须包含 id 和 pages
+     * @param after   上一页最后一行，第一页传 null，之后的页只用 after 定位，minPages 不再起作用
+     */
+    public List<Book> queryByPages(String[] columns, int minPages, Book after, int limit) {
+        String[] args;
+        if (after == null) {
+            args = new String[]{String.valueOf(minPages)};
+        } else {
+            String pages = String.valueOf(after.pages);
+            args = new String[]{pages, pages, String.valueOf(after.id)};
+        }
+        Cursor cursor = mHelper.getReadableDatabase().rawQuery(queryByPagesSql(columns, after != null, limit), args);
+        return readAll(cursor);
+    }
+
+    /**
+     * queryByPages 执行的 SQL
+     *
+     * @param hasAfter 是否从上一页最后一行之后开始
+     */
+    static String queryByPagesSql(String[] columns, boolean hasAfter, int limit) {
+        return SQLiteQueryBuilder.buildQueryString(false, "Book", columns,
+                hasAfter ? BY_PAGES_AFTER : BY_PAGES_FIRST, null, null, "pages, id", String.valueOf(limit));
+    }
+
+    public int deleteByPages(int pages) {
+        SQLiteStatement statement = mHelper.getWritableDatabase().compileStatement(DELETE_BY_PAGES);
+        try {
+            statement.bindLong(1, pages);
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * 调试用，返回 EXPLAIN QUERY PLAN 的结果，例如 "SEARCH TABLE Book USING INDEX index_Book_pages (pages>?)"
+     */
+    public String explainQueryPlan(String sql, String[] args) {
+        Cursor cursor = mHelper.getReadableDatabase().rawQuery("explain query plan " + sql, args);
+        try {
+            StringBuilder plan = new StringBuilder();
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                if (plan.length() > 0) {
+                    plan.append('\n');
+                }
+                plan.append(cursor.getString(detail));
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<Book> readAll(Cursor cursor) {
+        try {
+            List<Book> books = new ArrayList<>(cursor.getCount());
+            RowReader reader = new RowReader(cursor);
+            while (cursor.moveToNext()) {
+                books.add(reader.read(cursor));
+            }
+            return books;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public synchronized void close() {
+        if (mInsert != null) {
+            mInsert.close();
+            mInsert = null;
+        }
+        if (mUpdate != null) {
+            mUpdate.close();
+            mUpdate = null;
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, Book book) {
+        statement.clearBindings();
+        if (book.name == null) {
+            statement.bindNull(1);
+        } else {
+            statement.bindString(1, book.name);
+        }
+        if (book.author == null) {
+            statement.bindNull(2);
+        } else {
+            statement.bindString(2, book.author);
+        }
+        statement.bindDouble(3, book.price);
+        statement.bindLong(4, book.pages);
+    }
+
+    /**
+     * 列下标在创建时查一次，没有查询的列为 -1，对应字段保持默认值
+     */
+    static class RowReader {
+        private final int id;
+        private final int name;
+        private final int author;
+        private final int price;
+        private final int pages;
+
+        RowReader(Cursor cursor) {
+            id = cursor.getColumnIndex("id");
+            name = cursor.getColumnIndex("name");
+            author = cursor.getColumnIndex("author");
+            price = cursor.getColumnIndex("price");
+            pages = cursor.getColumnIndex("pages");
+        }
+
+        Book read(Cursor cursor) {
+            Book book = new Book();
+            if (id >= 0) {
+                book.id = cursor.getLong(id);
+            }
+            if (name >= 0) {
+                book.name = cursor.getString(name);
+            }
+            if (author >= 0) {
+                book.author = cursor.getString(author);
+            }
+            if (price >= 0) {
+                book.price = cursor.getDouble(price);
+            }
+            if (pages >= 0) {
+                book.pages = cursor.getInt(pages);
+            }
+            return book;
+        }
+    }
+}
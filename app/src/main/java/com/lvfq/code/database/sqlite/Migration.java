@@ -0,0 +1,54 @@
+package com.lvfq.code.database.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migration
+ *
+ * @date 2026/10/17
+ * @desc : 数据库从 startVersion 升级到 endVersion 的一步。
+ * <p>
+ * onUpgrade 时按版本号把每一步串起来依次执行，保留原有数据，不再删表重建。
+ * SQLiteOpenHelper 本身就在一个事务中调用 onUpgrade，任意一步失败整个升级回滚，版本号不变，下次打开时重试。
+ */
+
+public abstract class Migration {
+
+    public final int startVersion;
+    public final int endVersion;
+
+    public Migration(int startVersion, int endVersion) {
+        this.startVersion = startVersion;
+        this.endVersion = endVersion;
+    }
+
+    public abstract void migrate(SQLiteDatabase db);
+
+    /**
+     * 找出从 from 到 to 的升级路径，每一步优先选跨度最大的 migration
+     *
+     * @return 缺少某一步时返回 null
+     */
+    public static List<Migration> findPath(Migration[] migrations, int from, int to) {
+        List<Migration> path = new ArrayList<>();
+        int version = from;
+        while (version < to) {
+            Migration next = null;
+            for (Migration migration : migrations) {
+                if (migration.startVersion == version && migration.endVersion <= to
+                        && (next == null || migration.endVersion > next.endVersion)) {
+                    next = migration;
+                }
+            }
+            if (next == null) {
+                return null;
+            }
+            path.add(next);
+            version = next.endVersion;
+        }
+        return path;
+    }
+}
@@ -3,8 +3,12 @@ package com.lvfq.code.database.sqlite;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.util.Log;
 import android.widget.Toast;
 
+import java.util.List;
+
 /**
  * SqlDataBaseHelper
  *
@@ -17,6 +21,17 @@ import android.widget.Toast;
 
 public class SqlDataBaseHelper extends SQLiteOpenHelper {
 
+    public static final String DATABASE_NAME = "SqlTest.db";
+
+    /**
+     * 2：新增 Type 表
+     * 3：Book.pages 索引
+     * 升级版本号时在 MIGRATIONS 中添加对应的一步，同时修改 onCreate 中的建表语句
+     */
+    public static final int DATABASE_VERSION = 3;
+
+    private static final String TAG = "SqlDataBaseHelper";
+
     /**
      * 建表语句
      */
@@ -30,27 +45,78 @@ public class SqlDataBaseHelper extends SQLiteOpenHelper {
     /**
      * 创建 Type 表
      */
-    private static final String CREATE_TYPE = "create table Type( id integer primary key autoincrement , type_name text , type_code)";
+    private static final String CREATE_TYPE = "create table if not exists Type( id integer primary key autoincrement , type_name text , type_code)";
+
+    /**
+     * update / delete 按 pages 过滤，按 pages 分页查询。
+     * id 是 integer primary key（即 rowid），索引中本身就带着 id，按 (pages, id) 排序不需要再排序
+     */
+    private static final String CREATE_BOOK_PAGES_INDEX = "create index if not exists index_Book_pages on Book (pages)";
+
+    private static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TYPE);
+        }
+    };
+
+    private static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL(CREATE_BOOK_PAGES_INDEX);
+        }
+    };
+
+    static final Migration[] MIGRATIONS = {MIGRATION_1_2, MIGRATION_2_3};
 
     private Context mContext;
 
+    public SqlDataBaseHelper(Context context) {
+        this(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
     public SqlDataBaseHelper(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
         super(context, name, factory, version);
         mContext = context;
+        // WAL：写操作不阻塞读，提交时只追加日志，不用每次同步整个数据库文件
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()) {
+            db.enableWriteAheadLogging();
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // 新增表的时候，要在 onUpgrade 方法添加 drop 语句
+        // 新装时直接建最新版本的表，已安装的由 MIGRATIONS 升级
         db.execSQL(CREATE_BOOK);    // 执行建表语句
         db.execSQL(CREATE_TYPE);
+        db.execSQL(CREATE_BOOK_PAGES_INDEX);
         Toast.makeText(mContext, "create Success", Toast.LENGTH_SHORT).show();
     }
 
+    /**
+     * 按版本依次执行 MIGRATIONS，已在 SQLiteOpenHelper 的事务中。
+     * 只有缺少某一步的时候才删表重建
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("drop table if exists Book");
-        db.execSQL("drop table if exists Type");
-        onCreate(db);
+        List<Migration> path = Migration.findPath(MIGRATIONS, oldVersion, newVersion);
+        if (path == null) {
+            Log.w(TAG, "no migration path " + oldVersion + " -> " + newVersion + ", recreate tables");
+            db.execSQL("drop table if exists Book");
+            db.execSQL("drop table if exists Type");
+            onCreate(db);
+            return;
+        }
+        for (Migration migration : path) {
+            migration.migrate(db);
+        }
     }
 }
@@ -1,8 +1,5 @@
 package com.lvfq.code.database.sqlite;
 
-import android.content.ContentValues;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
@@ -13,6 +10,9 @@ import android.widget.Button;
 import com.lvfq.code.R;
 import com.lvfq.library.utils.LvV;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * SqliteActivity
  *
@@ -25,7 +25,10 @@ import com.lvfq.library.utils.LvV;
 
 public class SqliteActivity extends AppCompatActivity implements View.OnClickListener {
 
+    private static final int PAGE_SIZE = 100;
+
     private SqlDataBaseHelper mHelper;
+    private BookDao mBookDao;
     private Button tv_create_Book;
     private Button tv_add_Book;
 
@@ -34,9 +37,9 @@ public class SqliteActivity extends AppCompatActivity implements View.OnClickLis
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_sqlite);
-        // 初始化 Helper
-        // context , db name , cursor , version
-        mHelper = new SqlDataBaseHelper(this, "SqlTest.db", null, 2);
+        // 初始化 Helper，数据库名和版本号见 SqlDataBaseHelper
+        mHelper = new SqlDataBaseHelper(this);
+        mBookDao = new BookDao(mHelper);
         tv_create_Book = LvV.find(this, R.id.tv_create_Book);
         tv_add_Book = LvV.find(this, R.id.tv_add_Book);
 
@@ -55,39 +58,19 @@ public class SqliteActivity extends AppCompatActivity implements View.OnClickLis
     }
 
     /**
-     * 添加图书
+     * 添加图书，一个事务批量插入
      */
     private void addBook() {
-        SQLiteDatabase db = mHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put("name", "第一行代码");
-        values.put("author", "郭霖");
-        values.put("price", 79);
-        values.put("pages", 569);
-        db.insert("Book", null, values);    // 添加第一条
-
-        values.clear();
-
-        values.put("name", "Android疯狂讲义");
-        values.put("author", "忘记了");
-        values.put("price", 60);
-        values.put("pages", 500);
-        db.insert("Book", null, values);    // 添加第一条
-
+        mBookDao.insertAll(Arrays.asList(
+                new Book("第一行代码", "郭霖", 79, 569),
+                new Book("Android疯狂讲义", "忘记了", 60, 500)));
     }
 
     /**
      * 更新
      */
     private void updateBook() {
-        SQLiteDatabase db = mHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-//        values.put("name", "第一行代码");
-        values.put("author", "郭");
-//        values.put("price", 79);
-//        values.put("pages", 569);
-
-        db.update("Book", values, "pages > ? ", new String[]{"500"});
+        mBookDao.updateAuthorByPages("郭", 500);
     }
 
 
@@ -95,31 +78,34 @@ public class SqliteActivity extends AppCompatActivity implements View.OnClickLis
      * 删除数据
      */
     private void deleteBook() {
-        SQLiteDatabase db = mHelper.getWritableDatabase();
-        db.delete("Book", "pages > ?", new String[]{"560"});
+        mBookDao.deleteByPages(560);
     }
 
     /**
-     * 查询数据
+     * 查询数据，只取 id 和 name，每页 100 条
      */
     private void selectBook() {
-        SQLiteDatabase db = mHelper.getWritableDatabase();
-
-        // 查询方法一：
-
-        // 参数： 表名，查询的列名 ，约束条件，占位符提供的值， 需要groupBy的列 ， 对groupBy 后的结果进一步约束 ， 查询结果的排序方式。
-        Cursor cursor = db.query("Book", null, null, null, null, null, null);
-        if (cursor.moveToFirst()) {
-            do {
-                String name = cursor.getString(cursor.getColumnIndex("name"));
-                Log.i("lfq", "book Name : " + name);
-            } while (cursor.moveToNext());
+        List<Book> page = mBookDao.queryPage(BookDao.COLUMNS_NAME, 0, PAGE_SIZE);
+        while (!page.isEmpty()) {
+            for (Book book : page) {
+                Log.i("lfq", "book Name : " + book.name);
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            page = mBookDao.queryPage(BookDao.COLUMNS_NAME, page.get(page.size() - 1).id, PAGE_SIZE);
         }
-        cursor.close();
 
-        //查询方法二：
-//        db.rawQuery("select * from Book", null);
+        // 确认按 pages 过滤时走索引
+        Log.i("lfq", mBookDao.explainQueryPlan("select id, name from Book where pages > ? order by pages, id",
+                new String[]{"500"}));
+    }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mBookDao.close();
+        mHelper.close();
     }
 
     @Override
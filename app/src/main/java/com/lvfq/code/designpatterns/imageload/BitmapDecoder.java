@@ -0,0 +1,96 @@
+package com.lvfq.code.designpatterns.imageload;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * BitmapDecoder
+ *
+ * @date 2026/10/17
+ * @desc : 按目标尺寸解码图片。先只解码宽高（inJustDecodeBounds），算出 inSampleSize 后再真正解码，
+ * 网络流只能读一次，所以先把压缩数据读到内存里，压缩数据远小于解码后的位图。
+ */
+
+public class BitmapDecoder {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final String MIME_JPEG = "image/jpeg";
+
+    /**
+     * @param inputStream   图片流，不会被关闭
+     * @param contentLength 流的长度，未知时传 -1
+     * @param reqWidth      目标宽度，<= 0 表示不限制
+     * @param reqHeight     目标高度，<= 0 表示不限制
+     * @param preferRgb565  不透明的 JPEG 是否使用 RGB_565，内存减半
+     * @return
+     * @throws IOException
+     */
+    public static Bitmap decodeStream(InputStream inputStream, int contentLength, int reqWidth, int reqHeight,
+                                      boolean preferRgb565) throws IOException {
+        byte[] data = readFully(inputStream, contentLength);
+        return decodeByteArray(data, data.length, reqWidth, reqHeight, preferRgb565);
+    }
+
+    public static Bitmap decodeByteArray(byte[] data, int length, int reqWidth, int reqHeight, boolean preferRgb565) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        // JPEG 没有透明通道，RGB_565 每个像素 2 字节
+        if (preferRgb565 && MIME_JPEG.equals(options.outMimeType)) {
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+        }
+        BitmapPool pool = BitmapPool.getInstance();
+        if (pool.applyInBitmap(options)) {
+            try {
+                return BitmapFactory.decodeByteArray(data, 0, length, options);
+            } catch (IllegalArgumentException e) {
+                // inBitmap 不满足复用条件，还回池里后正常解码
+                pool.releaseInBitmap(options);
+            }
+        }
+        return BitmapFactory.decodeByteArray(data, 0, length, options);
+    }
+
+    /**
+     * 计算 2 的幂次采样率，保证采样后的宽高都不小于目标宽高
+     *
+     * @param width     原图宽
+     * @param height    原图高
+     * @param reqWidth  目标宽
+     * @param reqHeight 目标高
+     * @return
+     */
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        if (reqWidth <= 0 && reqHeight <= 0) {
+            return 1;
+        }
+        int inSampleSize = 1;
+        int halfWidth = width / 2;
+        int halfHeight = height / 2;
+        while ((reqWidth <= 0 || halfWidth / inSampleSize >= reqWidth)
+                && (reqHeight <= 0 || halfHeight / inSampleSize >= reqHeight)) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    public static byte[] readFully(InputStream inputStream, int contentLength) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(contentLength > 0 ? contentLength : BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int len;
+        while ((len = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, len);
+        }
+        return outputStream.toByteArray();
+    }
+}
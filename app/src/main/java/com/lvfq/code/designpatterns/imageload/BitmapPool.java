@@ -0,0 +1,238 @@
+package com.lvfq.code.designpatterns.imageload;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import java.util.WeakHashMap;
+
+/**
+ * BitmapPool
+ *
+ * @date 2026/10/17
+ * @desc : Bitmap 复用池。MemoryCache 淘汰的 Bitmap 放进来，解码时通过 BitmapFactory.Options.inBitmap 复用，减少滑动时的 GC。
+ * <p>
+ * 淘汰的 Bitmap 可能还显示在某个 ImageView 上，进入复用池后会被下一次解码覆盖，所以显示时需要 acquire，
+ * 不再显示时 release：只有既不在内存缓存中、也没有 view 显示的 Bitmap 才会放进复用池。
+ * 复用池满时淘汰的 Bitmap 不调用 recycle()，交给 GC 处理。
+ * <p>
+ * 4.4 以下 inBitmap 要求宽高完全一致且 inSampleSize 为 1，这里只在 4.4 及以上启用，低版本行为与之前一致。
+ */
+
+public class BitmapPool {
+
+    private final SizeBucketPool<Bitmap> mPool;
+
+    // 正在显示的 Bitmap 的引用计数。key 是弱引用，view 没有 release 就被回收时不会导致 Bitmap 泄漏
+    private final WeakHashMap<Bitmap, Ref> mRefs = new WeakHashMap<>();
+
+    private static class Ref {
+        int count;
+        // 已经从内存缓存中淘汰，引用计数归零后放进复用池
+        boolean evicted;
+    }
+
+    public static BitmapPool getInstance() {
+        return PoolHolder.instance;
+    }
+
+    private static class PoolHolder {
+        // 复用池占最大内存的 1/8
+        private static final BitmapPool instance = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    BitmapPool(long maxSize) {
+        mPool = new SizeBucketPool<>(maxSize, new SizeBucketPool.Adapter<Bitmap>() {
+            @Override
+            public int sizeOf(Bitmap bitmap) {
+                return getAllocationByteCount(bitmap);
+            }
+
+            @Override
+            public void onEvicted(Bitmap bitmap) {
+                // 不主动 recycle，交给 GC
+            }
+        });
+    }
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * Bitmap 开始显示（或者被加载任务持有），引用计数加一
+     *
+     * @param bitmap
+     */
+    public void acquire(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        synchronized (mRefs) {
+            Ref ref = mRefs.get(bitmap);
+            if (ref == null) {
+                ref = new Ref();
+                mRefs.put(bitmap, ref);
+            }
+            ref.count++;
+        }
+    }
+
+    /**
+     * 从内存缓存中取出并 acquire。和 onCacheEvicted 互斥，取出的 Bitmap 不会在 acquire 之前被放进复用池
+     */
+    Bitmap acquire(MemoryCache cache, String url) {
+        synchronized (mRefs) {
+            Bitmap bitmap = cache.get(url);
+            acquire(bitmap);
+            return bitmap;
+        }
+    }
+
+    /**
+     * Bitmap 不再显示，引用计数归零并且已经不在内存缓存中时放进复用池
+     *
+     * @param bitmap
+     */
+    public void release(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        boolean reusable = false;
+        synchronized (mRefs) {
+            Ref ref = mRefs.get(bitmap);
+            if (ref == null) {
+                return;
+            }
+            if (--ref.count <= 0) {
+                mRefs.remove(bitmap);
+                reusable = ref.evicted;
+            }
+        }
+        if (reusable) {
+            put(bitmap);
+        }
+    }
+
+    /**
+     * MemoryCache 淘汰时调用，还在显示的 Bitmap 等 release 后再放进复用池
+     *
+     * @param bitmap
+     */
+    public void onCacheEvicted(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        synchronized (mRefs) {
+            Ref ref = mRefs.get(bitmap);
+            if (ref != null) {
+                ref.evicted = true;
+                return;
+            }
+        }
+        put(bitmap);
+    }
+
+    /**
+     * 放入复用池，调用方之后不能再使用该 Bitmap，也不能有 view 在显示它
+     *
+     * @param bitmap
+     */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || !isSupported()) {
+            return;
+        }
+        mPool.put(bitmap);
+    }
+
+    /**
+     * 取出一个可以容纳 width * height 的 Bitmap，已经 reconfigure 为需要的尺寸，内容未清空
+     *
+     * @return 没有合适的返回 null
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        if (!isSupported() || width <= 0 || height <= 0) {
+            return null;
+        }
+        Bitmap bitmap = mPool.get(width * height * getBytesPerPixel(config));
+        if (bitmap != null) {
+            bitmap.reconfigure(width, height, config);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 在 inJustDecodeBounds 之后、真正解码之前调用，按 outWidth / outHeight / inSampleSize 设置 inBitmap
+     *
+     * @param options
+     * @return 是否设置了 inBitmap
+     */
+    public boolean applyInBitmap(BitmapFactory.Options options) {
+        if (!isSupported() || options.outWidth <= 0 || options.outHeight <= 0) {
+            return false;
+        }
+        int sampleSize = Math.max(1, options.inSampleSize);
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        Bitmap inBitmap = get(width, height, config);
+        options.inMutable = true;
+        if (inBitmap == null) {
+            return false;
+        }
+        options.inBitmap = inBitmap;
+        return true;
+    }
+
+    /**
+     * inBitmap 解码失败时调用，把 inBitmap 还回池里，调用方清空 options.inBitmap 后重新解码
+     *
+     * @param options
+     */
+    public void releaseInBitmap(BitmapFactory.Options options) {
+        if (options.inBitmap != null) {
+            put(options.inBitmap);
+            options.inBitmap = null;
+        }
+    }
+
+    public void clear() {
+        mPool.clear();
+    }
+
+    public void trimToSize(long size) {
+        mPool.trimToSize(size);
+    }
+
+    public long hitCount() {
+        return mPool.hitCount();
+    }
+
+    public long missCount() {
+        return mPool.missCount();
+    }
+
+    @Override
+    public String toString() {
+        return mPool.toString();
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static int getAllocationByteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+}
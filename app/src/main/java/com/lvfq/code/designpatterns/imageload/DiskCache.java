@@ -1,9 +1,16 @@
 package com.lvfq.code.designpatterns.imageload;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 
-import java.io.FileNotFoundException;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * DiskCache
@@ -12,30 +19,125 @@ import java.io.FileOutputStream;
  * @Github: https://github.com/lvfaqiang
  * @Blog: http://blog.csdn.net/lv_fq
  * @date 2017/11/26 上午11:36
- * @desc : SD卡缓存
+ * @desc : SD卡缓存，文件的索引、容量和淘汰交给 {@link DiskLruCache}，这里只负责 url -> key 和 Bitmap 的编解码
  */
 
 public class DiskCache implements ImageCache {
 
-    static String cacheDir = "sdcard/cache/";
+    // 默认磁盘缓存大小 50M
+    static final long DEFAULT_MAX_SIZE = 50 * 1024 * 1024;
+    static final String CACHE_DIR_NAME = "image";
+
+    private DiskLruCache mLruCache;
+
+    public DiskCache(Context context) {
+        this(new File(getCacheRoot(context), CACHE_DIR_NAME), DEFAULT_MAX_SIZE);
+    }
+
+    public DiskCache(File cacheDir, long maxSize) {
+        try {
+            mLruCache = new DiskLruCache(cacheDir, maxSize);
+        } catch (IOException e) {
+            // 打开失败时退化为不缓存
+            e.printStackTrace();
+        }
+    }
+
+    private static File getCacheRoot(Context context) {
+        File external = context.getExternalCacheDir();
+        return external != null ? external : context.getCacheDir();
+    }
 
     @Override
     public Bitmap get(String url) {
-        return null;
+        return get(url, true);
+    }
+
+    /**
+     * 写入时已经是目标尺寸，不再采样；和网络图片一样经过 {@link BitmapDecoder}，可以复用 BitmapPool 中的 Bitmap
+     *
+     * @param url
+     * @param preferRgb565 不透明的图片存为 JPEG，是否使用 RGB_565 解码
+     * @return
+     */
+    public Bitmap get(String url, boolean preferRgb565) {
+        if (mLruCache == null) {
+            return null;
+        }
+        InputStream inputStream = mLruCache.get(hashKey(url));
+        if (inputStream == null) {
+            return null;
+        }
+        try {
+            // 文件流的 available() 就是剩余的长度
+            return BitmapDecoder.decodeStream(inputStream, inputStream.available(), 0, 0, preferRgb565);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            CloseUtils.close(inputStream);
+        }
     }
 
     @Override
     public void put(String url, Bitmap bitmap) {
-        FileOutputStream fileOutputStream = null;
-
+        if (mLruCache == null || bitmap == null) {
+            return;
+        }
+        String key = hashKey(url);
+        File tmp = mLruCache.edit(key);
+        if (tmp == null) {
+            // 同一张图正在写入
+            return;
+        }
+        OutputStream outputStream = null;
+        boolean success = false;
         try {
-            fileOutputStream = new FileOutputStream(cacheDir + url);
-            // bitmap 按照指定格式，将图片转换为 输出流，也就是这里会输出到 fileOutputStream 指定位置
-            bitmap.compress(Bitmap.CompressFormat.PNG, 100, fileOutputStream);
-        } catch (FileNotFoundException e) {
+            outputStream = new BufferedOutputStream(new FileOutputStream(tmp), 8 * 1024);
+            // 不透明的图片使用 JPEG，体积远小于 PNG
+            success = bitmap.hasAlpha()
+                    ? bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream)
+                    : bitmap.compress(Bitmap.CompressFormat.JPEG, 90, outputStream);
+        } catch (IOException e) {
             e.printStackTrace();
         } finally {
-            CloseUtils.close(fileOutputStream);
+            CloseUtils.close(outputStream);
+        }
+        if (!success) {
+            mLruCache.abort(key);
+            return;
+        }
+        try {
+            mLruCache.commit(key);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void remove(String url) {
+        if (mLruCache != null) {
+            mLruCache.remove(hashKey(url));
+        }
+    }
+
+    /**
+     * url 中可能含有文件名非法字符，统一转成 md5 作为文件名
+     *
+     * @param url
+     * @return
+     */
+    static String hashKey(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] bytes = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return String.valueOf(url.hashCode());
         }
     }
 
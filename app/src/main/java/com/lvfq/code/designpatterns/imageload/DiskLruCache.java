@@ -0,0 +1,371 @@
+package com.lvfq.code.designpatterns.imageload;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DiskLruCache
+ *
+ * @date 2026/10/17
+ * @desc : 基于日志（journal）的磁盘 LRU 缓存，不依赖 Android，只负责文件的存取和淘汰。
+ * <p>
+ * journal 格式：
+ * <pre>
+ *     lvfq.DiskLruCache
+ *     1
+ *
+ *     DIRTY key        开始写入 key.tmp
+ *     CLEAN key size   写入完成并 rename 为 key
+ *     REMOVE key       写入失败或被淘汰
+ *     READ key         读取，仅用于维护 LRU 顺序
+ * </pre>
+ * 启动时只读取 journal 恢复索引，不需要遍历缓存目录。
+ */
+
+public class DiskLruCache {
+
+    static final String JOURNAL_FILE = "journal";
+    static final String JOURNAL_FILE_TMP = "journal.tmp";
+    static final String MAGIC = "lvfq.DiskLruCache";
+    static final String VERSION = "1";
+
+    private static final String CLEAN = "CLEAN";
+    private static final String DIRTY = "DIRTY";
+    private static final String REMOVE = "REMOVE";
+    private static final String READ = "READ";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    // 冗余操作超过该值时重建 journal
+    private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final File journalFile;
+    private final long maxSize;
+
+    // accessOrder = true，迭代顺序即 LRU 顺序，value 为文件字节数
+    private final LinkedHashMap<String, Long> lruEntries = new LinkedHashMap<>(0, 0.75f, true);
+    // 正在写入的 key，同一个 key 同时只允许一个写入
+    private final Set<String> editing = new HashSet<>();
+
+    private Writer journalWriter;
+    private long size;
+    private int redundantOpCount;
+
+    public DiskLruCache(File directory, long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.directory = directory;
+        this.journalFile = new File(directory, JOURNAL_FILE);
+        this.maxSize = maxSize;
+        open();
+    }
+
+    private void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("can not create cache dir : " + directory);
+        }
+        if (journalFile.exists()) {
+            try {
+                readJournal();
+                journalWriter = newJournalWriter(true);
+                return;
+            } catch (IOException e) {
+                // journal 损坏，清空后重建
+                e.printStackTrace();
+                deleteContents(directory);
+                lruEntries.clear();
+                size = 0;
+            }
+        }
+        rebuildJournal();
+    }
+
+    private void readJournal() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), UTF_8));
+        try {
+            String magic = reader.readLine();
+            String version = reader.readLine();
+            String blank = reader.readLine();
+            if (!MAGIC.equals(magic) || !VERSION.equals(version) || !"".equals(blank)) {
+                throw new IOException("unexpected journal header: [" + magic + ", " + version + ", " + blank + "]");
+            }
+            Set<String> dirty = new HashSet<>();
+            int lineCount = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                readJournalLine(line, dirty);
+                lineCount++;
+            }
+            // DIRTY 之后没有 CLEAN / REMOVE，说明上次写入中途退出，删掉残留的临时文件
+            // 删除失败不影响 journal，下次 edit 时会覆盖
+            for (String key : dirty) {
+                try {
+                    deleteIfExists(tmpFile(key));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            redundantOpCount = lineCount - lruEntries.size();
+        } finally {
+            CloseUtils.close(reader);
+        }
+    }
+
+    private void readJournalLine(String line, Set<String> dirty) throws IOException {
+        String[] parts = line.split(" ");
+        if (parts.length < 2) {
+            throw new IOException("unexpected journal line: " + line);
+        }
+        String op = parts[0];
+        String key = parts[1];
+        if (CLEAN.equals(op) && parts.length == 3) {
+            dirty.remove(key);
+            Long old = lruEntries.put(key, Long.parseLong(parts[2]));
+            size += Long.parseLong(parts[2]) - (old == null ? 0 : old);
+        } else if (DIRTY.equals(op)) {
+            dirty.add(key);
+        } else if (REMOVE.equals(op)) {
+            dirty.remove(key);
+            Long old = lruEntries.remove(key);
+            if (old != null) {
+                size -= old;
+            }
+        } else if (READ.equals(op)) {
+            lruEntries.get(key);
+        } else {
+            throw new IOException("unexpected journal line: " + line);
+        }
+    }
+
+    /**
+     * 用当前索引重写一份精简的 journal，写完后 rename 覆盖旧文件
+     */
+    private void rebuildJournal() throws IOException {
+        CloseUtils.close(journalWriter);
+        File tmp = new File(directory, JOURNAL_FILE_TMP);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), UTF_8));
+        try {
+            writer.write(MAGIC + "\n" + VERSION + "\n\n");
+            for (String key : editing) {
+                writer.write(DIRTY + ' ' + key + '\n');
+            }
+            for (Map.Entry<String, Long> entry : lruEntries.entrySet()) {
+                writer.write(CLEAN + ' ' + entry.getKey() + ' ' + entry.getValue() + '\n');
+            }
+        } finally {
+            writer.close();
+        }
+        if (!tmp.renameTo(journalFile)) {
+            throw new IOException("rename journal failed");
+        }
+        journalWriter = newJournalWriter(true);
+        redundantOpCount = 0;
+    }
+
+    private Writer newJournalWriter(boolean append) throws FileNotFoundException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, append), UTF_8));
+    }
+
+    /**
+     * 读取缓存，返回的流由调用方关闭；不存在时返回 null
+     */
+    public synchronized InputStream get(String key) {
+        checkNotClosed();
+        if (lruEntries.get(key) == null) {
+            return null;
+        }
+        InputStream in;
+        try {
+            in = new FileInputStream(cleanFile(key));
+        } catch (FileNotFoundException e) {
+            // 文件被外部删除，同步索引
+            try {
+                removeEntry(key);
+            } catch (IOException ignored) {
+                // 文件已经不存在，不会删除失败
+            }
+            return null;
+        }
+        appendJournal(READ + ' ' + key);
+        return in;
+    }
+
+    /**
+     * 开始写入，返回需要写入的临时文件；同一个 key 正在写入时返回 null
+     * 写完后必须调用 {@link #commit(String)} 或 {@link #abort(String)}
+     */
+    public synchronized File edit(String key) {
+        checkNotClosed();
+        if (!editing.add(key)) {
+            return null;
+        }
+        appendJournal(DIRTY + ' ' + key);
+        return tmpFile(key);
+    }
+
+    /**
+     * 临时文件 rename 为正式文件（原子操作），并按容量淘汰
+     */
+    public synchronized void commit(String key) throws IOException {
+        if (!editing.remove(key)) {
+            throw new IllegalStateException("key is not in editing : " + key);
+        }
+        File tmp = tmpFile(key);
+        File clean = cleanFile(key);
+        if (!tmp.exists() || !tmp.renameTo(clean)) {
+            try {
+                deleteIfExists(tmp);
+            } finally {
+                removeEntry(key);
+            }
+            throw new IOException("commit failed : " + key);
+        }
+        long length = clean.length();
+        Long old = lruEntries.put(key, length);
+        size += length - (old == null ? 0 : old);
+        appendJournal(CLEAN + ' ' + key + ' ' + length);
+        trimToSize();
+    }
+
+    public synchronized void abort(String key) {
+        if (editing.remove(key)) {
+            try {
+                deleteIfExists(tmpFile(key));
+                removeEntry(key);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return 文件删除失败时返回 false，记录保留
+     */
+    public synchronized boolean remove(String key) {
+        checkNotClosed();
+        if (!lruEntries.containsKey(key)) {
+            return false;
+        }
+        try {
+            removeEntry(key);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 先删文件再删记录，文件删除失败时记录保留，size 仍然计算这个文件
+     */
+    private void removeEntry(String key) throws IOException {
+        deleteIfExists(cleanFile(key));
+        Long old = lruEntries.remove(key);
+        if (old != null) {
+            size -= old;
+        }
+        appendJournal(REMOVE + ' ' + key);
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = lruEntries.entrySet().iterator();
+        ArrayList<String> evicted = new ArrayList<>();
+        long remain = size;
+        while (remain > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            evicted.add(eldest.getKey());
+            remain -= eldest.getValue();
+        }
+        for (String key : evicted) {
+            try {
+                removeEntry(key);
+            } catch (IOException e) {
+                // 删除失败的留到下次淘汰时再试，其余的继续淘汰
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void appendJournal(String line) {
+        try {
+            journalWriter.write(line);
+            journalWriter.write('\n');
+            journalWriter.flush();
+            redundantOpCount++;
+            if (redundantOpCount >= REDUNDANT_OP_COMPACT_THRESHOLD && redundantOpCount >= lruEntries.size()) {
+                rebuildJournal();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private File cleanFile(String key) {
+        return new File(directory, key);
+    }
+
+    private File tmpFile(String key) {
+        return new File(directory, key + TMP_SUFFIX);
+    }
+
+    private void checkNotClosed() {
+        if (journalWriter == null) {
+            throw new IllegalStateException("cache is closed");
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public synchronized void close() {
+        CloseUtils.close(journalWriter);
+        journalWriter = null;
+    }
+
+    private static void deleteIfExists(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("delete failed : " + file);
+        }
+    }
+
+    private static void deleteContents(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteContents(file);
+            }
+            deleteIfExists(file);
+        }
+    }
+}
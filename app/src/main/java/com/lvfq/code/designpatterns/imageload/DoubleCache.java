@@ -1,5 +1,6 @@
 package com.lvfq.code.designpatterns.imageload;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 
 /**
@@ -14,7 +15,11 @@ import android.graphics.Bitmap;
 
 public class DoubleCache implements ImageCache {
     private MemoryCache memoryCache = new MemoryCache();
-    private DiskCache diskCache = new DiskCache();
+    private DiskCache diskCache;
+
+    public DoubleCache(Context context) {
+        diskCache = new DiskCache(context);
+    }
 
     @Override
     public Bitmap get(String url) {
@@ -22,10 +27,28 @@ public class DoubleCache implements ImageCache {
         bitmap = memoryCache.get(url);
         if (bitmap == null) {
             bitmap = diskCache.get(url);
+            // 磁盘命中后放回内存，下次直接从内存取
+            if (bitmap != null) {
+                memoryCache.put(url, bitmap);
+            }
         }
         return bitmap;
     }
 
+    /**
+     * 内存缓存，可以在主线程查询
+     */
+    public MemoryCache getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * 磁盘缓存，读取和解码需要放在加载任务中
+     */
+    public DiskCache getDiskCache() {
+        return diskCache;
+    }
+
     @Override
     public void put(String url, Bitmap bitmap) {
         memoryCache.put(url, bitmap);
@@ -1,14 +1,23 @@
 package com.lvfq.code.designpatterns.imageload;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
 
 /**
  * ImageLoader
@@ -23,14 +32,44 @@ import java.util.concurrent.Executors;
 public class ImageLoader {
     // 图片缓存
     private ImageCache mImageCache = new MemoryCache();
-    // 线程池
-    ExecutorService mService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    // 下载 / 解码调度
+    private ImageScheduler mScheduler = new ImageScheduler();
+    // 正在下载的任务，同一个 url 只下载一次
+    private final Map<String, LoadTask> mInFlight = new HashMap<>();
+    // 每个 view 当前显示的 Bitmap，只在主线程访问，用于 BitmapPool 的引用计数
+    private final Map<ImageView, Bitmap> mDisplayed = new WeakHashMap<>();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // 不透明的 JPEG 使用 RGB_565 解码
+    private boolean mPreferRgb565 = true;
 
 
     public void setImageCache(ImageCache imageCache) {
         mImageCache = imageCache;
     }
 
+    public void setPreferRgb565(boolean preferRgb565) {
+        mPreferRgb565 = preferRgb565;
+    }
+
+    public void setScheduler(ImageScheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    /**
+     * 列表 fling 时暂停加载
+     */
+    public void pause() {
+        mScheduler.pause();
+    }
+
+    /**
+     * 列表停止滑动后恢复加载
+     */
+    public void resume() {
+        mScheduler.resume();
+    }
+
     /**
      * 加载图片
      *
@@ -38,48 +77,297 @@ public class ImageLoader {
      * @param imageView
      */
     public void display(final String url, final ImageView imageView) {
-        // 先获取一下缓存
-        Bitmap bitmap = mImageCache.get(url);
+        // view 被复用时，先解除与上一个 url 的绑定
+        Object oldTag = imageView.getTag();
+        if (oldTag instanceof String && !oldTag.equals(url)) {
+            detach((String) oldTag, imageView);
+        }
+        imageView.setTag(url);
+
+        // 主线程只查内存缓存，磁盘缓存在加载任务中读取
+        Bitmap bitmap = acquireFromMemory(url);
         if (bitmap != null) {
-            imageView.setImageBitmap(bitmap);
+            bind(imageView, bitmap);
             return;
         }
 
-        imageView.setTag(url);
-        mService.submit(new Runnable() {
-            @Override
-            public void run() {
-                Bitmap bitmap = downloadImage(url);
-                if (bitmap == null) {
-                    return;
-                }
-                if (imageView.getTag().equals(url)) {
-                    imageView.setImageBitmap(bitmap);
-                }
-                mImageCache.put(url, bitmap);
+        synchronized (mInFlight) {
+            LoadTask task = mInFlight.get(url);
+            // 被调度器丢弃的任务不再等待
+            if (task != null && !task.isDropped()) {
+                // 已经在下载，等待同一个结果即可
+                task.attach(imageView);
+                return;
             }
-        });
+            task = new LoadTask(url);
+            task.attach(imageView);
+            mInFlight.put(url, task);
+            task.future = mScheduler.submitNetwork(task);
+        }
+    }
+
+    /**
+     * 同步查询时跳过磁盘：DoubleCache 只查内存，DiskCache 直接返回 null。返回的 Bitmap 已经 acquire
+     */
+    private Bitmap acquireFromMemory(String url) {
+        MemoryCache memoryCache = getMemoryCache();
+        if (memoryCache != null) {
+            return BitmapPool.getInstance().acquire(memoryCache, url);
+        }
+        if (mImageCache instanceof DiskCache) {
+            return null;
+        }
+        Bitmap bitmap = mImageCache.get(url);
+        BitmapPool.getInstance().acquire(bitmap);
+        return bitmap;
+    }
+
+    private MemoryCache getMemoryCache() {
+        if (mImageCache instanceof DoubleCache) {
+            return ((DoubleCache) mImageCache).getMemoryCache();
+        }
+        if (mImageCache instanceof MemoryCache) {
+            return (MemoryCache) mImageCache;
+        }
+        return null;
+    }
+
+    /**
+     * 只读磁盘缓存，不放回内存，在加载任务中调用
+     */
+    private Bitmap getFromDisk(String url) {
+        if (mImageCache instanceof DoubleCache) {
+            return ((DoubleCache) mImageCache).getDiskCache().get(url, mPreferRgb565);
+        }
+        if (mImageCache instanceof DiskCache) {
+            return ((DiskCache) mImageCache).get(url, mPreferRgb565);
+        }
+        return null;
+    }
+
+    /**
+     * 显示 Bitmap，调用方已经 acquire 过一次，这次引用交给 view，之前显示的 Bitmap release
+     */
+    private void bind(ImageView imageView, Bitmap bitmap) {
+        imageView.setImageBitmap(bitmap);
+        Bitmap old = mDisplayed.put(imageView, bitmap);
+        if (old != null) {
+            BitmapPool.getInstance().release(old);
+        }
+    }
+
+    /**
+     * 取消 imageView 上的加载请求，例如列表 item 被回收时
+     *
+     * @param imageView
+     */
+    public void cancel(ImageView imageView) {
+        Object tag = imageView.getTag();
+        if (tag instanceof String) {
+            detach((String) tag, imageView);
+        }
+        imageView.setTag(null);
+        // 先从 view 上移除再 release，之后 Bitmap 才可能被复用
+        Bitmap old = mDisplayed.remove(imageView);
+        if (old != null) {
+            imageView.setImageDrawable(null);
+            BitmapPool.getInstance().release(old);
+        }
+    }
 
+    /**
+     * imageView 不再等待 url，没有任何 view 等待时取消下载
+     */
+    private void detach(String url, ImageView imageView) {
+        synchronized (mInFlight) {
+            LoadTask task = mInFlight.get(url);
+            if (task != null && task.detach(imageView)) {
+                mInFlight.remove(url);
+                task.cancel();
+            }
+        }
     }
 
     /**
-     * 下载图片
+     * 下载图片，只读取压缩数据，解码在解码线程中进行
      *
      * @param imageUrl
      * @return
      */
-    private Bitmap downloadImage(String imageUrl) {
-        Bitmap bitmap = null;
+    private byte[] downloadImage(String imageUrl) {
+        byte[] data = null;
+        HttpURLConnection connection = null;
+        InputStream inputStream = null;
         try {
             URL url = new URL(imageUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            bitmap = BitmapFactory.decodeStream(connection.getInputStream());
-            connection.disconnect();
-
+            connection = (HttpURLConnection) url.openConnection();
+            inputStream = connection.getInputStream();
+            data = BitmapDecoder.readFully(inputStream, connection.getContentLength());
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            CloseUtils.close(inputStream);
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 目标尺寸：优先使用测量后的宽高，还没测量时使用 LayoutParams 中的固定值，都没有则按屏幕尺寸
+     *
+     * @param imageView
+     * @return [width, height]
+     */
+    private static int[] getTargetSize(ImageView imageView) {
+        int width = imageView.getWidth();
+        int height = imageView.getHeight();
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        if (width <= 0 && params != null && params.width > 0) {
+            width = params.width;
+        }
+        if (height <= 0 && params != null && params.height > 0) {
+            height = params.height;
+        }
+        if (width <= 0) {
+            width = imageView.getResources().getDisplayMetrics().widthPixels;
+        }
+        if (height <= 0) {
+            height = imageView.getResources().getDisplayMetrics().heightPixels;
+        }
+        return new int[]{width, height};
+    }
+
+    /**
+     * 同一个 url 的下载任务，可以被多个 ImageView 共享
+     */
+    private class LoadTask implements Runnable {
+        final String url;
+        // 只在 mInFlight 锁内访问
+        final List<WeakReference<ImageView>> targets = new ArrayList<>(1);
+        Future<?> future;
+        volatile Future<?> decodeFuture;
+        volatile boolean cancelled;
+        // 多个 view 共享时取最大的目标尺寸
+        int reqWidth;
+        int reqHeight;
+
+        LoadTask(String url) {
+            this.url = url;
+        }
+
+        void attach(ImageView imageView) {
+            targets.add(new WeakReference<>(imageView));
+            int[] size = getTargetSize(imageView);
+            reqWidth = Math.max(reqWidth, size[0]);
+            reqHeight = Math.max(reqHeight, size[1]);
+        }
+
+        /**
+         * @return 是否已经没有等待的 view
+         */
+        boolean detach(ImageView imageView) {
+            Iterator<WeakReference<ImageView>> iterator = targets.iterator();
+            while (iterator.hasNext()) {
+                ImageView target = iterator.next().get();
+                if (target == null || target == imageView) {
+                    iterator.remove();
+                }
+            }
+            return targets.isEmpty();
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(true);
+            }
+            if (decodeFuture != null) {
+                decodeFuture.cancel(false);
+            }
+        }
+
+        boolean isDropped() {
+            return (future != null && future.isCancelled())
+                    || (decodeFuture != null && decodeFuture.isCancelled());
+        }
+
+        /**
+         * 下载阶段，完成后交给解码线程
+         */
+        @Override
+        public void run() {
+            if (cancelled || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            // 磁盘缓存命中时不再下载
+            Bitmap cached = getFromDisk(url);
+            if (cached != null) {
+                finish(cached, true);
+                return;
+            }
+            final byte[] data = downloadImage(url);
+            if (data == null || cancelled) {
+                finish(null, false);
+                return;
+            }
+            decodeFuture = mScheduler.submitDecode(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancelled) {
+                        return;
+                    }
+                    int width;
+                    int height;
+                    synchronized (mInFlight) {
+                        width = reqWidth;
+                        height = reqHeight;
+                    }
+                    finish(BitmapDecoder.decodeByteArray(data, data.length, width, height, mPreferRgb565), false);
+                }
+            });
+        }
+
+        /**
+         * @param fromDisk 从磁盘缓存读到的只放回内存缓存
+         */
+        private void finish(final Bitmap bitmap, boolean fromDisk) {
+            final List<WeakReference<ImageView>> waiting;
+            synchronized (mInFlight) {
+                if (mInFlight.get(url) == this) {
+                    mInFlight.remove(url);
+                }
+                waiting = new ArrayList<>(targets);
+            }
+            if (bitmap == null) {
+                return;
+            }
+            final BitmapPool pool = BitmapPool.getInstance();
+            // 任务先持有一次，放进内存缓存后即使马上被淘汰，显示之前也不会进入复用池
+            pool.acquire(bitmap);
+            if (!fromDisk) {
+                mImageCache.put(url, bitmap);
+            } else {
+                MemoryCache memoryCache = getMemoryCache();
+                if (memoryCache != null) {
+                    memoryCache.put(url, bitmap);
+                }
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (WeakReference<ImageView> reference : waiting) {
+                        ImageView imageView = reference.get();
+                        if (imageView != null && url.equals(imageView.getTag())) {
+                            pool.acquire(bitmap);
+                            bind(imageView, bitmap);
+                        }
+                    }
+                    pool.release(bitmap);
+                }
+            });
         }
-        return bitmap;
     }
 
 }
@@ -0,0 +1,220 @@
+package com.lvfq.code.designpatterns.imageload;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ImageScheduler
+ *
+ * @date 2026/10/17
+ * @desc : 图片加载调度器，替代固定大小的 FIFO 线程池。
+ * <p>
+ * 1. 下载和解码分成两个线程池，下载是 IO 密集，解码是 CPU 密集，互不阻塞；
+ * 2. 队列是 LIFO，列表快速滑动时最新（也就是当前可见）的请求最先执行；
+ * 3. 队列有上限，超出时丢弃最早提交的任务（已经滑出屏幕）；
+ * 4. pause / resume 用于列表 fling 时暂停出队，停下来后再继续。
+ */
+
+public class ImageScheduler {
+
+    private static final int DEFAULT_NETWORK_THREADS = 3;
+    private static final int DEFAULT_MAX_QUEUE_SIZE = 48;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final PausableExecutor mNetworkExecutor;
+    private final PausableExecutor mDecodeExecutor;
+
+    public ImageScheduler() {
+        this(DEFAULT_NETWORK_THREADS, Math.max(1, Runtime.getRuntime().availableProcessors() - 1), DEFAULT_MAX_QUEUE_SIZE);
+    }
+
+    public ImageScheduler(int networkThreads, int decodeThreads, int maxQueueSize) {
+        mNetworkExecutor = new PausableExecutor(networkThreads, maxQueueSize, "image-network");
+        mDecodeExecutor = new PausableExecutor(decodeThreads, maxQueueSize, "image-decode");
+    }
+
+    /**
+     * 提交下载任务。任务可能因为队列超出上限被丢弃，此时返回的 Future 为 cancelled
+     */
+    public Future<?> submitNetwork(Runnable runnable) {
+        return mNetworkExecutor.submitLifo(runnable);
+    }
+
+    /**
+     * 提交解码任务
+     */
+    public Future<?> submitDecode(Runnable runnable) {
+        return mDecodeExecutor.submitLifo(runnable);
+    }
+
+    /**
+     * 暂停出队，正在执行的任务不受影响，例如列表 fling 时调用
+     */
+    public void pause() {
+        mNetworkExecutor.pause();
+        mDecodeExecutor.pause();
+    }
+
+    public void resume() {
+        mNetworkExecutor.resume();
+        mDecodeExecutor.resume();
+    }
+
+    public void shutdown() {
+        mNetworkExecutor.resume();
+        mDecodeExecutor.resume();
+        mNetworkExecutor.shutdownNow();
+        mDecodeExecutor.shutdownNow();
+    }
+
+    /**
+     * @return 被丢弃的任务数
+     */
+    public int getDroppedCount() {
+        return mNetworkExecutor.droppedCount.get() + mDecodeExecutor.droppedCount.get();
+    }
+
+    /**
+     * 新任务插入队头，工作线程从队头取，所以是后进先出。
+     * 暂停时工作线程在 take / poll 中等待，任务留在队列里，恢复后仍然先执行最新的，超出上限时也能被丢弃
+     */
+    private static class LifoBlockingDeque<E> extends LinkedBlockingDeque<E> {
+
+        private final ReentrantLock pauseLock = new ReentrantLock();
+        private final Condition unpaused = pauseLock.newCondition();
+        private boolean isPaused;
+
+        @Override
+        public boolean offer(E e) {
+            return offerFirst(e);
+        }
+
+        @Override
+        public void put(E e) throws InterruptedException {
+            putFirst(e);
+        }
+
+        @Override
+        public boolean add(E e) {
+            addFirst(e);
+            return true;
+        }
+
+        @Override
+        public E take() throws InterruptedException {
+            pauseLock.lockInterruptibly();
+            try {
+                while (isPaused) {
+                    unpaused.await();
+                }
+            } finally {
+                pauseLock.unlock();
+            }
+            return super.take();
+        }
+
+        @Override
+        public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            pauseLock.lockInterruptibly();
+            try {
+                while (isPaused) {
+                    if (nanos <= 0) {
+                        return null;
+                    }
+                    nanos = unpaused.awaitNanos(nanos);
+                }
+            } finally {
+                pauseLock.unlock();
+            }
+            return super.poll(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        void pause() {
+            pauseLock.lock();
+            try {
+                isPaused = true;
+            } finally {
+                pauseLock.unlock();
+            }
+        }
+
+        void resume() {
+            pauseLock.lock();
+            try {
+                isPaused = false;
+                unpaused.signalAll();
+            } finally {
+                pauseLock.unlock();
+            }
+        }
+    }
+
+    private static class PausableExecutor extends ThreadPoolExecutor {
+        private final int maxQueueSize;
+        private final LifoBlockingDeque<Runnable> deque;
+        private final AtomicInteger droppedCount = new AtomicInteger();
+
+        PausableExecutor(int threads, int maxQueueSize, String name) {
+            this(threads, maxQueueSize, new LifoBlockingDeque<Runnable>(), name);
+        }
+
+        private PausableExecutor(int threads, int maxQueueSize, LifoBlockingDeque<Runnable> deque, final String name) {
+            super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, deque, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                    // 低于 UI 线程的优先级
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+            this.maxQueueSize = maxQueueSize;
+            this.deque = deque;
+            allowCoreThreadTimeOut(true);
+        }
+
+        /**
+         * 不用 execute：线程数不足时 execute 会把任务直接交给新线程，不经过队列，暂停就拦不住。
+         * 这里总是先入队，再按需启动线程
+         */
+        Future<?> submitLifo(Runnable runnable) {
+            FutureTask<Void> task = new FutureTask<>(runnable, null);
+            if (isShutdown()) {
+                getRejectedExecutionHandler().rejectedExecution(task, this);
+                return task;
+            }
+            deque.offer(task);
+            prestartCoreThread();
+            // 超出上限时丢掉队尾（最早提交）的任务
+            while (deque.size() > maxQueueSize) {
+                Runnable eldest = deque.pollLast();
+                if (eldest == null) {
+                    break;
+                }
+                if (eldest instanceof Future) {
+                    ((Future<?>) eldest).cancel(false);
+                }
+                droppedCount.incrementAndGet();
+            }
+            return task;
+        }
+
+        void pause() {
+            deque.pause();
+        }
+
+        void resume() {
+            deque.resume();
+        }
+    }
+}
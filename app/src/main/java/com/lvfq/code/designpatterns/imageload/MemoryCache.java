@@ -33,6 +33,14 @@ public class MemoryCache implements ImageCache {
 //               （api 1 ） value.getRowBytes() * value.getHeight() 用于计算位图在内存中所占用的字节数， = (api 12)value.getByteCount 也就是计算位图的大小
                 return value.getRowBytes() * value.getHeight() / 1024;
             }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                // 可能还在显示，由 BitmapPool 等到没有 view 显示时再复用
+                if (oldValue != newValue) {
+                    BitmapPool.getInstance().onCacheEvicted(oldValue);
+                }
+            }
         };
     }
 
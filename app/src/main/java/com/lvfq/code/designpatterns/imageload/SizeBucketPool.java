@@ -0,0 +1,147 @@
+package com.lvfq.code.designpatterns.imageload;
+
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SizeBucketPool
+ *
+ * @date 2026/10/17
+ * @desc : 按字节大小分桶的对象池，不依赖 Android，{@link BitmapPool} 的记账逻辑都在这里，方便在 JVM 上验证。
+ * 取出时返回不小于需要大小的最小对象，但不超过需要大小的 {@link #MAX_SIZE_MULTIPLE} 倍，避免小图占用大块内存。
+ */
+
+public class SizeBucketPool<T> {
+
+    static final int MAX_SIZE_MULTIPLE = 4;
+
+    public interface Adapter<T> {
+        /**
+         * 对象占用的字节数
+         */
+        int sizeOf(T item);
+
+        /**
+         * 对象被池淘汰时回调
+         */
+        void onEvicted(T item);
+    }
+
+    private final Adapter<T> adapter;
+    private final long maxSize;
+
+    // size -> 同样大小的对象，先进先出
+    private final TreeMap<Integer, LinkedList<T>> buckets = new TreeMap<>();
+    // 放入顺序，用于按最久未使用淘汰
+    private final ArrayDeque<Integer> order = new ArrayDeque<>();
+
+    private long currentSize;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long evictionCount;
+
+    public SizeBucketPool(long maxSize, Adapter<T> adapter) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        this.adapter = adapter;
+    }
+
+    /**
+     * @return 是否放入成功，失败时由调用方自行处理该对象
+     */
+    public synchronized boolean put(T item) {
+        int size = adapter.sizeOf(item);
+        if (size <= 0 || size > maxSize) {
+            return false;
+        }
+        LinkedList<T> bucket = buckets.get(size);
+        if (bucket == null) {
+            bucket = new LinkedList<>();
+            buckets.put(size, bucket);
+        }
+        bucket.addLast(item);
+        order.addLast(size);
+        currentSize += size;
+        putCount++;
+        trimToSize(maxSize);
+        return true;
+    }
+
+    /**
+     * 取出一个不小于 size 的对象，没有时返回 null
+     */
+    public synchronized T get(int size) {
+        Map.Entry<Integer, LinkedList<T>> entry = buckets.ceilingEntry(size);
+        if (entry == null || entry.getKey() > (long) size * MAX_SIZE_MULTIPLE) {
+            missCount++;
+            return null;
+        }
+        T item = removeFrom(entry.getKey(), entry.getValue());
+        order.removeFirstOccurrence(entry.getKey());
+        hitCount++;
+        return item;
+    }
+
+    private T removeFrom(Integer size, LinkedList<T> bucket) {
+        T item = bucket.removeFirst();
+        if (bucket.isEmpty()) {
+            buckets.remove(size);
+        }
+        currentSize -= size;
+        return item;
+    }
+
+    public synchronized void trimToSize(long size) {
+        while (currentSize > size && !order.isEmpty()) {
+            Integer eldest = order.removeFirst();
+            LinkedList<T> bucket = buckets.get(eldest);
+            if (bucket == null) {
+                continue;
+            }
+            T item = removeFrom(eldest, bucket);
+            evictionCount++;
+            adapter.onEvicted(item);
+        }
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized long size() {
+        return currentSize;
+    }
+
+    public long maxSize() {
+        return maxSize;
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    public synchronized long putCount() {
+        return putCount;
+    }
+
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (int) (100 * hitCount / accesses) : 0;
+        return "SizeBucketPool[size=" + currentSize + ",maxSize=" + maxSize + ",hits=" + hitCount
+                + ",misses=" + missCount + ",hitRate=" + hitPercent + "%,evictions=" + evictionCount + "]";
+    }
+}
@@ -3,20 +3,19 @@ package com.lvfq.code.dynamic.view;
 import android.content.Context;
 import android.support.annotation.Nullable;
 import android.text.Spannable;
-import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
 import android.text.TextPaint;
 import android.text.style.ClickableSpan;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.view.View;
 import android.widget.LinearLayout;
-import android.widget.TextView;
 import android.widget.Toast;
 
-import com.lvfq.code.dynamic.CircleMovementMethod;
 import com.lvfq.code.dynamic.data.CommentsBean;
 import com.lvfq.code.dynamic.data.UserBean;
 
+import java.util.ArrayDeque;
 import java.util.List;
 
 /**
@@ -26,15 +25,38 @@ import java.util.List;
  * @Github: https://github.com/lvfaqiang
  * @Blog: http://blog.csdn.net/lv_fq
  * @date 2017/9/3 下午9:58
- * @desc :
+ * @desc : 评论列表。
+ * <p>
+ * notifyDataSetChanged 按 commentsId 对比新旧列表：id 不变且内容没变的 item 不重新设置文本，
+ * 新增的 item 复用被移除的 view，顺序没变的 child 不移动。
+ * 每条评论是一个 LayoutTextView，span 和 StaticLayout 按内容缓存在 TextLayoutCache 中，
+ * 已经显示过的 item 换了内容时在后台排版。
  */
 
 public class CommentsView extends LinearLayout {
 
+    // 移除的 item 最多保留几个，下次新增时复用
+    private static final int MAX_RECYCLED = 8;
+    private static final int TEXT_SIZE_SP = 15;
+    private static final int TEXT_COLOR = 0xff686868;
+
     private Context mContext;
     private List<CommentsBean> mDatas;
     private onItemClickListener listener;
 
+    private final ArrayDeque<ItemHolder> mRecycled = new ArrayDeque<>();
+
+    // 点击 span 以外的位置
+    private final OnClickListener mItemClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            if (listener != null) {
+                ItemHolder holder = (ItemHolder) v.getTag();
+                listener.onItemClick(holder.position, holder.item);
+            }
+        }
+    };
+
     public CommentsView(Context context) {
         this(context, null);
     }
@@ -63,122 +85,208 @@ public class CommentsView extends LinearLayout {
     }
 
     public void notifyDataSetChanged() {
-        removeAllViews();
-        if (mDatas == null || mDatas.size() <= 0) {
-            return;
+        int size = mDatas == null ? 0 : mDatas.size();
+        int childCount = getChildCount();
+
+        // 现有的 item 按 commentsId 索引
+        SparseArray<ItemHolder> existing = new SparseArray<>(childCount);
+        for (int i = 0; i < childCount; i++) {
+            ItemHolder holder = (ItemHolder) getChildAt(i).getTag();
+            existing.put(holder.commentsId, holder);
+        }
+
+        // id 相同的 item 继续使用原来的 view
+        ItemHolder[] holders = new ItemHolder[size];
+        for (int i = 0; i < size; i++) {
+            int id = mDatas.get(i).getCommentsId();
+            ItemHolder holder = existing.get(id);
+            if (holder != null) {
+                existing.remove(id);
+                holders[i] = holder;
+            }
+        }
+
+        // 新增的 item 先用被移除的 view，再用之前回收的，都没有时才创建
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (holders[i] == null) {
+                if (next < existing.size()) {
+                    holders[i] = existing.valueAt(next++);
+                } else if (!mRecycled.isEmpty()) {
+                    holders[i] = mRecycled.poll();
+                } else {
+                    holders[i] = createHolder();
+                }
+            }
+        }
+
+        // 按新的顺序排列，位置已经正确的 child 不动；不再使用的 child 最后都在 size 之后
+        for (int i = 0; i < size; i++) {
+            View view = holders[i].view;
+            if (getChildAt(i) != view) {
+                if (view.getParent() == this) {
+                    removeView(view);
+                }
+                addView(view, i);
+            }
         }
+        if (getChildCount() > size) {
+            removeViews(size, getChildCount() - size);
+        }
+        for (int i = next; i < existing.size() && mRecycled.size() < MAX_RECYCLED; i++) {
+            mRecycled.add(existing.valueAt(i));
+        }
+
+        for (int i = 0; i < size; i++) {
+            bind(holders[i], mDatas.get(i), i);
+        }
+    }
+
+    private ItemHolder createHolder() {
+        LayoutTextView view = new LayoutTextView(mContext);
+        view.setTextSize(TEXT_SIZE_SP);
+        view.setTextColor(TEXT_COLOR);
+        view.setHighlightColor(0xffcccccc);
+        view.setOnClickListener(mItemClickListener);
+
         LayoutParams layoutParams = new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
         layoutParams.setMargins(0, 10, 0, 10);
-        for (int i = 0; i < mDatas.size(); i++) {
-            View view = getView(i);
-            if (view == null) {
-                throw new NullPointerException("listview item layout is null, please check getView()...");
-            }
-            addView(view, i, layoutParams);
+        view.setLayoutParams(layoutParams);
+
+        ItemHolder holder = new ItemHolder(view);
+        view.setTag(holder);
+        return holder;
+    }
+
+    /**
+     * 显示的文本没有变化时 LayoutTextView 不会重新排版
+     */
+    private void bind(ItemHolder holder, CommentsBean item, int position) {
+        holder.commentsId = item.getCommentsId();
+        holder.item = item;
+        holder.position = position;
+        String key = textKey(item);
+        if (!key.equals(holder.textKey)) {
+            holder.textKey = key;
+            holder.view.setText(key, new CommentText(item));
         }
     }
 
-    private View getView(final int position) {
-        final CommentsBean item = mDatas.get(position);
+    /**
+     * 用户 id 也算在内，span 中保存的是 UserBean
+     */
+    private static String textKey(CommentsBean item) {
+        UserBean comUser = item.getCommentsUser();
         UserBean replyUser = item.getReplyUser();
-        boolean hasReply = false;   // 是否有回复
+        StringBuilder key = new StringBuilder("comment|");
+        key.append(comUser.getUserId()).append(':').append(comUser.getUserName()).append('|');
         if (replyUser != null) {
-            hasReply = true;
+            key.append(replyUser.getUserId()).append(':').append(replyUser.getUserName());
         }
-        TextView textView = new TextView(mContext);
-        textView.setTextSize(15);
-        textView.setTextColor(0xff686868);
+        return key.append('|').append(item.getContent()).toString();
+    }
 
-        SpannableStringBuilder builder = new SpannableStringBuilder();
-        UserBean comUser = item.getCommentsUser();
-        String name = comUser.getUserName();
-        if (hasReply) {
-            builder.append(setClickableSpan(name, item.getCommentsUser()));
-            builder.append(" 回复 ");
-            builder.append(setClickableSpan(replyUser.getUserName(), item.getReplyUser()));
-
-        } else {
-            builder.append(setClickableSpan(name, item.getCommentsUser()));
-        }
-        builder.append(" : ");
-        builder.append(setClickableSpanContent(item.getContent(), position));
-        builder.append(" ");
-        textView.setText(builder);
-        // 设置点击背景色
-        textView.setHighlightColor(getResources().getColor(android.R.color.transparent));
-//        textView.setHighlightColor(0xff000000);
-        final CircleMovementMethod method = new CircleMovementMethod(0xffcccccc, 0xffcccccc);
-        textView.setMovementMethod(method);
-
-        textView.setOnClickListener(new OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (method.isParseTv()) {
-                    if (listener != null) {
-                        listener.onItemClick(position, item);
-                    }
-                }
+    /**
+     * 生成一条评论的文本，可能在后台线程调用，所以在创建时取出需要的字段
+     */
+    private static class CommentText implements TextLayoutCache.TextFactory {
+        private final UserBean commentsUser;
+        private final UserBean replyUser;   // 有回复时不为空
+        private final String content;
+
+        CommentText(CommentsBean item) {
+            commentsUser = item.getCommentsUser();
+            replyUser = item.getReplyUser();
+            content = item.getContent();
+        }
+
+        @Override
+        public CharSequence create() {
+            SpannableStringBuilder builder = new SpannableStringBuilder();
+            appendSpan(builder, commentsUser.getUserName(), new UserSpan(commentsUser));
+            if (replyUser != null) {
+                builder.append(" 回复 ");
+                appendSpan(builder, replyUser.getUserName(), new UserSpan(replyUser));
             }
-        });
+            builder.append(" : ");
+            appendSpan(builder, content, new ContentSpan(content));
+            builder.append(" ");
+            return builder;
+        }
+    }
 
-        return textView;
+    private static void appendSpan(SpannableStringBuilder builder, String text, Object span) {
+        int start = builder.length();
+        builder.append(text);
+        builder.setSpan(span, start, builder.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
     }
 
     /**
-     * 设置评论内容点击事件
-     *
-     * @param item
-     * @param position
-     * @return
+     * 评论用户、回复用户名字。排好版的文本会被缓存、在多个 view 中共用，span 中只保存和内容有关的数据
      */
-    public SpannableString setClickableSpanContent(final String item, final int position) {
-        final SpannableString string = new SpannableString(item);
-        ClickableSpan span = new ClickableSpan() {
-            @Override
-            public void onClick(View widget) {
-                // TODO: 2017/9/3 评论内容点击事件
-                Toast.makeText(mContext, "position: " + position + " , content: " + item, Toast.LENGTH_SHORT).show();
-            }
+    private static class UserSpan extends ClickableSpan {
+        private final UserBean user;
 
-            @Override
-            public void updateDrawState(TextPaint ds) {
-                super.updateDrawState(ds);
-                // 设置显示的内容文本颜色
-                ds.setColor(0xff686868);
-                ds.setUnderlineText(false);
-            }
-        };
-        string.setSpan(span, 0, string.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-        return string;
+        UserSpan(UserBean user) {
+            this.user = user;
+        }
+
+        @Override
+        public void onClick(View widget) {
+            // TODO: 2017/9/3 评论用户名字点击事件
+            Toast.makeText(widget.getContext(), user.getUserName(), Toast.LENGTH_SHORT).show();
+        }
+
+        @Override
+        public void updateDrawState(TextPaint ds) {
+            super.updateDrawState(ds);
+            // 设置显示的用户名文本颜色
+            ds.setColor(0xff387dcc);
+            ds.setUnderlineText(false);
+        }
     }
 
     /**
-     * 设置评论用户名字点击事件
-     *
-     * @param item
-     * @param bean
-     * @return
+     * 评论内容，position 从点击的 view 中取
      */
-    public SpannableString setClickableSpan(final String item, final UserBean bean) {
-        final SpannableString string = new SpannableString(item);
-        ClickableSpan span = new ClickableSpan() {
-            @Override
-            public void onClick(View widget) {
-                // TODO: 2017/9/3 评论用户名字点击事件
-                Toast.makeText(mContext, bean.getUserName(), Toast.LENGTH_SHORT).show();
-            }
+    private static class ContentSpan extends ClickableSpan {
+        private final String content;
 
-            @Override
-            public void updateDrawState(TextPaint ds) {
-                super.updateDrawState(ds);
-                // 设置显示的用户名文本颜色
-                ds.setColor(0xff387dcc);
-                ds.setUnderlineText(false);
-            }
-        };
+        ContentSpan(String content) {
+            this.content = content;
+        }
+
+        @Override
+        public void onClick(View widget) {
+            // TODO: 2017/9/3 评论内容点击事件
+            ItemHolder holder = (ItemHolder) widget.getTag();
+            Toast.makeText(widget.getContext(), "position: " + holder.position + " , content: " + content, Toast.LENGTH_SHORT).show();
+        }
 
-        string.setSpan(span, 0, string.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-        return string;
+        @Override
+        public void updateDrawState(TextPaint ds) {
+            super.updateDrawState(ds);
+            // 设置显示的内容文本颜色
+            ds.setColor(TEXT_COLOR);
+            ds.setUnderlineText(false);
+        }
+    }
+
+    /**
+     * 一条评论对应的 view
+     */
+    private static class ItemHolder {
+        final LayoutTextView view;
+
+        int commentsId;
+        CommentsBean item;
+        int position;
+        // 当前显示的文本
+        String textKey;
+
+        ItemHolder(LayoutTextView view) {
+            this.view = view;
+        }
     }
 
     /**
@@ -0,0 +1,82 @@
+package com.lvfq.code.dynamic.view;
+
+/**
+ * ImageGridLayout
+ *
+ * @date 2026/10/17
+ * @desc : MultiImageView 的九宫格尺寸计算，不依赖 Android。
+ * <p>
+ * 多张图时每格宽高相同，按一行三张计算（和内容右侧对齐），4 张时一行两张；
+ * 一张图时只限制最大宽高（内容宽度的 2/3），实际大小由图片决定。
+ */
+
+public class ImageGridLayout {
+
+    private static final int MAX_PER_ROW_COUNT = 3;
+
+    private final int gap;
+
+    private int count;
+    private int columns;
+    private int rows;
+    private int cellSize;
+    private int singleMaxSize;
+
+    /**
+     * @param gap 图片间的间距
+     */
+    public ImageGridLayout(int gap) {
+        this.gap = gap;
+    }
+
+    /**
+     * @param count        图片数量
+     * @param contentWidth 去掉 padding 的宽度
+     */
+    public void measure(int count, int contentWidth) {
+        this.count = count;
+        singleMaxSize = contentWidth * 2 / 3;
+        if (count <= 1) {
+            columns = count;
+            rows = count;
+            cellSize = 0;
+            return;
+        }
+        columns = count == 4 ? 2 : MAX_PER_ROW_COUNT;
+        rows = (count + columns - 1) / columns;
+        cellSize = Math.max(0, (contentWidth - gap * (MAX_PER_ROW_COUNT - 1)) / MAX_PER_ROW_COUNT);
+    }
+
+    public boolean isSingle() {
+        return count == 1;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * 一张图时的最大宽高
+     */
+    public int getSingleMaxSize() {
+        return singleMaxSize;
+    }
+
+    /**
+     * 多张图时的总高度，不含 padding
+     */
+    public int getGridHeight() {
+        return rows == 0 ? 0 : rows * cellSize + (rows - 1) * gap;
+    }
+
+    /**
+     * 第 index 张图相对内容区域的左边
+     */
+    public int getLeft(int index) {
+        return (index % columns) * (cellSize + gap);
+    }
+
+    public int getTop(int index) {
+        return (index / columns) * (cellSize + gap);
+    }
+}
@@ -0,0 +1,297 @@
+package com.lvfq.code.dynamic.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.support.annotation.Nullable;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.TextPaint;
+import android.text.style.ClickableSpan;
+import android.util.AttributeSet;
+import android.support.v4.view.ViewCompat;
+import android.text.TextUtils;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.TextView;
+
+/**
+ * LayoutTextView
+ *
+ * @date 2026/10/17
+ * @desc : 只负责绘制 TextLayoutCache 中的 StaticLayout 的轻量 View，替代评论、点赞中的 TextView。
+ * <p>
+ * 文本由 setText(key, factory) 设置：已经测量过、知道宽度时缓存中没有的 layout 在后台生成，
+ * 生成期间保持原来的高度、不绘制，生成后重新测量；还不知道宽度时在测量中同步生成。
+ * 点击 ClickableSpan 时高亮这一段并回调 span 的 onClick，点击其他位置走 View 本身的 OnClickListener。
+ * 不是 TextView，无障碍服务需要的文本在 onInitializeAccessibilityNodeInfo 中提供。
+ */
+
+public class LayoutTextView extends View {
+
+    private final TextPaint mPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mHighlightPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path mHighlightPath = new Path();
+
+    private String mKey;
+    private TextLayoutCache.TextFactory mFactory;
+    private Layout mLayout;
+    private ClickableSpan mPressedSpan;
+    // 后台正在生成的 layout 的宽度，0 表示没有；生成期间的占位高度
+    private int mPendingWidth;
+    private int mPendingHeight;
+
+    public LayoutTextView(Context context) {
+        this(context, null);
+    }
+
+    public LayoutTextView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public LayoutTextView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        mPaint.density = getResources().getDisplayMetrics().density;
+        mHighlightPaint.setColor(0xffcccccc);
+        setTextSize(15);
+        setTextColor(0xff686868);
+        // 没有点击事件时默认不会被无障碍服务读到
+        ViewCompat.setImportantForAccessibility(this, ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_YES);
+    }
+
+    /**
+     * @param size 单位 sp
+     */
+    public void setTextSize(float size) {
+        setRawTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, size, getResources().getDisplayMetrics()));
+    }
+
+    public void setRawTextSize(float px) {
+        if (mPaint.getTextSize() != px) {
+            mPaint.setTextSize(px);
+            mLayout = null;
+            mPendingWidth = 0;
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    public void setTextColor(int color) {
+        if (mPaint.getColor() != color) {
+            mPaint.setColor(color);
+            // 缓存的 layout 引用的是生成时的 paint，颜色变了要重新取
+            mLayout = null;
+            mPendingWidth = 0;
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    /**
+     * 按下 ClickableSpan 时的背景色
+     */
+    public void setHighlightColor(int color) {
+        mHighlightPaint.setColor(color);
+    }
+
+    public TextPaint getPaint() {
+        return mPaint;
+    }
+
+    /**
+     * @param key     文本内容的唯一标识，相同的 key 必须生成相同的文本
+     * @param factory 生成文本，缓存中没有时才调用
+     */
+    public void setText(final String key, TextLayoutCache.TextFactory factory) {
+        if (key.equals(mKey)) {
+            return;
+        }
+        mKey = key;
+        mFactory = factory;
+        mPressedSpan = null;
+        int width = mLayout != null ? mLayout.getWidth() : mPendingWidth;
+        int height = mLayout != null ? mLayout.getHeight() : mPendingHeight;
+        Layout cached = width > 0 ? TextLayoutCache.get(key, mPaint, width) : null;
+        mPendingWidth = 0;
+        if (cached != null) {
+            // 宽度不变、高度也不变时不需要重新测量
+            if (mLayout == null || cached.getHeight() != height) {
+                requestLayout();
+            }
+            mLayout = cached;
+        } else if (width > 0) {
+            mLayout = null;
+            mPendingWidth = width;
+            mPendingHeight = height;
+            TextLayoutCache.prefetch(key, factory, mPaint, width, new Runnable() {
+                @Override
+                public void run() {
+                    if (key.equals(mKey) && mPendingWidth > 0) {
+                        // 生成的 layout 可能已经被挤出缓存，重新测量时没有就同步生成，不再等待
+                        mPendingWidth = 0;
+                        requestLayout();
+                        invalidate();
+                    }
+                }
+            });
+        } else {
+            mLayout = null;
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    /**
+     * 当前显示的文本，没有设置时为 null
+     */
+    public CharSequence getText() {
+        if (mLayout != null) {
+            return mLayout.getText();
+        }
+        return mFactory != null ? mFactory.create() : null;
+    }
+
+    /**
+     * 文本可用的宽度，还没有测量过时为 0
+     */
+    public int getTextWidth() {
+        return Math.max(0, getWidth() - getPaddingLeft() - getPaddingRight());
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+        int padding = getPaddingLeft() + getPaddingRight();
+        int width;
+        if (mFactory == null) {
+            mLayout = null;
+            width = widthMode == MeasureSpec.EXACTLY ? widthSize : padding;
+        } else {
+            int textWidth;
+            if (widthMode == MeasureSpec.UNSPECIFIED) {
+                textWidth = (int) Math.ceil(Layout.getDesiredWidth(mFactory.create(), mPaint));
+            } else {
+                textWidth = widthSize - padding;
+            }
+            if (mLayout == null || mLayout.getWidth() != textWidth) {
+                Layout cached = TextLayoutCache.get(mKey, mPaint, textWidth);
+                if (cached == null && textWidth == mPendingWidth) {
+                    // 后台还没有生成好，先按原来的高度占位
+                    mLayout = null;
+                } else {
+                    mLayout = cached != null ? cached : TextLayoutCache.obtain(mKey, mFactory, mPaint, textWidth);
+                    mPendingWidth = 0;
+                }
+            }
+            if (widthMode == MeasureSpec.EXACTLY) {
+                width = widthSize;
+            } else if (mLayout == null) {
+                width = textWidth + padding;
+                if (widthMode == MeasureSpec.AT_MOST) {
+                    width = Math.min(width, widthSize);
+                }
+            } else {
+                // wrap_content 时取最长的一行
+                int max = 0;
+                for (int i = 0; i < mLayout.getLineCount(); i++) {
+                    max = Math.max(max, (int) Math.ceil(mLayout.getLineWidth(i)));
+                }
+                width = max + padding;
+                if (widthMode == MeasureSpec.AT_MOST) {
+                    width = Math.min(width, widthSize);
+                }
+            }
+        }
+        int textHeight = mLayout != null ? mLayout.getHeight() : mPendingWidth > 0 ? mPendingHeight : 0;
+        int height = textHeight + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mLayout == null) {
+            return;
+        }
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        if (mPressedSpan != null) {
+            canvas.drawPath(mHighlightPath, mHighlightPaint);
+        }
+        mLayout.draw(canvas);
+        canvas.restore();
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setClassName(TextView.class.getName());
+        CharSequence text = getText();
+        if (!TextUtils.isEmpty(text)) {
+            info.setText(text);
+        }
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        CharSequence text = getText();
+        if (!TextUtils.isEmpty(text)) {
+            event.getText().add(text);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            ClickableSpan span = findSpan(event);
+            if (span != null) {
+                Spanned text = (Spanned) mLayout.getText();
+                mLayout.getSelectionPath(text.getSpanStart(span), text.getSpanEnd(span), mHighlightPath);
+                mPressedSpan = span;
+                invalidate();
+                return true;
+            }
+        } else if (mPressedSpan != null) {
+            ClickableSpan span = mPressedSpan;
+            if (action == MotionEvent.ACTION_UP) {
+                mPressedSpan = null;
+                invalidate();
+                if (findSpan(event) == span) {
+                    span.onClick(this);
+                }
+                return true;
+            } else if (action == MotionEvent.ACTION_CANCEL) {
+                mPressedSpan = null;
+                invalidate();
+                return true;
+            }
+            return true;
+        }
+        // 不在 span 上时按普通 View 处理点击
+        return super.onTouchEvent(event);
+    }
+
+    private ClickableSpan findSpan(MotionEvent event) {
+        if (mLayout == null || !(mLayout.getText() instanceof Spanned)) {
+            return null;
+        }
+        int x = (int) event.getX() - getPaddingLeft();
+        int y = (int) event.getY() - getPaddingTop();
+        if (y < 0 || y > mLayout.getHeight()) {
+            return null;
+        }
+        int line = mLayout.getLineForVertical(y);
+        if (x < mLayout.getLineLeft(line) || x > mLayout.getLineRight(line)) {
+            return null;
+        }
+        int offset = mLayout.getOffsetForHorizontal(line, x);
+        ClickableSpan[] spans = ((Spanned) mLayout.getText()).getSpans(offset, offset, ClickableSpan.class);
+        return spans.length > 0 ? spans[0] : null;
+    }
+}
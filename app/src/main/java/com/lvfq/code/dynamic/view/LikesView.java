@@ -1,6 +1,7 @@
 package com.lvfq.code.dynamic.view;
 
 import android.content.Context;
+import android.content.res.TypedArray;
 import android.support.annotation.Nullable;
 import android.text.Spannable;
 import android.text.SpannableString;
@@ -11,12 +12,11 @@ import android.text.style.DynamicDrawableSpan;
 import android.text.style.ImageSpan;
 import android.util.AttributeSet;
 import android.view.View;
-import android.widget.TextView;
 
 import com.lvfq.code.R;
-import com.lvfq.code.dynamic.CircleMovementMethod;
 import com.lvfq.code.dynamic.data.UserBean;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -26,10 +26,12 @@ import java.util.List;
  * @Github: https://github.com/lvfaqiang
  * @Blog: http://blog.csdn.net/lv_fq
  * @date 2017/9/4 上午11:56
- * @desc :
+ * @desc : 点赞列表，span 和 StaticLayout 按内容缓存在 TextLayoutCache 中，已经测量过时换了内容在后台排版
  */
 
-public class LikesView extends TextView {
+public class LikesView extends LayoutTextView {
+
+    private static final int[] ATTRS = {android.R.attr.textSize, android.R.attr.textColor};
 
     private Context mContext;
     private List<UserBean> list;
@@ -45,6 +47,15 @@ public class LikesView extends TextView {
     public LikesView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         mContext = context;
+        setHighlightColor(0xffcccccc);
+        TypedArray a = context.obtainStyledAttributes(attrs, ATTRS);
+        if (a.hasValue(0)) {
+            setRawTextSize(a.getDimensionPixelSize(0, 0));
+        }
+        if (a.hasValue(1)) {
+            setTextColor(a.getColor(1, 0));
+        }
+        a.recycle();
     }
 
     /**
@@ -63,37 +74,61 @@ public class LikesView extends TextView {
         if (list == null || list.size() <= 0) {
             return;
         }
-        SpannableStringBuilder builder = new SpannableStringBuilder();
-        builder.append(setImageSpan());
-        for (int i = 0; i < list.size(); i++) {
-            UserBean item = list.get(i);
-            builder.append(setClickableSpan(item.getUserName(), item));
-            if (i != list.size() - 1) {
-                builder.append(" , ");
-            } else {
-                builder.append(" ");
-            }
+        setText(textKey(list), new LikesText(mContext, list));
+    }
+
+    private static String textKey(List<UserBean> list) {
+        StringBuilder key = new StringBuilder("likes");
+        for (UserBean item : list) {
+            key.append('|').append(item.getUserId()).append(':').append(item.getUserName());
         }
+        return key.toString();
+    }
 
-        setText(builder);
-        setMovementMethod(new CircleMovementMethod(0xffcccccc, 0xffcccccc));
-//        setMovementMethod(LinkMovementMethod.getInstance());
+    /**
+     * 可能在后台线程调用，创建时复制一份列表
+     */
+    private static class LikesText implements TextLayoutCache.TextFactory {
+        private final Context context;
+        private final List<UserBean> list;
+
+        LikesText(Context context, List<UserBean> list) {
+            this.context = context.getApplicationContext();
+            this.list = new ArrayList<>(list);
+        }
+
+        @Override
+        public CharSequence create() {
+            SpannableStringBuilder builder = new SpannableStringBuilder();
+            builder.append(setImageSpan(context));
+            for (int i = 0; i < list.size(); i++) {
+                UserBean item = list.get(i);
+                builder.append(setClickableSpan(item.getUserName(), item));
+                if (i != list.size() - 1) {
+                    builder.append(" , ");
+                } else {
+                    builder.append(" ");
+                }
+            }
+            return builder;
+        }
     }
 
     /**
-     * 设置评论用户名字点击事件
+     * 设置评论用户名字点击事件。文本会被缓存、在多个 view 中共用，回调给点击的那个 view 的 listener
      *
      * @param item
      * @param bean
      * @return
      */
-    public SpannableString setClickableSpan(final String item, final UserBean bean) {
+    private static SpannableString setClickableSpan(final String item, final UserBean bean) {
         final SpannableString string = new SpannableString(item);
         ClickableSpan span = new ClickableSpan() {
             @Override
             public void onClick(View widget) {
                 // TODO: 2017/9/3 评论用户名字点击事件
 //                Toast.makeText(mContext, bean.getUserName(), Toast.LENGTH_SHORT).show();
+                onItemClickListener listener = ((LikesView) widget).listener;
                 if (listener != null) {
                     listener.onItemClick(0, bean);
                 }
@@ -117,10 +152,10 @@ public class LikesView extends TextView {
      *
      * @return
      */
-    private SpannableString setImageSpan() {
+    private static SpannableString setImageSpan(Context context) {
         String text = "  ";
         SpannableString imgSpanText = new SpannableString(text);
-        imgSpanText.setSpan(new ImageSpan(getContext(), R.mipmap.img_like_icon, DynamicDrawableSpan.ALIGN_BASELINE),
+        imgSpanText.setSpan(new ImageSpan(context, R.mipmap.img_like_icon, DynamicDrawableSpan.ALIGN_BASELINE),
                 0, 1, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         return imgSpanText;
     }
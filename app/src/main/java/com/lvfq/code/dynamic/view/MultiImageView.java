@@ -4,9 +4,9 @@ import android.content.Context;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.ImageView.ScaleType;
-import android.widget.LinearLayout;
 
 import com.bumptech.glide.Glide;
 import com.lvfq.library.utils.LvDPUtil;
@@ -17,29 +17,41 @@ import java.util.List;
  * @author shoyu
  * @ClassName MultiImageView.java
  * @Description: 显示1~N张图片的View
+ * <p>
+ * 直接按九宫格摆放图片，不再嵌套每行一个 LinearLayout（尺寸见 ImageGridLayout）。
+ * 图片 view 创建后一直留在这个 View 中，数量变少时多出来的设为 GONE 并取消加载、释放图片，下次 setList 继续使用；
+ * 在 RecyclerView 中重新 bind 时只有 url 变化的图片才重新加载。
  */
 
-public class MultiImageView extends LinearLayout {
-    public static int MAX_WIDTH = 0;
+public class MultiImageView extends ViewGroup {
 
     // 照片的Url列表
     private List<String> imagesList;
 
-    /**
-     * 长度 单位为Pixel *
-     */
-    private int pxOneMaxWandH;  // 单张图最大允许宽高
-    private int pxMoreWandH = 0;// 多张图的宽高
     private int pxImagePadding = LvDPUtil.dip2px(3);// 图片间的间距
 
-    private int MAX_PER_ROW_COUNT = 3;// 每行显示最大数
+    private final ImageGridLayout mGrid = new ImageGridLayout(pxImagePadding);
 
-    private LayoutParams onePicPara;
-    private LayoutParams morePara, moreParaColumnFirst;
-    private LayoutParams rowPara;
+    // 当前显示的图片数量，child 中前 mCount 个可见
+    private int mCount;
+    // 每个 child 当前加载的 url
+    private String[] mBoundUrls = new String[0];
+    // 每个 child 当前是否按一张图的方式显示，隐藏期间保持不变，再次显示时和需要的方式比较
+    private boolean[] mSingleCells = new boolean[0];
+    // 上一次 setList 是否为一张图
+    private boolean mSingleMode;
 
     private OnItemClickListener mOnItemClickListener;
 
+    private final OnClickListener mCellClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            if (mOnItemClickListener != null) {
+                mOnItemClickListener.onItemClick(v, (Integer) v.getTag());
+            }
+        }
+    };
+
     public void setOnItemClickListener(OnItemClickListener onItemClickListener) {
         mOnItemClickListener = onItemClickListener;
     }
@@ -57,157 +69,131 @@ public class MultiImageView extends LinearLayout {
             throw new IllegalArgumentException("imageList is null...");
         }
         imagesList = lists;
-
-        if (MAX_WIDTH > 0) {
-            // 如果需要两张和四张图横向铺满，
-//            if (lists.size() == 2 || lists.size() == 4) {
-//                pxMoreWandH = (MAX_WIDTH - pxImagePadding) / 2;
-//            } else {
-            pxMoreWandH = (MAX_WIDTH - pxImagePadding * 2) / 3; //解决右侧图片和内容对不齐问题
-//            }
-            pxOneMaxWandH = MAX_WIDTH * 2 / 3;  // 一张图的时候，图片宽度
-            initImageLayoutParams();
-        }
-
         initView();
     }
 
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        if (MAX_WIDTH == 0) {
-            int width = measureWidth(widthMeasureSpec);
-            if (width > 0) {
-                MAX_WIDTH = width - getPaddingLeft() - getPaddingRight();
-                if (imagesList != null && imagesList.size() > 0) {
-                    setList(imagesList);
-                }
+    // 根据图片数量复用 / 创建 ImageView，只重新加载 url 变化的图片
+    private void initView() {
+        int count = imagesList.size();
+        boolean single = count == 1;
+        boolean sizeChanged = count != mCount || single != mSingleMode;
+
+        ensureCells(count);
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (i >= count && mBoundUrls[i] != null) {
+                // 隐藏的 child 不再持有 Glide 请求和图片，再次显示时重新加载
+                Glide.clear(child);
+                mBoundUrls[i] = null;
             }
+            child.setVisibility(i < count ? VISIBLE : GONE);
         }
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-    }
-
-    /**
-     * Determines the width of this view
-     *
-     * @param measureSpec A measureSpec packed into an int
-     * @return The width of the view, honoring constraints from measureSpec
-     */
-    private int measureWidth(int measureSpec) {
-        int result = 0;
-        int specMode = MeasureSpec.getMode(measureSpec);
-        int specSize = MeasureSpec.getSize(measureSpec);
-
-        if (specMode == MeasureSpec.EXACTLY) {
-            // We were told how big to be
-            result = specSize;
-        } else {
-            // Measure the text
-            // result = (int) mTextPaint.measureText(mText) + getPaddingLeft()
-            // + getPaddingRight();
-            if (specMode == MeasureSpec.AT_MOST) {
-                // Respect AT_MOST value if that was what is called for by
-                // measureSpec
-                result = Math.min(result, specSize);
+        mSingleMode = single;
+        mCount = count;
+
+        for (int i = 0; i < count; i++) {
+            // 一张 -> 零张 -> 多张时 child 0 中间没有显示过，不能只比较上一次 setList
+            if (mSingleCells[i] != single) {
+                applyScaleType((ImageView) getChildAt(i), single);
+                mSingleCells[i] = single;
+                // 显示方式变了，图片大小不同，需要重新加载
+                mBoundUrls[i] = null;
+            }
+            String url = imagesList.get(i);
+            if (TextUtils.isEmpty(url)) {
+                url = "";
+            }
+            if (!url.equals(mBoundUrls[i])) {
+                mBoundUrls[i] = url;
+                // TODO: 2016/10/18 之后设置网络图片
+                Glide.with(getContext()).load(url).into((ImageView) getChildAt(i));
             }
         }
-        return result;
-    }
-
-    private void initImageLayoutParams() {
-        int wrap = LayoutParams.WRAP_CONTENT;
-        int match = LayoutParams.MATCH_PARENT;
-
-        onePicPara = new LayoutParams(pxOneMaxWandH, wrap);
-
-        moreParaColumnFirst = new LayoutParams(pxMoreWandH, pxMoreWandH);
-        morePara = new LayoutParams(pxMoreWandH, pxMoreWandH);
-        morePara.setMargins(pxImagePadding, 0, 0, 0);
-
-        rowPara = new LayoutParams(match, wrap);
+        if (sizeChanged) {
+            requestLayout();
+        }
     }
 
-    // 根据imageView的数量初始化不同的View布局,还要为每一个View作点击效果
-    private void initView() {
-        this.setOrientation(VERTICAL);
-        this.removeAllViews();
-        if (MAX_WIDTH == 0) {
-            //为了触发onMeasure()来测量MultiImageView的最大宽度，MultiImageView的宽设置为match_parent
-            addView(new View(getContext()));
+    /**
+     * child 不够时创建，只增不减
+     */
+    private void ensureCells(int count) {
+        if (getChildCount() >= count) {
             return;
         }
-
-        if (imagesList == null || imagesList.size() == 0) {
-            return;
+        String[] bound = new String[count];
+        System.arraycopy(mBoundUrls, 0, bound, 0, mBoundUrls.length);
+        mBoundUrls = bound;
+        boolean[] singleCells = new boolean[count];
+        System.arraycopy(mSingleCells, 0, singleCells, 0, mSingleCells.length);
+        mSingleCells = singleCells;
+        for (int i = getChildCount(); i < count; i++) {
+            ImageView imageView = new ColorFilterImageView(getContext());
+            applyScaleType(imageView, false);
+            imageView.setTag(i);
+            imageView.setOnClickListener(mCellClickListener);
+            // 不触发 requestLayout，initView 中统一处理
+            addViewInLayout(imageView, i, generateDefaultLayoutParams(), true);
         }
+    }
 
-        if (imagesList.size() == 1) {
-            addView(createImageView(0, false));
+    private void applyScaleType(ImageView imageView, boolean single) {
+        if (single) {
+            imageView.setAdjustViewBounds(true);
+            imageView.setScaleType(ScaleType.FIT_START);
         } else {
-            int allCount = imagesList.size();
-            if (allCount == 4) {
-                MAX_PER_ROW_COUNT = 2;
-            } else {
-                MAX_PER_ROW_COUNT = 3;
-            }
-            int rowCount = allCount / MAX_PER_ROW_COUNT
-                    + (allCount % MAX_PER_ROW_COUNT > 0 ? 1 : 0);// 行数
-            for (int rowCursor = 0; rowCursor < rowCount; rowCursor++) {
-                LinearLayout rowLayout = new LinearLayout(getContext());
-                rowLayout.setOrientation(LinearLayout.HORIZONTAL);
-
-                rowLayout.setLayoutParams(rowPara);
-                if (rowCursor != 0) {
-                    rowLayout.setPadding(0, pxImagePadding, 0, 0);
-                }
-
-                int columnCount = allCount % MAX_PER_ROW_COUNT == 0 ? MAX_PER_ROW_COUNT
-                        : allCount % MAX_PER_ROW_COUNT;//每行的列数
-                if (rowCursor != rowCount - 1) {
-                    columnCount = MAX_PER_ROW_COUNT;
-                }
-                addView(rowLayout);
-
-                int rowOffset = rowCursor * MAX_PER_ROW_COUNT;// 行偏移
-                for (int columnCursor = 0; columnCursor < columnCount; columnCursor++) {
-                    int position = columnCursor + rowOffset;
-                    rowLayout.addView(createImageView(position, true));
-                }
-            }
+            imageView.setAdjustViewBounds(false);
+            imageView.setScaleType(ScaleType.CENTER_CROP);
         }
     }
 
-    private ImageView createImageView(final int position, final boolean isMultiImage) {
-        String url = "";
-        if (!TextUtils.isEmpty(imagesList.get(position))) {
-            url = imagesList.get(position);
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // 宽度需要是 match_parent 或者固定值
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int contentWidth = width - getPaddingLeft() - getPaddingRight();
+        mGrid.measure(mCount, contentWidth);
+
+        int contentHeight;
+        if (mCount == 0) {
+            contentHeight = 0;
+        } else if (mGrid.isSingle()) {
+            View child = getChildAt(0);
+            int max = mGrid.getSingleMaxSize();
+            ((ImageView) child).setMaxHeight(max);
+            // 宽度固定，高度随图片比例，不超过 max
+            child.measure(MeasureSpec.makeMeasureSpec(max, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(max, MeasureSpec.AT_MOST));
+            contentHeight = child.getMeasuredHeight();
+        } else {
+            int cellSpec = MeasureSpec.makeMeasureSpec(mGrid.getCellSize(), MeasureSpec.EXACTLY);
+            for (int i = 0; i < mCount; i++) {
+                getChildAt(i).measure(cellSpec, cellSpec);
+            }
+            contentHeight = mGrid.getGridHeight();
         }
+        setMeasuredDimension(width, resolveSize(contentHeight + getPaddingTop() + getPaddingBottom(), heightMeasureSpec));
+    }
 
-        ImageView imageView = new ColorFilterImageView(getContext());
-        if (isMultiImage) {
-            imageView.setScaleType(ScaleType.CENTER_CROP);
-            imageView.setLayoutParams(position % MAX_PER_ROW_COUNT == 0 ? moreParaColumnFirst : morePara);
-        } else {
-            imageView.setAdjustViewBounds(true);
-            imageView.setScaleType(ScaleType.FIT_START);
-            imageView.setMaxHeight(pxOneMaxWandH);
-            imageView.setLayoutParams(onePicPara);
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int left = getPaddingLeft();
+        int top = getPaddingTop();
+        for (int i = 0; i < mCount; i++) {
+            View child = getChildAt(i);
+            int childLeft = left + mGrid.getLeft(i);
+            int childTop = top + mGrid.getTop(i);
+            child.layout(childLeft, childTop,
+                    childLeft + child.getMeasuredWidth(), childTop + child.getMeasuredHeight());
         }
+    }
 
-        imageView.setId(url.hashCode());
-        imageView.setOnClickListener(new OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (mOnItemClickListener != null) {
-                    mOnItemClickListener.onItemClick(v, position);
-                }
-            }
-        });
-        // TODO: 2016/10/18 之后设置网络图片
-        Glide.with(getContext()).load(url).into(imageView);
-        return imageView;
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
     }
 
     public interface OnItemClickListener {
         void onItemClick(View view, int position);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package com.lvfq.code.dynamic.view;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * TextLayoutCache
+ *
+ * @date 2026/10/17
+ * @desc : 排好版的 StaticLayout 缓存，key 由文本内容、宽度、字号、颜色组成。
+ * <p>
+ * 生成 span 和 StaticLayout（分行、测量）都比较耗时。LayoutTextView 知道宽度时用 prefetch 放到后台线程，
+ * 生成后重新测量、从缓存中取，在 onDraw 中直接绘制；还不知道宽度时在 obtain 中同步生成。
+ */
+
+public class TextLayoutCache {
+
+    private static final int MAX_SIZE = 256;
+
+    public interface TextFactory {
+        /**
+         * 生成要显示的文本，prefetch 时在后台线程调用
+         */
+        CharSequence create();
+    }
+
+    // LruCache 本身是线程安全的
+    private static final LruCache<String, Layout> sCache = new LruCache<>(MAX_SIZE);
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "text-layout");
+            // 低于 UI 线程的优先级
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    });
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private TextLayoutCache() {
+    }
+
+    public static String key(String contentKey, TextPaint paint, int width) {
+        return contentKey + '|' + width + '|' + paint.getTextSize() + '|' + paint.getColor();
+    }
+
+    public static Layout get(String contentKey, TextPaint paint, int width) {
+        return sCache.get(key(contentKey, paint, width));
+    }
+
+    /**
+     * 从缓存中取，没有时同步生成
+     */
+    public static Layout obtain(String contentKey, TextFactory factory, TextPaint paint, int width) {
+        String key = key(contentKey, paint, width);
+        Layout layout = sCache.get(key);
+        if (layout == null) {
+            // 缓存中的 layout 会一直引用 paint，用副本，View 之后修改字号颜色不影响缓存
+            layout = build(factory.create(), new TextPaint(paint), width);
+            sCache.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * 在后台线程生成并放入缓存，已经在缓存中的忽略
+     *
+     * @param paint 后台线程使用的是它的副本，调用之后再修改 paint 不影响这次生成
+     * @param done  生成后在主线程回调，可以为 null
+     */
+    public static void prefetch(final String contentKey, final TextFactory factory, TextPaint paint,
+                                final int width, final Runnable done) {
+        if (width <= 0 || sCache.get(key(contentKey, paint, width)) != null) {
+            return;
+        }
+        // TextPaint 不是线程安全的，不能和 View 绘制时共用
+        final TextPaint copy = new TextPaint(paint);
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                obtain(contentKey, factory, copy, width);
+                if (done != null) {
+                    sMainHandler.post(done);
+                }
+            }
+        });
+    }
+
+    static Layout build(CharSequence text, TextPaint paint, int width) {
+        return new StaticLayout(text, paint, Math.max(0, width), Layout.Alignment.ALIGN_NORMAL, 1f, 0f, false);
+    }
+}
@@ -0,0 +1,494 @@
+package com.lvfq.code.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+
+/**
+ * CoalescingInterceptor
+ *
+ * @date 2026/10/17
+ * @desc : 合并同时发出的相同请求。
+ * <p>
+ * 相同的 GET（method + url + 请求头）正在请求时，后来的请求不再发出，共用第一个请求的响应。
+ * POST 默认不合并，接口声明了 @Headers(CoalescingInterceptor.HEADER_IDEMPOTENT) 时按 url + 请求头 + 请求体合并，
+ * 该请求头在发出前移除。
+ * <p>
+ * 响应体不预先读到内存：第一个请求边读边把数据复制一份，等待中的请求从这份副本中读，
+ * 所以第一个请求仍然是流式的。只在有等待请求时复制：第一个请求开始读响应体时还没有等待请求，就不再接受合并；
+ * 副本超过 MAX_SHARED_BODY 后也不再接受新的合并。
+ * 等待中的请求同样受超时和 Call.cancel() 控制。等待响应头超时，或者第一个请求失败、被取消、响应体没读完就关闭，
+ * 而等待中的请求还没有读到数据时，改为自己发请求。
+ * 作为 Application Interceptor 添加，并且放在 HttpCacheInterceptor 之前。
+ */
+
+public class CoalescingInterceptor implements Interceptor {
+
+    public static final String HEADER_IDEMPOTENT = "X-Idempotent: true";
+    private static final String IDEMPOTENT_NAME = "X-Idempotent";
+
+    private static final long MAX_SHARED_BODY = 512 * 1024;
+    // 等待时检查 Call 是否被取消的间隔
+    private static final long CANCEL_CHECK_MILLIS = 100;
+    // SharedSource 需要自己重新请求
+    private static final long FALLBACK = -2;
+
+    /**
+     * 一次共享的请求，所有字段都在 this 锁内访问
+     */
+    private static class InFlight {
+        // 第一个请求的响应头返回或者失败后为 true
+        boolean headersDone;
+        Response response;
+        IOException error;
+
+        // 已经收到的响应体副本，从第 0 个字节开始
+        final Buffer data = new Buffer();
+        // 第一个请求开始读响应体时有等待请求才为 true
+        boolean copying;
+        boolean bodyDone;
+        IOException bodyError;
+        // 已经加入、还没有关闭响应体的等待请求数
+        int followers;
+        // 不再接受新的等待请求
+        boolean closed;
+    }
+
+    private static class Counter {
+        final AtomicLong callCount = new AtomicLong();
+        final AtomicLong savedCount = new AtomicLong();
+
+        @Override
+        public String toString() {
+            return "calls=" + callCount.get() + ", saved=" + savedCount.get();
+        }
+    }
+
+    private final Map<String, InFlight> mInFlight = new HashMap<>();
+    private final ConcurrentHashMap<String, Counter> mCounters = new ConcurrentHashMap<>();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        boolean idempotent = request.header(IDEMPOTENT_NAME) != null;
+        if (idempotent) {
+            request = request.newBuilder().removeHeader(IDEMPOTENT_NAME).build();
+        }
+        String key = keyOf(request, idempotent);
+        if (key == null) {
+            return chain.proceed(request);
+        }
+        Counter counter = counterOf(request);
+        counter.callCount.incrementAndGet();
+
+        InFlight inFlight;
+        boolean leader = false;
+        synchronized (mInFlight) {
+            inFlight = mInFlight.get(key);
+            if (inFlight == null) {
+                inFlight = new InFlight();
+                mInFlight.put(key, inFlight);
+                leader = true;
+            } else {
+                synchronized (inFlight) {
+                    inFlight.followers++;
+                }
+            }
+        }
+        if (leader) {
+            return execute(chain, request, key, inFlight);
+        }
+        Response response = awaitHeaders(chain, inFlight);
+        if (response == null) {
+            // 等待超时或者第一个请求失败，自己重新请求
+            return chain.proceed(request);
+        }
+        counter.savedCount.incrementAndGet();
+        ResponseBody body = response.body();
+        return response.newBuilder()
+                .request(request)
+                .body(ResponseBody.create(body.contentType(), body.contentLength(),
+                        Okio.buffer(new SharedSource(chain, request, response.code(), body.contentLength(), inFlight))))
+                .build();
+    }
+
+    private Response execute(Chain chain, Request request, String key, InFlight inFlight) throws IOException {
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            stopSharing(key, inFlight);
+            synchronized (inFlight) {
+                inFlight.error = e;
+                inFlight.headersDone = true;
+                inFlight.notifyAll();
+            }
+            throw e;
+        }
+        ResponseBody body = response.body();
+        synchronized (inFlight) {
+            inFlight.response = response;
+            inFlight.headersDone = true;
+            inFlight.notifyAll();
+        }
+        if (body == null) {
+            stopSharing(key, inFlight);
+            return response;
+        }
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(),
+                        Okio.buffer(new TeeSource(body.source(), key, inFlight))))
+                .build();
+    }
+
+    /**
+     * 等待第一个请求的响应头
+     *
+     * @return 超时或者第一个请求失败时返回 null
+     */
+    private Response awaitHeaders(Chain chain, InFlight inFlight) throws IOException {
+        Call call = chain.call();
+        // 第一个请求拿到响应头最多需要 连接 + 写 + 读 的超时时间，都为 0 时不限制
+        long timeout = (long) chain.connectTimeoutMillis() + chain.writeTimeoutMillis() + chain.readTimeoutMillis();
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        synchronized (inFlight) {
+            try {
+                while (!inFlight.headersDone) {
+                    if (call.isCanceled()) {
+                        leave(inFlight);
+                        throw new IOException("Canceled");
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        leave(inFlight);
+                        return null;
+                    }
+                    inFlight.wait(Math.min(remaining, CANCEL_CHECK_MILLIS));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                leave(inFlight);
+                throw new InterruptedIOException("interrupted while waiting for " + chain.request().url());
+            }
+            if (inFlight.error != null || inFlight.response.body() == null) {
+                leave(inFlight);
+                return null;
+            }
+            return inFlight.response;
+        }
+    }
+
+    /**
+     * 等待请求退出，没有等待请求并且不再接受新的合并时，不再复制响应体
+     */
+    private static void leave(InFlight inFlight) {
+        synchronized (inFlight) {
+            inFlight.followers--;
+            if (inFlight.followers <= 0 && inFlight.closed) {
+                inFlight.copying = false;
+                inFlight.data.clear();
+            }
+        }
+    }
+
+    /**
+     * 不再接受新的合并，后面相同的请求各自发出
+     */
+    private void stopSharing(String key, InFlight inFlight) {
+        synchronized (mInFlight) {
+            if (mInFlight.get(key) == inFlight) {
+                mInFlight.remove(key);
+            }
+        }
+        synchronized (inFlight) {
+            inFlight.closed = true;
+            if (inFlight.followers <= 0) {
+                inFlight.copying = false;
+                inFlight.data.clear();
+            }
+        }
+    }
+
+    /**
+     * 第一个请求的响应体，读到的数据复制一份给等待中的请求
+     */
+    private class TeeSource extends ForwardingSource {
+        private final String key;
+        private final InFlight inFlight;
+        private boolean started;
+        private boolean done;
+
+        TeeSource(Source delegate, String key, InFlight inFlight) {
+            super(delegate);
+            this.key = key;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            if (!started) {
+                started = true;
+                startCopying();
+            }
+            long read;
+            try {
+                read = super.read(sink, byteCount);
+            } catch (IOException e) {
+                finish(e);
+                throw e;
+            }
+            if (read == -1) {
+                finish(null);
+                return -1;
+            }
+            boolean full;
+            synchronized (inFlight) {
+                if (inFlight.copying) {
+                    sink.copyTo(inFlight.data, sink.size() - read, read);
+                    inFlight.notifyAll();
+                }
+                full = !inFlight.closed && inFlight.data.size() > MAX_SHARED_BODY;
+            }
+            if (full) {
+                stopSharing(key, inFlight);
+            }
+            return read;
+        }
+
+        /**
+         * 开始读响应体时还没有等待请求就不再复制，也不再接受合并，之后加入的请求拿不到前面的数据
+         */
+        private void startCopying() {
+            synchronized (mInFlight) {
+                synchronized (inFlight) {
+                    if (inFlight.followers > 0) {
+                        inFlight.copying = true;
+                        return;
+                    }
+                    inFlight.closed = true;
+                }
+                if (mInFlight.get(key) == inFlight) {
+                    mInFlight.remove(key);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!done) {
+                // 没读完就关闭，等待中的请求拿不到剩下的数据
+                finish(new IOException("coalesced response closed before it was fully read"));
+            }
+            super.close();
+        }
+
+        private void finish(IOException error) {
+            if (done) {
+                return;
+            }
+            done = true;
+            stopSharing(key, inFlight);
+            synchronized (inFlight) {
+                inFlight.bodyDone = true;
+                inFlight.bodyError = error;
+                inFlight.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等待中的请求的响应体，从第一个请求的副本中按偏移读取，没有新数据时等待。
+     * 第一个请求的响应体失败时还没有读到数据，就自己重新请求，状态码和长度一致时改读新的响应体
+     */
+    private static class SharedSource implements Source {
+        private final Chain chain;
+        private final Request request;
+        private final int code;
+        private final long contentLength;
+        private final int readTimeoutMillis;
+        private final InFlight inFlight;
+        private long offset;
+        private boolean closed;
+        // 不再从副本中读
+        private boolean left;
+        private IOException leaderError;
+        private ResponseBody fallback;
+
+        SharedSource(Chain chain, Request request, int code, long contentLength, InFlight inFlight) {
+            this.chain = chain;
+            this.request = request;
+            this.code = code;
+            this.contentLength = contentLength;
+            this.readTimeoutMillis = chain.readTimeoutMillis();
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            if (closed) {
+                throw new IllegalStateException("closed");
+            }
+            if (fallback == null) {
+                long read = readShared(sink, byteCount);
+                if (read != FALLBACK) {
+                    return read;
+                }
+                fallback = proceed();
+            }
+            return fallback.source().read(sink, byteCount);
+        }
+
+        /**
+         * @return 读到的字节数，需要自己重新请求时返回 FALLBACK
+         */
+        private long readShared(Buffer sink, long byteCount) throws IOException {
+            Call call = chain.call();
+            long deadline = readTimeoutMillis > 0 ? System.currentTimeMillis() + readTimeoutMillis : Long.MAX_VALUE;
+            synchronized (inFlight) {
+                try {
+                    while (true) {
+                        long available = inFlight.data.size() - offset;
+                        if (available > 0) {
+                            long count = Math.min(available, byteCount);
+                            inFlight.data.copyTo(sink, offset, count);
+                            offset += count;
+                            return count;
+                        }
+                        if (inFlight.bodyDone) {
+                            if (inFlight.bodyError == null) {
+                                return -1;
+                            }
+                            if (offset > 0) {
+                                throw new IOException("coalesced response failed", inFlight.bodyError);
+                            }
+                            leaderError = inFlight.bodyError;
+                            left = true;
+                            leave(inFlight);
+                            return FALLBACK;
+                        }
+                        if (call.isCanceled()) {
+                            throw new IOException("Canceled");
+                        }
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            throw new SocketTimeoutException("timeout");
+                        }
+                        inFlight.wait(Math.min(remaining, CANCEL_CHECK_MILLIS));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while reading coalesced response");
+                }
+            }
+        }
+
+        /**
+         * 响应头已经交给调用方，新的响应状态码或者长度不同时不能替换，仍然按失败处理
+         */
+        private ResponseBody proceed() throws IOException {
+            Response response = chain.proceed(request);
+            ResponseBody body = response.body();
+            if (body == null || response.code() != code || body.contentLength() != contentLength) {
+                response.close();
+                throw new IOException("coalesced response failed", leaderError);
+            }
+            return body;
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (fallback != null) {
+                fallback.close();
+            }
+            synchronized (inFlight) {
+                if (left) {
+                    return;
+                }
+                left = true;
+            }
+            leave(inFlight);
+        }
+    }
+
+    /**
+     * 请求头不同（Authorization、Accept、Range 等）的请求响应也可能不同，所有请求头都参与合并的判断
+     *
+     * @return null 表示不合并
+     */
+    private static String keyOf(Request request, boolean idempotent) throws IOException {
+        if ("GET".equals(request.method())) {
+            // 强制网络的请求（例如缓存后台更新）不和普通请求合并
+            return "GET " + (request.cacheControl().noCache() ? "no-cache " : "") + request.url()
+                    + "\n" + request.headers();
+        }
+        if (!idempotent || !"POST".equals(request.method())) {
+            return null;
+        }
+        Buffer buffer = new Buffer();
+        if (request.body() != null) {
+            request.body().writeTo(buffer);
+        }
+        return "POST " + request.url() + "\n" + request.headers() + buffer.sha1().hex();
+    }
+
+    private Counter counterOf(Request request) {
+        String endpoint = endpointOf(request.url());
+        Counter counter = mCounters.get(endpoint);
+        if (counter == null) {
+            counter = new Counter();
+            Counter previous = mCounters.putIfAbsent(endpoint, counter);
+            if (previous != null) {
+                counter = previous;
+            }
+        }
+        return counter;
+    }
+
+    private static String endpointOf(HttpUrl url) {
+        return url.host() + url.encodedPath();
+    }
+
+    /**
+     * @param url 接口地址，按 host + path 统计，忽略查询参数
+     * @return 该接口被合并掉的请求数
+     */
+    public long getSavedCount(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        Counter counter = httpUrl == null ? null : mCounters.get(endpointOf(httpUrl));
+        return counter == null ? 0 : counter.savedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CoalescingInterceptor{");
+        for (Map.Entry<String, Counter> entry : mCounters.entrySet()) {
+            sb.append('\n').append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.lvfq.code.http;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * ConnectionMetrics
+ *
+ * @date 2026/10/17
+ * @desc : 统计连接池命中率。
+ * <p>
+ * 作为 NetworkInterceptor 添加，每次请求拿到的 Connection 如果之前出现过，说明是从连接池复用的
+ * （HTTP/2 同一连接上的多个请求也算复用），否则是新建的连接。
+ * OkHttp 的 EventListener 在 3.10 中仍是实验性的 API，所以用这种方式统计。
+ */
+
+public class ConnectionMetrics implements Interceptor {
+
+    public interface Listener {
+        /**
+         * 在 OkHttp 的请求线程回调
+         *
+         * @param reused 是否复用了连接池中的连接
+         */
+        void onConnection(String host, boolean reused);
+    }
+
+    // 只记录连接是否出现过，连接关闭回收后自动移除
+    private final Set<Connection> mSeen = Collections.newSetFromMap(new WeakHashMap<Connection, Boolean>());
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private volatile Listener mListener;
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Connection connection = chain.connection();
+        if (connection != null) {
+            boolean reused;
+            synchronized (mSeen) {
+                reused = !mSeen.add(connection);
+            }
+            if (reused) {
+                mHitCount.incrementAndGet();
+            } else {
+                mMissCount.incrementAndGet();
+            }
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onConnection(chain.request().url().host(), reused);
+            }
+        }
+        return chain.proceed(chain.request());
+    }
+
+    public long hitCount() {
+        return mHitCount.get();
+    }
+
+    public long missCount() {
+        return mMissCount.get();
+    }
+
+    @Override
+    public String toString() {
+        long hit = mHitCount.get();
+        long total = hit + mMissCount.get();
+        return "ConnectionMetrics{hit=" + hit + ", total=" + total
+                + ", hitRate=" + (total == 0 ? 0 : hit * 100 / total) + "%}";
+    }
+}
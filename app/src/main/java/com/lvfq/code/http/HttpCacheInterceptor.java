@@ -0,0 +1,270 @@
+package com.lvfq.code.http;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * HttpCacheInterceptor
+ *
+ * @date 2026/10/17
+ * @desc : 按接口配置的 HTTP 缓存策略，配合 OkHttpProvider 中的磁盘 Cache 使用，只处理 GET 请求。
+ * <p>
+ * maxAge：服务器没有返回任何缓存头（Cache-Control / Expires / Pragma）时，NetworkInterceptor 补上 max-age，
+ * 这样的接口也能缓存 maxAge 秒；服务器返回了缓存头时以服务器为准，no-store、private 等不会被改写；
+ * staleWhileRevalidate：过期后 staleWhileRevalidate 秒内直接返回缓存，同时在后台请求网络更新缓存；
+ * staleIfError：网络出错或者服务器 5xx 时，staleIfError 秒内的缓存仍然可以返回（离线可用）。
+ * <p>
+ * 通过 install() 添加到 OkHttpClient，后台更新要用到这个 client。
+ */
+
+public class HttpCacheInterceptor implements Interceptor {
+
+    public static class Policy {
+        final int maxAge;
+        final int staleWhileRevalidate;
+        final int staleIfError;
+
+        final AtomicLong requestCount = new AtomicLong();
+        final AtomicLong hitCount = new AtomicLong();
+        final AtomicLong staleCount = new AtomicLong();
+        final AtomicLong errorFallbackCount = new AtomicLong();
+
+        Policy(int maxAge, int staleWhileRevalidate, int staleIfError) {
+            this.maxAge = maxAge;
+            this.staleWhileRevalidate = staleWhileRevalidate;
+            this.staleIfError = staleIfError;
+        }
+
+        /**
+         * 命中率，包括过期返回和出错兜底的缓存
+         */
+        public float hitRatio() {
+            long requests = requestCount.get();
+            return requests == 0 ? 0 : (float) hitCount.get() / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + requestCount.get() + ", hit=" + hitCount.get()
+                    + ", stale=" + staleCount.get() + ", errorFallback=" + errorFallbackCount.get()
+                    + ", hitRatio=" + (int) (hitRatio() * 100) + "%";
+        }
+    }
+
+    // install() 之前配置好，之后只读
+    private final Map<String, Policy> mPolicies = new LinkedHashMap<>();
+    // 正在后台更新的 url，避免同一个接口重复更新
+    private final Set<String> mRevalidating = Collections.synchronizedSet(new HashSet<String>());
+    private volatile OkHttpClient mClient;
+
+    private final Interceptor mNetworkInterceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            Response response = chain.proceed(request);
+            Policy policy = findPolicy(request);
+            if (policy == null || policy.maxAge <= 0 || !response.isSuccessful()
+                    || hasCacheHeaders(response) || request.cacheControl().noStore()) {
+                return response;
+            }
+            // 写入缓存之前补上缓存头
+            return response.newBuilder()
+                    .header("Cache-Control", "max-age=" + policy.maxAge)
+                    .build();
+        }
+    };
+
+    /**
+     * @param url 接口地址，按 host + path 匹配，忽略查询参数
+     */
+    public HttpCacheInterceptor policy(String url, int maxAge, int staleWhileRevalidate, int staleIfError) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            throw new IllegalArgumentException("unexpected url: " + url);
+        }
+        mPolicies.put(keyOf(httpUrl), new Policy(maxAge, staleWhileRevalidate, staleIfError));
+        return this;
+    }
+
+    /**
+     * 添加拦截器并创建 client
+     */
+    public OkHttpClient install(OkHttpClient.Builder builder) {
+        builder.addInterceptor(this);
+        builder.addNetworkInterceptor(mNetworkInterceptor);
+        mClient = builder.build();
+        return mClient;
+    }
+
+    public Policy getPolicy(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        return httpUrl == null ? null : mPolicies.get(keyOf(httpUrl));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Policy policy = findPolicy(request);
+        // 后台更新的请求带有 no-cache，直接走网络
+        if (policy == null || request.cacheControl().noCache()) {
+            return chain.proceed(request);
+        }
+        policy.requestCount.incrementAndGet();
+
+        Request cacheFirst = request;
+        if (policy.staleWhileRevalidate > 0) {
+            cacheFirst = request.newBuilder()
+                    .cacheControl(new CacheControl.Builder()
+                            .maxStale(policy.staleWhileRevalidate, TimeUnit.SECONDS)
+                            .build())
+                    .build();
+        }
+        Response response;
+        try {
+            response = chain.proceed(cacheFirst);
+        } catch (IOException e) {
+            Response fallback = staleIfError(chain, request, policy);
+            if (fallback != null) {
+                return fallback;
+            }
+            throw e;
+        }
+        if (response.code() >= 500) {
+            Response fallback = staleIfError(chain, request, policy);
+            if (fallback != null) {
+                response.close();
+                return fallback;
+            }
+        }
+
+        if (isFromCache(response)) {
+            policy.hitCount.incrementAndGet();
+        }
+        if (isStale(response)) {
+            policy.staleCount.incrementAndGet();
+            revalidate(request);
+        }
+        return response;
+    }
+
+    /**
+     * 只从缓存中取，允许过期 staleIfError 秒；没有可用缓存时 OkHttp 返回 504
+     */
+    private Response staleIfError(Chain chain, Request request, Policy policy) {
+        if (policy.staleIfError <= 0) {
+            return null;
+        }
+        Request cacheOnly = request.newBuilder()
+                .cacheControl(new CacheControl.Builder()
+                        .onlyIfCached()
+                        .maxStale(policy.staleIfError, TimeUnit.SECONDS)
+                        .build())
+                .build();
+        try {
+            Response cached = chain.proceed(cacheOnly);
+            if (cached.code() == 504) {
+                cached.close();
+                return null;
+            }
+            policy.hitCount.incrementAndGet();
+            policy.errorFallbackCount.incrementAndGet();
+            return cached;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 后台强制请求网络，结果由 OkHttp 的 Cache 写入磁盘
+     */
+    private void revalidate(Request request) {
+        OkHttpClient client = mClient;
+        final String key = request.url().toString();
+        if (client == null || !mRevalidating.add(key)) {
+            return;
+        }
+        Request refresh = request.newBuilder().cacheControl(CacheControl.FORCE_NETWORK).build();
+        client.newCall(refresh).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                mRevalidating.remove(key);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // 响应体必须读完，Cache 才会提交这条缓存
+                try {
+                    if (response.body() != null) {
+                        response.body().bytes();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    response.close();
+                    mRevalidating.remove(key);
+                }
+            }
+        });
+    }
+
+    private Policy findPolicy(Request request) {
+        if (mPolicies.isEmpty() || !"GET".equals(request.method())) {
+            return null;
+        }
+        return mPolicies.get(keyOf(request.url()));
+    }
+
+    private static String keyOf(HttpUrl url) {
+        return url.host() + url.encodedPath();
+    }
+
+    /**
+     * 服务器自己声明了缓存策略
+     */
+    private static boolean hasCacheHeaders(Response response) {
+        return response.header("Cache-Control") != null
+                || response.header("Expires") != null
+                || response.header("Pragma") != null;
+    }
+
+    /**
+     * 直接使用缓存，或者条件请求返回 304 后使用缓存
+     */
+    private static boolean isFromCache(Response response) {
+        Response network = response.networkResponse();
+        return response.cacheResponse() != null && (network == null || network.code() == 304);
+    }
+
+    /**
+     * OkHttp 返回过期缓存时会加上 Warning: 110
+     */
+    private static boolean isStale(Response response) {
+        String warning = response.header("Warning");
+        return response.networkResponse() == null && warning != null && warning.startsWith("110");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("HttpCacheInterceptor{");
+        for (Map.Entry<String, Policy> entry : mPolicies.entrySet()) {
+            sb.append('\n').append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -2,7 +2,6 @@ package com.lvfq.code.http;
 
 import java.util.concurrent.TimeUnit;
 
-import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 import retrofit2.converter.scalars.ScalarsConverterFactory;
 
@@ -18,6 +17,13 @@ public class HttpClient {
 
     private static RequestService service;
     private static long TIMOUT = 10000; //设置超时时间
+    private static final String BASE_URL = "http://an.zdeps.com/index.php/";
+
+    // 服务器配置变化很少：缓存 1 分钟，过期 10 分钟内先用缓存再后台更新，离线时 1 天内的缓存仍可使用
+    private static final HttpCacheInterceptor cacheInterceptor = new HttpCacheInterceptor()
+            .policy(BASE_URL + "front/server", 60, 10 * 60, 24 * 60 * 60);
+    // 合并同时发出的相同请求，需要在 cacheInterceptor 之前
+    private static final CoalescingInterceptor coalescingInterceptor = new CoalescingInterceptor();
 //    http://an.zdeps.com/Invoking/user_info?keys=64b83c8381fc6d059ecd352f776124be&vci=12121212121H
 
     /**
@@ -31,7 +37,7 @@ public class HttpClient {
                 if (service == null) {
                     service = new Retrofit.Builder()
 //                            .baseUrl("http://192.168.0.107:8080/")
-                            .baseUrl("http://an.zdeps.com/index.php/")
+                            .baseUrl(BASE_URL)
                             .addConverterFactory(NobodyConverterFactory.create())
                             .addConverterFactory(ScalarsConverterFactory.create())
 //                            .addConverterFactory(GsonConverterFactory.create())
@@ -43,10 +49,11 @@ public class HttpClient {
 //                                    return chain.proceed(request.newBuilder().url(url).build());
 //                                }
 //                            }).build())
-                            .client(new OkHttpClient().newBuilder().connectTimeout(TIMOUT, TimeUnit.MILLISECONDS)
+                            // 从全局 client 派生，共用连接池
+                            .client(cacheInterceptor.install(OkHttpProvider.newBuilder().connectTimeout(TIMOUT, TimeUnit.MILLISECONDS)
                                     .writeTimeout(TIMOUT, TimeUnit.MILLISECONDS)
                                     .readTimeout(TIMOUT, TimeUnit.MILLISECONDS)
-                                    .build())
+                                    .addInterceptor(coalescingInterceptor)))
                             .build()
                             .create(RequestService.class);
                 }
@@ -55,4 +62,18 @@ public class HttpClient {
         return service;
     }
 
+    /**
+     * 各接口的缓存命中情况
+     */
+    public static HttpCacheInterceptor getCacheInterceptor() {
+        return cacheInterceptor;
+    }
+
+    /**
+     * 各接口被合并掉的请求数
+     */
+    public static CoalescingInterceptor getCoalescingInterceptor() {
+        return coalescingInterceptor;
+    }
+
 }
\ No newline at end of file
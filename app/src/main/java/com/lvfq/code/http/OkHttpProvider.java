@@ -0,0 +1,77 @@
+package com.lvfq.code.http;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * OkHttpProvider
+ *
+ * @date 2026/10/17
+ * @desc : 全局唯一的 OkHttpClient。
+ * <p>
+ * 各个模块（Retrofit、Dagger、下载、mvp.HttpUtil）都从这里取 client，需要不同超时等配置时用 newBuilder() 派生，
+ * 派生出来的 client 和这里共用同一个 Dispatcher 和 ConnectionPool，连接复用和 HTTP/2 多路复用可以跨模块生效。
+ * 连接复用情况通过 getMetrics() 查看。
+ * <p>
+ * 在 Application 中调用 init() 后才会启用磁盘缓存（Cache 同样由所有派生 client 共用），
+ * 不需要缓存的 client（例如下载）派生时设置 cache(null)。
+ */
+
+public class OkHttpProvider {
+
+    private static final long TIME_OUT = 10;  // 秒
+    // 空闲连接数和保活时间，与 OkHttp 默认值一致
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static final String CACHE_DIR_NAME = "http";
+    private static final long CACHE_SIZE = 10 * 1024 * 1024;
+
+    private static final ConnectionMetrics METRICS = new ConnectionMetrics();
+
+    private static volatile File sCacheDir;
+
+    private static class ClientHolder {
+        private static final OkHttpClient INSTANCE = new OkHttpClient.Builder()
+                .dispatcher(new Dispatcher())
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(TIME_OUT, TimeUnit.SECONDS)
+                .readTimeout(TIME_OUT, TimeUnit.SECONDS)
+                .writeTimeout(TIME_OUT, TimeUnit.SECONDS)
+                .addNetworkInterceptor(METRICS)
+                .cache(sCacheDir != null ? new Cache(sCacheDir, CACHE_SIZE) : null)
+                .build();
+    }
+
+    private OkHttpProvider() {
+    }
+
+    /**
+     * 需要在第一次 get() 之前调用，否则不使用磁盘缓存
+     */
+    public static void init(Context context) {
+        sCacheDir = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR_NAME);
+    }
+
+    public static OkHttpClient get() {
+        return ClientHolder.INSTANCE;
+    }
+
+    /**
+     * 派生 client，共享 Dispatcher、ConnectionPool 和已经添加的拦截器
+     */
+    public static OkHttpClient.Builder newBuilder() {
+        return get().newBuilder();
+    }
+
+    public static ConnectionMetrics getMetrics() {
+        return METRICS;
+    }
+}
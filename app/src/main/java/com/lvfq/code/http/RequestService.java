@@ -7,6 +7,8 @@ import retrofit2.Call;
 import retrofit2.http.Field;
 import retrofit2.http.FormUrlEncoded;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Headers;
 import retrofit2.http.Multipart;
 import retrofit2.http.POST;
 import retrofit2.http.Part;
@@ -26,6 +28,8 @@ public interface RequestService {
     Call<ModelBean> login(@Query("userName") String userName,
                           @Query("passWord") String passWord);
 
+    // 查询接口，相同参数同时请求时可以合并
+    @Headers(CoalescingInterceptor.HEADER_IDEMPOTENT)
     @FormUrlEncoded
     @POST("Invoking/user_info")
     Call<ModelBean> userInfo(@Field("keys") String keys,
@@ -44,4 +48,19 @@ public interface RequestService {
     @Multipart
     @POST("Synthesis/uploadLog")
     Call<String> uploadFile(@Part("test") String value, @Part MultipartBody.Part file);
+
+    /**
+     * 分块上传，服务器按 uploadId 拼接，收齐 chunkCount 块后合并
+     *
+     * @param contentRange 本块在文件中的位置，bytes start-end/total
+     * @param chunk        本块的内容
+     * @return
+     */
+    @Multipart
+    @POST("Synthesis/uploadLog")
+    Call<String> uploadChunk(@Part("uploadId") String uploadId,
+                             @Part("chunkIndex") int chunkIndex,
+                             @Part("chunkCount") int chunkCount,
+                             @Header("Content-Range") String contentRange,
+                             @Part MultipartBody.Part chunk);
 }
@@ -1,15 +1,25 @@
 package com.lvfq.code.mvp;
 
 import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.util.Pair;
+
+import com.lvfq.code.http.OkHttpProvider;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.Reader;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.FormBody;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 /**
  * HttpUtil
@@ -23,84 +33,97 @@ public class HttpUtil {
 
     static final String HTTP = "http://192.168.2.1:8080/";
 
-    private static Handler handler = new Handler();
+    private static final int READ_BUFFER_SIZE = 2048;
+    // Content-Length 由服务器决定，预分配的容量不超过 64K 字符，更大的响应边读边扩容
+    private static final int MAX_INITIAL_CAPACITY = 64 * 1024;
 
-    public static void post(final String url, final Map<String, Object> params, final IHttpResultListener listener) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                String result = "";
-                HttpURLConnection conn = null;
-                OutputStream out = null;
-                BufferedReader reader = null;
-                try {
-                    StringBuilder paramsStr = new StringBuilder();
-                    if (params != null && params.size() > 0) {
-                        for (Map.Entry<String, Object> entry : params.entrySet()) {
-                            paramsStr.append(entry.getKey()).append("=").append(entry.getValue().toString()).append("&");
-                        }
-                        paramsStr.deleteCharAt(paramsStr.length() - 1);
-                    }
-                    URL u = new URL(HTTP + url);
-                    conn = (HttpURLConnection) u.openConnection();
+    private static Handler handler = new Handler(Looper.getMainLooper());
 
-                    // 设置连接参数
-                    conn.setDoOutput(true);
-                    conn.setDoInput(true);
-                    conn.setRequestMethod("POST");// 设置以POST方式
-                    conn.setUseCaches(false); // Post请求不使用缓存
-                    conn.setInstanceFollowRedirects(true);
-                    conn.setRequestProperty("Content-Type",
-                            "application/x-www-form-urlencoded");
-                    conn.setRequestProperty("Charset", "UTF-8");
+    // 等待在主线程回调的结果，一次 post 把当前积压的都回调掉
+    private static final Queue<Pair<IHttpResultListener, String>> pendingResults = new ConcurrentLinkedQueue<>();
+    private static final AtomicBoolean drainScheduled = new AtomicBoolean();
 
-                    conn.setConnectTimeout(10000);
-                    conn.setReadTimeout(10000);
+    private static final Runnable drainResults = new Runnable() {
+        @Override
+        public void run() {
+            drainScheduled.set(false);
+            Pair<IHttpResultListener, String> pending;
+            while ((pending = pendingResults.poll()) != null) {
+                pending.first.onResult(pending.second);
+            }
+        }
+    };
 
-                    // 上传的参数
-                    Log.i("lfq", paramsStr.toString());
-                    out = conn.getOutputStream();
-                    out.write(paramsStr.toString().getBytes());
-                    out.flush();
-                    out.close();
+    /**
+     * 请求由全局 OkHttpClient 的 Dispatcher 执行（线程池复用、并发数有上限），不再每次 new Thread
+     */
+    public static void post(final String url, final Map<String, Object> params, final IHttpResultListener listener) {
+        // FormBody 对参数做 URL 编码，写入时直接编码到 Okio 的缓冲（Segment 复用），不再拼接字符串
+        FormBody.Builder form = new FormBody.Builder();
+        if (params != null) {
+            for (Map.Entry<String, Object> entry : params.entrySet()) {
+                form.add(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+        Request request = new Request.Builder()
+                .url(HTTP + url)
+                .post(form.build())
+                .build();
+        OkHttpProvider.get().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                e.printStackTrace();
+                deliver(listener, e.toString());
+            }
 
-                    reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                    StringBuffer strBuf = new StringBuffer();
-                    String str = null;
-                    while ((str = reader.readLine()) != null) {
-                        strBuf.append(str);
+            @Override
+            public void onResponse(Call call, Response response) {
+                String result;
+                try {
+                    if (!response.isSuccessful()) {
+                        // 和原来 HttpURLConnection.getInputStream() 抛出的异常一致，回调的是异常信息而不是错误页
+                        throw new IOException("Server returned HTTP response code: " + response.code()
+                                + " for URL: " + call.request().url());
                     }
-                    result = strBuf.toString();
-                    Log.i("lfq", strBuf.toString());
-                } catch (Exception e) {
+                    result = readBody(response.body());
+                    Log.i("lfq", result);
+                } catch (IOException e) {
                     e.printStackTrace();
                     result = e.toString();
                 } finally {
-                    try {
-                        if (out != null) {
-                            out.close();
-                        }
-                        if (reader != null) {
-                            reader.close();
-                        }
-                        if (conn != null) {
-                            conn.disconnect();
-                        }
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-                if (listener != null) {
-                    final String res = result;
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            listener.onResult(res);
-                        }
-                    });
+                    response.close();
                 }
+                deliver(listener, result);
             }
-        }).start();
+        });
+    }
+
+    /**
+     * 边读边按响应的编码解码，不先把整个响应读成 byte[]
+     */
+    private static String readBody(ResponseBody body) throws IOException {
+        if (body == null) {
+            return "";
+        }
+        long contentLength = body.contentLength();
+        StringBuilder sb = new StringBuilder(contentLength > 0
+                ? (int) Math.min(contentLength, MAX_INITIAL_CAPACITY) : READ_BUFFER_SIZE);
+        Reader reader = body.charStream();
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int len;
+        while ((len = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, len);
+        }
+        return sb.toString();
+    }
 
+    private static void deliver(IHttpResultListener listener, String result) {
+        if (listener == null) {
+            return;
+        }
+        pendingResults.offer(new Pair<>(listener, result));
+        if (drainScheduled.compareAndSet(false, true)) {
+            handler.post(drainResults);
+        }
     }
 }
@@ -0,0 +1,282 @@
+package com.lvfq.code.service.demo;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * DownloadManager
+ *
+ * @date 2026/10/17
+ * @desc : 下载队列，DownloadService 持有。
+ * <p>
+ * 每个 url 一个状态机：QUEUED -> RUNNING -> DONE / PAUSED / FAILED，PAUSED / FAILED 可以重新进入 QUEUED，
+ * 同时运行的任务数不超过 maxParallel，所有任务共用一个 OkHttpClient（连接池）。
+ * 状态保存在 SharedPreferences 中，进程被杀后 restore() 重新排队，文件内容由 .seg 断点续传。
+ * <p>
+ * 所有方法都在主线程调用，DownloadTask 的回调也在主线程，所以不需要加锁。
+ */
+
+public class DownloadManager {
+
+    private static final String PREFS_NAME = "download_manager";
+    private static final int DEFAULT_MAX_PARALLEL = 2;
+
+    public enum State {
+        QUEUED, RUNNING, PAUSED, FAILED, DONE
+    }
+
+    public static class DownloadInfo {
+        public final String url;
+        State state;
+        int progress;
+
+        DownloadInfo(String url, State state, int progress) {
+            this.url = url;
+            this.state = state;
+            this.progress = progress;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getProgress() {
+            return progress;
+        }
+    }
+
+    public interface OnDownloadListener {
+        void onProgress(DownloadInfo info);
+
+        void onStateChanged(DownloadInfo info);
+
+        /**
+         * 取消后任务会从队列中移除
+         */
+        void onCanceled(String url);
+    }
+
+    private final SharedPreferences mPrefs;
+    private final OkHttpClient mClient;
+    private final int mMaxParallel;
+    private OnDownloadListener mListener;
+
+    // 按加入顺序排队
+    private final LinkedHashMap<String, DownloadInfo> mInfos = new LinkedHashMap<>();
+    private final Map<String, DownloadTask> mRunning = new HashMap<>();
+
+    public DownloadManager(Context context, OkHttpClient client) {
+        this(context, client, DEFAULT_MAX_PARALLEL);
+    }
+
+    public DownloadManager(Context context, OkHttpClient client, int maxParallel) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mClient = client;
+        mMaxParallel = Math.max(1, maxParallel);
+    }
+
+    public void setOnDownloadListener(OnDownloadListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 恢复上次进程中的任务，QUEUED / RUNNING 的重新排队，PAUSED / FAILED 保持原状
+     */
+    public void restore() {
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            String url = entry.getKey();
+            if (mInfos.containsKey(url) || !(entry.getValue() instanceof String)) {
+                continue;
+            }
+            String[] parts = ((String) entry.getValue()).split(",");
+            try {
+                State state = State.valueOf(parts[0]);
+                int progress = Integer.parseInt(parts[1]);
+                if (state == State.RUNNING) {
+                    state = State.QUEUED;
+                }
+                mInfos.put(url, new DownloadInfo(url, state, progress));
+            } catch (RuntimeException e) {
+                mPrefs.edit().remove(url).apply();
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * 加入队列，已经在下载或排队的 url 忽略，暂停 / 失败的重新排队
+     */
+    public void enqueue(String url) {
+        DownloadInfo info = mInfos.get(url);
+        if (info == null) {
+            info = new DownloadInfo(url, State.QUEUED, 0);
+            mInfos.put(url, info);
+        } else if (info.state == State.QUEUED || info.state == State.RUNNING) {
+            return;
+        }
+        changeState(info, State.QUEUED);
+        schedule();
+    }
+
+    public void pause(String url) {
+        DownloadInfo info = mInfos.get(url);
+        if (info == null) {
+            return;
+        }
+        DownloadTask task = mRunning.get(url);
+        if (task != null) {
+            // 等 onPaused 回调后再改状态
+            task.pauseDownload();
+        } else if (info.state == State.QUEUED) {
+            changeState(info, State.PAUSED);
+        }
+    }
+
+    public void cancel(String url) {
+        DownloadInfo info = mInfos.get(url);
+        if (info == null) {
+            return;
+        }
+        DownloadTask task = mRunning.get(url);
+        if (task != null) {
+            // 由 DownloadTask 删除文件，等 onCanceled 回调
+            task.cancelDownload();
+            return;
+        }
+        SegmentedDownload.deleteFiles(DownloadTask.getDownloadFile(url));
+        remove(url);
+    }
+
+    public void pauseAll() {
+        for (String url : new ArrayList<>(mInfos.keySet())) {
+            pause(url);
+        }
+    }
+
+    public void cancelAll() {
+        for (String url : new ArrayList<>(mInfos.keySet())) {
+            cancel(url);
+        }
+    }
+
+    public List<DownloadInfo> getDownloads() {
+        return new ArrayList<>(mInfos.values());
+    }
+
+    public int getRunningCount() {
+        return mRunning.size();
+    }
+
+    /**
+     * 还有 QUEUED / RUNNING 的任务
+     */
+    public boolean hasActiveDownloads() {
+        for (DownloadInfo info : mInfos.values()) {
+            if (info.state == State.QUEUED || info.state == State.RUNNING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按加入顺序启动排队中的任务，直到达到并行上限
+     */
+    private void schedule() {
+        for (DownloadInfo info : mInfos.values()) {
+            if (mRunning.size() >= mMaxParallel) {
+                break;
+            }
+            if (info.state == State.QUEUED) {
+                start(info);
+            }
+        }
+    }
+
+    private void start(final DownloadInfo info) {
+        DownloadTask task = new DownloadTask(new TaskListener(info), mClient);
+        mRunning.put(info.url, task);
+        changeState(info, State.RUNNING);
+        // 并行数由 mMaxParallel 控制，这里使用 AsyncTask 的线程池而不是默认的串行执行器
+        task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, info.url);
+    }
+
+    private void finish(DownloadInfo info, State state) {
+        mRunning.remove(info.url);
+        changeState(info, state);
+        schedule();
+    }
+
+    private void remove(String url) {
+        mRunning.remove(url);
+        mInfos.remove(url);
+        mPrefs.edit().remove(url).apply();
+        if (mListener != null) {
+            mListener.onCanceled(url);
+        }
+        schedule();
+    }
+
+    private void changeState(DownloadInfo info, State state) {
+        info.state = state;
+        if (state == State.DONE) {
+            info.progress = 100;
+        }
+        save(info);
+        if (mListener != null) {
+            mListener.onStateChanged(info);
+        }
+    }
+
+    private void save(DownloadInfo info) {
+        mPrefs.edit().putString(info.url, info.state.name() + "," + info.progress).apply();
+    }
+
+    /**
+     * 单个 DownloadTask 的回调转成带 url 的回调
+     */
+    private class TaskListener implements DownloadListener {
+        private final DownloadInfo info;
+
+        TaskListener(DownloadInfo info) {
+            this.info = info;
+        }
+
+        @Override
+        public void onProgress(int progress) {
+            info.progress = progress;
+            if (mListener != null) {
+                mListener.onProgress(info);
+            }
+        }
+
+        @Override
+        public void onSuccess() {
+            finish(info, State.DONE);
+        }
+
+        @Override
+        public void onFailed() {
+            finish(info, State.FAILED);
+        }
+
+        @Override
+        public void onPaused() {
+            finish(info, State.PAUSED);
+        }
+
+        @Override
+        public void onCanceled() {
+            remove(info.url);
+        }
+    }
+}
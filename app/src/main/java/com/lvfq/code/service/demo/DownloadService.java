@@ -8,74 +8,71 @@ import android.content.Intent;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Binder;
-import android.os.Environment;
 import android.os.IBinder;
 import android.support.v7.app.NotificationCompat;
 import android.widget.Toast;
 
 import com.lvfq.code.R;
+import com.lvfq.code.http.OkHttpProvider;
 import com.lvfq.code.service.ServiceActivity;
 import com.lvfq.library.utils.LvLog;
 
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
 
 import static android.content.Intent.FLAG_ACTIVITY_NEW_TASK;
 
 public class DownloadService extends Service {
 
-    private DownloadTask downloadTask;
+    private static final int NOTIFICATION_ID = 1;
+    private static final long DOWNLOAD_READ_TIMEOUT = 30;  // 秒
 
-    private String downloadUrl;
+    private DownloadManager downloadManager;
 
-    private DownloadListener listener = new DownloadListener() {
-        @Override
-        public void onProgress(int progress) {
-            getNotificationManager().notify(1, getNotification("Downloading ...", progress));
-            LvLog.i("DownloadService  downloading ... " + progress);
-        }
+    // 复用同一个 Builder，进度更新时只修改文字和进度，不再重复创建 PendingIntent、解码图标
+    private NotificationCompat.Builder notificationBuilder;
 
-        @Override
-        public void onSuccess() {
-            downloadTask = null;
-            // 下载成功时将前台服务通知关闭 ， 并创建一个下载成功的通知。
-            stopForeground(true);
-            getNotificationManager().notify(1, getNotification("Download Success", -1));
-            Toast.makeText(DownloadService.this, "Download Success", Toast.LENGTH_SHORT).show();
-
-            File apkfile = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS).getPath(), downloadUrl.substring(downloadUrl.lastIndexOf("/")));
-            if (!apkfile.exists()) {
-                return;
-            }
-            // 通过Intent安装APK文件
-            Intent i = new Intent(Intent.ACTION_VIEW);
-            i.setFlags(FLAG_ACTIVITY_NEW_TASK);
-            i.setDataAndType(Uri.parse("file://" + apkfile.toString()),
-                    "application/vnd.android.package-archive");
-
-            startActivity(i);
-
-        }
+    // 上次通知的平均进度和任务数，都没变化时不刷新
+    private int lastNotifiedProgress = -1;
+    private int lastNotifiedCount;
 
+    private DownloadManager.OnDownloadListener listener = new DownloadManager.OnDownloadListener() {
         @Override
-        public void onFailed() {
-            downloadTask = null;
-            // 下载失败时将前台服务通知关闭 ， 并创建一个下载失败的通知。
-            stopForeground(true);
-            getNotificationManager().notify(1, getNotification("Download Failed", -1));
-            Toast.makeText(DownloadService.this, "Download Failed", Toast.LENGTH_SHORT).show();
+        public void onProgress(DownloadManager.DownloadInfo info) {
+            updateNotification(null);
+            LvLog.i("DownloadService  downloading ... " + info.url + " " + info.getProgress());
         }
 
         @Override
-        public void onPaused() {
-            downloadTask = null;
-            Toast.makeText(DownloadService.this, "Download Paused", Toast.LENGTH_SHORT).show();
+        public void onStateChanged(DownloadManager.DownloadInfo info) {
+            switch (info.getState()) {
+                case RUNNING:
+                    // 用当前的总进度启动前台服务，后面的 updateNotification 进度没变化时不会再刷新
+                    startForeground(NOTIFICATION_ID, getProgressNotification());
+                    break;
+                case DONE:
+                    Toast.makeText(DownloadService.this, "Download Success", Toast.LENGTH_SHORT).show();
+                    install(info.url);
+                    break;
+                case FAILED:
+                    Toast.makeText(DownloadService.this, "Download Failed", Toast.LENGTH_SHORT).show();
+                    break;
+                case PAUSED:
+                    Toast.makeText(DownloadService.this, "Download Paused", Toast.LENGTH_SHORT).show();
+                    break;
+                default:
+                    break;
+            }
+            updateNotification(info.getState());
         }
 
         @Override
-        public void onCanceled() {
-            downloadTask = null;
-            stopForeground(true);
+        public void onCanceled(String url) {
             Toast.makeText(DownloadService.this, "Download Canceled", Toast.LENGTH_SHORT).show();
+            updateNotification(null);
         }
 
     };
@@ -86,6 +83,25 @@ public class DownloadService extends Service {
 
     private DownloadBinder mBinder = new DownloadBinder();
 
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // 下载的单次读取可能较慢，加长读超时；大文件不写入 HTTP 缓存；连接池仍然和其他模块共用
+        OkHttpClient client = OkHttpProvider.newBuilder()
+                .readTimeout(DOWNLOAD_READ_TIMEOUT, TimeUnit.SECONDS)
+                .cache(null)
+                .build();
+        downloadManager = new DownloadManager(this, client);
+        downloadManager.setOnDownloadListener(listener);
+        // 进程被杀后重启服务，继续未完成的任务
+        downloadManager.restore();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_STICKY;
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return mBinder;
@@ -93,58 +109,142 @@ public class DownloadService extends Service {
 
     class DownloadBinder extends Binder {
         public void startDownload(String url) {
-            if (downloadTask == null) {
-                downloadUrl = url;
-                downloadTask = new DownloadTask(listener);
-                downloadTask.execute(downloadUrl);
-                startForeground(1, getNotification("Downloading...", 0));
-                Toast.makeText(DownloadService.this, "downloading...", Toast.LENGTH_SHORT).show();
-            }
+            downloadManager.enqueue(url);
+            Toast.makeText(DownloadService.this, "downloading...", Toast.LENGTH_SHORT).show();
+        }
+
+        public void pauseDownload(String url) {
+            downloadManager.pause(url);
+        }
+
+        public void cancelDownload(String url) {
+            downloadManager.cancel(url);
         }
 
         public void pauseDownload() {
-            if (downloadTask != null) {
-                downloadTask.pauseDownload();
-            }
+            downloadManager.pauseAll();
         }
 
         public void cancelDownload() {
-            if (downloadTask != null) {
-                downloadTask.cancelDownload();
-            } else {
-                if (downloadUrl != null) {
-                    // 取消下载时，需要将文件删除，并且关闭通知
-                    String fileName = downloadUrl.substring(downloadUrl.lastIndexOf("/"));
-                    String directory = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS).getPath();
-                    File file = new File(directory + fileName);
-                    if (file.exists()) {
-                        file.delete();
-                    }
-                    stopForeground(true);
-
-                    Toast.makeText(DownloadService.this, "Canceled", Toast.LENGTH_SHORT).show();
-                }
+            downloadManager.cancelAll();
+        }
+
+        public List<DownloadManager.DownloadInfo> getDownloads() {
+            return downloadManager.getDownloads();
+        }
+    }
+
+    /**
+     * 所有进行中任务的平均进度显示在同一个通知中，进度和任务数都没变化时不刷新。
+     * 没有进行中的任务时不受限制，直接发出最终状态
+     *
+     * @param finished 刚进入的状态，没有进行中的任务时 DONE / FAILED / PAUSED 作为最终通知，null 表示只移除通知
+     */
+    private void updateNotification(DownloadManager.State finished) {
+        if (!downloadManager.hasActiveDownloads()) {
+            lastNotifiedProgress = -1;
+            lastNotifiedCount = 0;
+            // 关闭前台服务通知，再发一条可以划掉的最终通知
+            stopForeground(true);
+            if (finished == DownloadManager.State.DONE || finished == DownloadManager.State.FAILED
+                    || finished == DownloadManager.State.PAUSED) {
+                getNotificationManager().notify(NOTIFICATION_ID, getFinishedNotification(finished));
             }
+            return;
+        }
+        int[] countAndProgress = getActiveProgress();
+        if (countAndProgress[0] == lastNotifiedCount && countAndProgress[1] == lastNotifiedProgress) {
+            return;
         }
+        getNotificationManager().notify(NOTIFICATION_ID, getProgressNotification());
+    }
+
+    /**
+     * @return [进行中的任务数, 平均进度]
+     */
+    private int[] getActiveProgress() {
+        int count = 0;
+        int total = 0;
+        for (DownloadManager.DownloadInfo info : downloadManager.getDownloads()) {
+            DownloadManager.State state = info.getState();
+            if (state == DownloadManager.State.RUNNING || state == DownloadManager.State.QUEUED) {
+                count++;
+                total += info.getProgress();
+            }
+        }
+        return new int[]{count, count > 0 ? total / count : 0};
+    }
+
+    /**
+     * 按当前进度生成通知，并记录为最近一次通知的进度
+     */
+    private Notification getProgressNotification() {
+        int[] countAndProgress = getActiveProgress();
+        int count = countAndProgress[0];
+        lastNotifiedCount = count;
+        lastNotifiedProgress = countAndProgress[1];
+        String title = count > 1 ? "Downloading " + count + " files ..." : "Downloading ...";
+        return getNotification(title, lastNotifiedProgress);
+    }
+
+    private Notification getFinishedNotification(DownloadManager.State state) {
+        String title;
+        if (state == DownloadManager.State.DONE) {
+            title = "Download Success";
+        } else if (state == DownloadManager.State.FAILED) {
+            title = "Download Failed";
+        } else {
+            title = "Download Paused";
+        }
+        getNotificationBuilder().setAutoCancel(true);
+        return getNotification(title, 0);
+    }
+
+    private void install(String url) {
+        File apkfile = DownloadTask.getDownloadFile(url);
+        if (!apkfile.exists()) {
+            return;
+        }
+        // 通过Intent安装APK文件
+        Intent i = new Intent(Intent.ACTION_VIEW);
+        i.setFlags(FLAG_ACTIVITY_NEW_TASK);
+        i.setDataAndType(Uri.parse("file://" + apkfile.toString()),
+                "application/vnd.android.package-archive");
+
+        startActivity(i);
     }
 
     private NotificationManager getNotificationManager() {
         return (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
     }
 
-    private Notification getNotification(String title, int progress) {
-        Intent intent = new Intent(this, ServiceActivity.class);
-        PendingIntent pi = PendingIntent.getActivity(this, 0, intent, 0);
+    private NotificationCompat.Builder getNotificationBuilder() {
+        if (notificationBuilder == null) {
+            Intent intent = new Intent(this, ServiceActivity.class);
+            PendingIntent pi = PendingIntent.getActivity(this, 0, intent, 0);
+
+            notificationBuilder = new NotificationCompat.Builder(this);
+            notificationBuilder.setSmallIcon(R.mipmap.ic_launcher);
+            notificationBuilder.setLargeIcon(BitmapFactory.decodeResource(getResources(), R.mipmap.ic_launcher));
+            notificationBuilder.setContentIntent(pi);
+            notificationBuilder.setOnlyAlertOnce(true);
+        }
+        return notificationBuilder;
+    }
 
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this);
-        builder.setSmallIcon(R.mipmap.ic_launcher);
-        builder.setLargeIcon(BitmapFactory.decodeResource(getResources(), R.mipmap.ic_launcher));
-        builder.setContentIntent(pi);
+    private Notification getNotification(String title, int progress) {
+        NotificationCompat.Builder builder = getNotificationBuilder();
         builder.setContentTitle(title);
         if (progress > 0) {
             builder.setContentText(progress + "%");
             builder.setProgress(100, progress, false);
+        } else {
+            builder.setContentText(null);
+            builder.setProgress(0, 0, false);
         }
-        return builder.build();
+        Notification notification = builder.build();
+        // 只有最终通知可以点击后消失
+        builder.setAutoCancel(false);
+        return notification;
     }
 }
@@ -3,17 +3,11 @@ package com.lvfq.code.service.demo;
 import android.os.AsyncTask;
 import android.os.Environment;
 
+import com.lvfq.code.http.OkHttpProvider;
+
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.RandomAccessFile;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
 
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 
 /**
  * DownloadTask
@@ -22,108 +16,85 @@ import okhttp3.Response;
  * @Github: https://github.com/lvfaqiang
  * @Blog: http://blog.csdn.net/lv_fq
  * @date 2017/9/11 下午5:49
- * @desc : 下载任务
+ * @desc : 下载任务，下载逻辑在 {@link ResumableDownload} 中，这里只负责切换线程和回调
  */
 
 public class DownloadTask extends AsyncTask<String, Integer, Integer> {
 
-    public static final int TYPE_SUCCESS = 0;
-
-    public static final int TYPE_FAILED = 1;
-
-    public static final int TYPE_PAUSED = 2;
-
-    public static final int TYPE_CANCELED = 3;
-
     private DownloadListener listener;
 
-    private boolean isCanceled = false;
+    // 由主线程设置，下载线程读取
+    private volatile boolean isCanceled = false;
+
+    private volatile boolean isPaused = false;
 
-    private boolean isPaused = false;
+    private volatile ResumableDownload download;
 
     private int lastProgress;
 
+    private final OkHttpClient client;
+
     public DownloadTask(DownloadListener listener) {
+        this(listener, OkHttpProvider.newBuilder().cache(null).build());
+    }
+
+    public DownloadTask(DownloadListener listener, OkHttpClient client) {
         this.listener = listener;
+        this.client = client;
+    }
+
+    /**
+     * 下载文件保存在 Download 目录下，文件名取 url 最后一段
+     *
+     * @param downloadUrl
+     * @return
+     */
+    public static File getDownloadFile(String downloadUrl) {
+        String fileName = downloadUrl.substring(downloadUrl.lastIndexOf("/"));
+        String directory = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS).getPath();
+        return new File(directory + fileName);
     }
 
     public void cancelDownload() {
         isCanceled = true;
+        stop();
     }
 
     public void pauseDownload() {
         isPaused = true;
+        stop();
+    }
+
+    private void stop() {
+        ResumableDownload current = download;
+        if (current != null) {
+            current.stop();
+        }
     }
 
     @Override
     protected Integer doInBackground(String... params) {
-        InputStream is = null;
-        RandomAccessFile saveFile = null;
-        File file = null;
-
-        try {
-            long downloadLength = 0;
-            String downloadUrl = params[0];
-            String fileName = downloadUrl.substring(downloadUrl.lastIndexOf("/"));
-            String directory = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS).getPath();
-            file = new File(directory + fileName);
-            if (file.exists()) {
-                downloadLength = file.length(); // 已经下载的长度
+        download = new ResumableDownload(client, params[0], getDownloadFile(params[0]));
+        // 开始之前已经暂停 / 取消
+        if (isCanceled || isPaused) {
+            download.stop();
+        }
+        return download.run(new SegmentedDownload.Callback() {
+            @Override
+            public boolean isCanceled() {
+                return isCanceled;
             }
 
-            long contentLength = getContentLength(downloadUrl);
-            if (contentLength == 0) {
-                return TYPE_FAILED;
-            } else if (contentLength == downloadLength) {
-                return TYPE_SUCCESS;
-            }
-            OkHttpClient client = new OkHttpClient();
-            Request request = new Request.Builder()
-                    .addHeader("RANGE", "bytes=" + downloadLength + "-")
-                    .url(downloadUrl)
-                    .build();
-            Response response = client.newCall(request).execute();
-            if (response != null) {
-                is = response.body().byteStream();
-                saveFile = new RandomAccessFile(file, "rw");
-                saveFile.seek(downloadLength);  // 跳过已下载的字节
-                byte[] b = new byte[1024];
-                int total = 0;
-                int len;
-                while ((len = is.read(b)) != -1) {
-                    if (isCanceled) {
-                        return TYPE_CANCELED;
-                    } else if (isPaused) {
-                        return TYPE_PAUSED;
-                    } else {
-                        total += len;  // 统计当前下载的长度
-                        saveFile.write(b, 0, len);
-                        int progress = (int) ((total + downloadLength) * 100 / contentLength);
-                        publishProgress(progress);  // 通知界面刷新
-                    }
-                }
-                response.body().close();
-                return TYPE_SUCCESS;
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                if (is != null) {
-                    is.close();
-                }
-                if (saveFile != null) {
-                    saveFile.close();
-                }
-                if (isCanceled && file != null) {
-                    file.delete();  // 删除取消下载的文件
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+            @Override
+            public boolean isPaused() {
+                return isPaused;
             }
-        }
 
-        return TYPE_FAILED;
+            @Override
+            public void onProgress(long downloaded, long contentLength) {
+                publishProgress((int) (downloaded * 100 / contentLength));  // 通知界面刷新
+            }
+        });
     }
 
     @Override
@@ -138,36 +109,19 @@ public class DownloadTask extends AsyncTask<String, Integer, Integer> {
     @Override
     protected void onPostExecute(Integer status) {
         switch (status) {
-            case TYPE_SUCCESS:
+            case ResumableDownload.TYPE_SUCCESS:
                 listener.onSuccess();
                 break;
-            case TYPE_FAILED:
+            case ResumableDownload.TYPE_FAILED:
                 listener.onFailed();
                 break;
-            case TYPE_PAUSED:
+            case ResumableDownload.TYPE_PAUSED:
                 listener.onPaused();
                 break;
-            case TYPE_CANCELED:
+            case ResumableDownload.TYPE_CANCELED:
                 listener.onCanceled();
                 break;
         }
     }
 
-    private long getContentLength(String url) {
-        URL u = null;
-        try {
-            u = new URL(url);
-            HttpURLConnection connection = (HttpURLConnection) u.openConnection();
-            //处理下载读取长度为-1 问题
-            connection.setRequestProperty("Accept-Encoding", "identity");
-            connection.connect();
-            return connection.getContentLength();
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return 0;
-    }
-
 }
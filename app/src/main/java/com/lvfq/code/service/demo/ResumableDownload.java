@@ -0,0 +1,208 @@
+package com.lvfq.code.service.demo;
+
+import com.lvfq.code.designpatterns.imageload.CloseUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * ResumableDownload
+ *
+ * @date 2026/10/18
+ * @desc : 断点续传下载一个文件。读取 .seg 中的断点，从断点发 Range 请求，根据响应决定续传还是从头下载，
+ * 再交给 {@link SegmentedDownload} 分段下载。不依赖 Android，由 {@link DownloadTask} 在后台线程中调用。
+ */
+
+public class ResumableDownload {
+
+    public static final int TYPE_SUCCESS = 0;
+
+    public static final int TYPE_FAILED = 1;
+
+    public static final int TYPE_PAUSED = 2;
+
+    public static final int TYPE_CANCELED = 3;
+
+    private final OkHttpClient client;
+    private final String url;
+    private final File file;
+
+    // stop() 可能在其他线程调用
+    private volatile boolean stopped;
+
+    // 探测请求，暂停 / 取消时需要断开
+    private volatile Call probeCall;
+
+    private volatile SegmentedDownload download;
+
+    public ResumableDownload(OkHttpClient client, String url, File file) {
+        this.client = client;
+        this.url = url;
+        this.file = file;
+    }
+
+    /**
+     * 断开探测请求和所有分段，run 随后按 callback 的状态返回 TYPE_PAUSED / TYPE_CANCELED
+     */
+    public void stop() {
+        stopped = true;
+        Call call = probeCall;
+        if (call != null) {
+            call.cancel();
+        }
+        SegmentedDownload current = download;
+        if (current != null) {
+            current.stop();
+        }
+    }
+
+    /**
+     * 下载到 file，下载过程中写入 file.part，完成后重命名。阻塞直到完成、失败、暂停或取消
+     *
+     * @return TYPE_*
+     */
+    public int run(SegmentedDownload.Callback callback) {
+        Response response = null;
+
+        try {
+            if (file.exists()) {
+                // 最终文件只在所有分段完成后由 .part 重命名得到，存在就是完整的
+                return TYPE_SUCCESS;
+            }
+            File partFile = SegmentedDownload.getPartFile(file);
+            File segmentFile = SegmentedDownload.getSegmentFile(file);
+            SegmentedDownload.Checkpoint saved = SegmentedDownload.readCheckpoint(segmentFile);
+            if (saved == null || !partFile.exists()) {
+                // .part 是预分配的完整长度，没有断点记录就不知道写到了哪里，只能从头下载
+                partFile.delete();
+                segmentFile.delete();
+                saved = null;
+            }
+            // 有分段记录时从第一个未完成分段的断点开始
+            long from = saved != null ? saved.nextPosition() : 0;
+
+            // 不再单独发 HEAD 请求取长度：直接从断点发 Range 请求，长度和校验值都从这一次响应中取，
+            // 响应内容就是第一个分段的数据
+            response = probe(from, saved != null ? saved.validator : null);
+            if (response.code() == 416 && saved != null && from == saved.contentLength) {
+                // 所有分段都已完成，只是上次没来得及重命名。Content-Range 为 bytes */总长度
+                if (parseTotalLength(response.header("Content-Range")) == saved.contentLength) {
+                    return SegmentedDownload.complete(file) ? TYPE_SUCCESS : TYPE_FAILED;
+                }
+            }
+            if (response.code() == 416 || (response.code() == 206 && !rangeMatches(response, from, saved))) {
+                // 本地记录和服务器对不上，从头下载
+                CloseUtils.close(response);
+                partFile.delete();
+                segmentFile.delete();
+                saved = null;
+                from = 0;
+                response = probe(0, null);
+            }
+
+            long contentLength;
+            boolean acceptRanges;
+            if (response.code() == 206) {
+                contentLength = parseTotalLength(response.header("Content-Range"));
+                acceptRanges = true;
+            } else if (response.code() == 200) {
+                // 服务器不支持 Range，或者 If-Range 不匹配（文件已经变了），返回的是完整内容，只能从头下载
+                if (from > 0 || saved != null) {
+                    partFile.delete();
+                    segmentFile.delete();
+                    saved = null;
+                    from = 0;
+                }
+                contentLength = response.body() != null ? response.body().contentLength() : -1;
+                acceptRanges = "bytes".equalsIgnoreCase(response.header("Accept-Ranges"));
+            } else {
+                return TYPE_FAILED;
+            }
+            if (contentLength <= 0) {
+                return TYPE_FAILED;
+            }
+
+            List<SegmentedDownload.Segment> segments = saved != null ? saved.segments
+                    : SegmentedDownload.plan(from, contentLength,
+                    acceptRanges ? SegmentedDownload.DEFAULT_SEGMENT_COUNT : 1);
+            download = new SegmentedDownload(client, url, file, contentLength,
+                    SegmentedDownload.validatorOf(response), segments);
+            if (stopped) {
+                download.stop();
+            }
+            Response first = response;
+            response = null; // 交给 SegmentedDownload 关闭
+            return download.run(callback, first);
+        } catch (Exception e) {
+            // 暂停 / 取消时 probeCall 被 cancel 也会走到这里
+            if (callback.isCanceled()) {
+                return TYPE_CANCELED;
+            } else if (callback.isPaused()) {
+                return TYPE_PAUSED;
+            }
+            e.printStackTrace();
+        } finally {
+            CloseUtils.close(response);
+            if (callback.isCanceled()) {
+                // 删除取消下载的文件
+                SegmentedDownload.getPartFile(file).delete();
+                SegmentedDownload.getSegmentFile(file).delete();
+            }
+        }
+
+        return TYPE_FAILED;
+    }
+
+    /**
+     * 从断点开始请求到文件末尾
+     */
+    private Response probe(long from, String validator) throws IOException {
+        Call call = client.newCall(SegmentedDownload.newRangeRequest(url, from, -1, validator));
+        probeCall = call;
+        if (stopped) {
+            call.cancel();
+        }
+        return call.execute();
+    }
+
+    /**
+     * 206 的起点必须是请求的断点，有分段记录时总长度也必须一致
+     */
+    private static boolean rangeMatches(Response response, long from, SegmentedDownload.Checkpoint saved) {
+        String contentRange = response.header("Content-Range");
+        long total = parseTotalLength(contentRange);
+        if (total <= 0 || (saved != null && saved.contentLength != total)) {
+            return false;
+        }
+        try {
+            // bytes start-end/total
+            String range = contentRange.substring(contentRange.indexOf(' ') + 1, contentRange.indexOf('-'));
+            return Long.parseLong(range.trim()) == from;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 解析 Content-Range 中的总长度，"bytes 0-99/1000"，416 时为 "bytes *" 加上 "/1000"，未知时返回 -1
+     */
+    static long parseTotalLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int index = contentRange.lastIndexOf('/');
+        if (index < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(index + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
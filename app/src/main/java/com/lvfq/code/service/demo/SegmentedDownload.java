@@ -0,0 +1,490 @@
+package com.lvfq.code.service.demo;
+
+import com.lvfq.code.designpatterns.imageload.CloseUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * SegmentedDownload
+ *
+ * @date 2026/10/17
+ * @desc : 分段并行下载。把文件按 Range 拆成 N 段，每段一个连接，通过 FileChannel 按位置写入 "文件名.part"，
+ * 每段的进度记录在 "文件名.seg" 中，暂停 / 进程被杀后可以从各段的断点继续。
+ * <p>
+ * .part 会预先分配为完整长度，它的长度不能说明下载了多少；所有分段完成后才重命名为最终文件，
+ * 所以最终文件存在就表示下载完整，没有 .seg 的 .part 只能从头下载。
+ * <p>
+ * .seg 格式：
+ * <pre>
+ *     contentLength segmentCount
+ *     validator                 （ETag 或 Last-Modified，续传时作为 If-Range，没有时为空行）
+ *     start end downloaded      （每段一行，end 包含在内）
+ * </pre>
+ * 下载完成、重命名之后删除 .seg。
+ */
+
+public class SegmentedDownload {
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String PART_SUFFIX = ".part";
+    // 小于该大小的段不再拆分
+    static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    static final int DEFAULT_SEGMENT_COUNT = 4;
+
+    // 分段共享的直接内存缓冲池
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 8;
+    private static final ConcurrentLinkedQueue<ByteBuffer> BUFFER_POOL = new ConcurrentLinkedQueue<>();
+    // 进度通知的最小间隔
+    private static final long PROGRESS_INTERVAL_MS = 300;
+    // 每写入这么多字节保存一次断点
+    private static final long CHECKPOINT_BYTES = 512 * 1024;
+
+    public interface Callback {
+        boolean isCanceled();
+
+        boolean isPaused();
+
+        void onProgress(long downloaded, long contentLength);
+    }
+
+    private final OkHttpClient client;
+    private final String url;
+    private final File file;
+    private final File partFile;
+    private final File segmentFile;
+    private final long contentLength;
+    private final String validator;
+    private final List<Segment> segments;
+
+    private final AtomicLong downloaded = new AtomicLong();
+    private final AtomicLong lastCheckpoint = new AtomicLong();
+    private final AtomicLong lastProgressBytes = new AtomicLong();
+    private volatile long lastProgressTime;
+
+    private final List<Call> calls = new CopyOnWriteArrayList<>();
+    private volatile boolean stopped;
+
+    /**
+     * @param file      最终文件，下载过程中写入 getPartFile(file)
+     * @param validator 服务器返回的 ETag / Last-Modified，可以为 null
+     * @param segments  readCheckpoint() 恢复的分段，或者 plan() 新拆分的分段。第一段之前的内容视为已经下载好
+     */
+    public SegmentedDownload(OkHttpClient client, String url, File file, long contentLength,
+                             String validator, List<Segment> segments) {
+        this.client = client;
+        this.url = url;
+        this.file = file;
+        this.partFile = getPartFile(file);
+        this.segmentFile = getSegmentFile(file);
+        this.contentLength = contentLength;
+        this.validator = validator;
+        this.segments = segments;
+        downloaded.set(segments.get(0).start);
+        for (Segment segment : segments) {
+            downloaded.addAndGet(segment.downloaded.get());
+        }
+        lastCheckpoint.set(downloaded.get());
+        lastProgressBytes.set(downloaded.get());
+    }
+
+    static File getPartFile(File file) {
+        return new File(file.getPath() + PART_SUFFIX);
+    }
+
+    static File getSegmentFile(File file) {
+        return new File(file.getPath() + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * 删除最终文件、.part 和 .seg
+     */
+    static void deleteFiles(File file) {
+        file.delete();
+        getPartFile(file).delete();
+        getSegmentFile(file).delete();
+    }
+
+    /**
+     * 所有分段都已写入：.part 重命名为最终文件，再删除断点记录
+     *
+     * @return 是否重命名成功
+     */
+    static boolean complete(File file) {
+        if (!getPartFile(file).renameTo(file)) {
+            return false;
+        }
+        getSegmentFile(file).delete();
+        return true;
+    }
+
+    /**
+     * 把 [from, contentLength) 平均分成 count 段，每段不小于 MIN_SEGMENT_SIZE
+     */
+    static List<Segment> plan(long from, long contentLength, int count) {
+        long remain = contentLength - from;
+        int segmentCount = (int) Math.max(1, Math.min(count, remain / MIN_SEGMENT_SIZE));
+        long segmentSize = remain / segmentCount;
+        List<Segment> list = new ArrayList<>(segmentCount);
+        long start = from;
+        for (int i = 0; i < segmentCount; i++) {
+            long end = i == segmentCount - 1 ? contentLength - 1 : start + segmentSize - 1;
+            list.add(new Segment(start, end, 0));
+            start = end + 1;
+        }
+        return list;
+    }
+
+    /**
+     * Range 请求，to 为 -1 时请求到文件末尾。
+     * 带上 If-Range 后，服务器文件变化时会返回 200 和完整内容，而不是继续返回旧文件的片段
+     */
+    static Request newRangeRequest(String url, long from, long to, String validator) {
+        Request.Builder builder = new Request.Builder()
+                .addHeader("RANGE", "bytes=" + from + "-" + (to >= 0 ? String.valueOf(to) : ""))
+                .url(url);
+        if (validator != null) {
+            builder.addHeader("If-Range", validator);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 取可以用于 If-Range 的校验值：强 ETag 优先，其次 Last-Modified（弱 ETag 不能用于 If-Range）
+     */
+    static String validatorOf(Response response) {
+        String etag = response.header("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.header("Last-Modified");
+    }
+
+    /**
+     * 阻塞直到所有分段结束
+     *
+     * @param first 已经打开的响应，内容从第一个未完成分段的断点开始（DownloadTask 探测长度时的那次请求），
+     *              该分段直接读取它而不再发请求。可以为 null，由 run 负责关闭
+     * @return ResumableDownload.TYPE_*
+     */
+    public int run(final Callback callback, Response first) {
+        RandomAccessFile randomAccessFile = null;
+        ExecutorService executor = null;
+        boolean firstUsed = false;
+        try {
+            // 先写 .seg 再预分配，保证文件长度变化之前断点记录已经存在
+            writeSegments();
+            randomAccessFile = new RandomAccessFile(partFile, "rw");
+            if (randomAccessFile.length() < contentLength) {
+                // 预先分配文件大小，各段按位置写入
+                randomAccessFile.setLength(contentLength);
+            }
+            final FileChannel channel = randomAccessFile.getChannel();
+
+            executor = Executors.newFixedThreadPool(segments.size());
+            List<Future<Integer>> futures = new ArrayList<>(segments.size());
+            for (final Segment segment : segments) {
+                if (segment.isDone()) {
+                    continue;
+                }
+                final Response response = firstUsed ? null : first;
+                firstUsed = true;
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return downloadSegment(segment, channel, callback, response);
+                    }
+                }));
+            }
+            int result = ResumableDownload.TYPE_SUCCESS;
+            for (Future<Integer> future : futures) {
+                result = merge(result, future.get());
+            }
+            writeSegments();
+            if (result == ResumableDownload.TYPE_SUCCESS) {
+                channel.force(false);
+                CloseUtils.close(randomAccessFile);
+                randomAccessFile = null;
+                // .seg 已经记录所有分段完成，重命名失败时下次启动会再次尝试
+                return complete(file) ? ResumableDownload.TYPE_SUCCESS : ResumableDownload.TYPE_FAILED;
+            }
+            return result;
+        } catch (Exception e) {
+            e.printStackTrace();
+            writeSegments();
+            return ResumableDownload.TYPE_FAILED;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (!firstUsed) {
+                CloseUtils.close(first);
+            }
+            CloseUtils.close(randomAccessFile);
+        }
+    }
+
+    /**
+     * 取消优先，其次失败、暂停
+     */
+    private static int merge(int current, int result) {
+        if (current == ResumableDownload.TYPE_CANCELED || result == ResumableDownload.TYPE_CANCELED) {
+            return ResumableDownload.TYPE_CANCELED;
+        }
+        if (current == ResumableDownload.TYPE_FAILED || result == ResumableDownload.TYPE_FAILED) {
+            return ResumableDownload.TYPE_FAILED;
+        }
+        if (current == ResumableDownload.TYPE_PAUSED || result == ResumableDownload.TYPE_PAUSED) {
+            return ResumableDownload.TYPE_PAUSED;
+        }
+        return ResumableDownload.TYPE_SUCCESS;
+    }
+
+    /**
+     * @param response 已经打开的响应，为 null 时按断点发起 Range 请求
+     */
+    private int downloadSegment(Segment segment, FileChannel channel, Callback callback, Response response) {
+        ByteBuffer buffer = null;
+        try {
+            long position = segment.position();
+            if (response == null) {
+                Call call = client.newCall(newRangeRequest(url, position, segment.end, validator));
+                calls.add(call);
+                if (stopped) {
+                    call.cancel();
+                }
+                response = call.execute();
+                // 不支持 Range 的服务器会返回 200 和完整内容，只有从 0 开始时才能直接使用；
+                // 其他位置返回 200 说明 If-Range 不匹配，文件在下载过程中变了
+                if (response.code() != 206 && !(response.code() == 200 && position == 0)) {
+                    return ResumableDownload.TYPE_FAILED;
+                }
+            }
+            ResponseBody body = response.body();
+            if (body == null) {
+                return ResumableDownload.TYPE_FAILED;
+            }
+            // 直接从 Okio 的缓冲读到直接内存中，再按位置写入文件，不经过 byte[]
+            BufferedSource source = body.source();
+            buffer = obtainBuffer();
+            while (position <= segment.end) {
+                int status = checkStatus(callback);
+                if (status != ResumableDownload.TYPE_SUCCESS) {
+                    return status;
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), segment.end - position + 1));
+                // 尽量填满缓冲区，减少写文件的次数
+                int read;
+                do {
+                    read = source.read(buffer);
+                } while (read != -1 && buffer.hasRemaining());
+                buffer.flip();
+                int len = buffer.remaining();
+                if (len == 0) {
+                    break;
+                }
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                segment.downloaded.addAndGet(len);
+                long total = downloaded.addAndGet(len);
+                notifyProgress(total, callback);
+                checkpoint(total);
+            }
+            return segment.isDone() ? ResumableDownload.TYPE_SUCCESS : ResumableDownload.TYPE_FAILED;
+        } catch (IOException e) {
+            // stop() 取消连接时读会抛出异常，此时以暂停 / 取消状态为准
+            int status = checkStatus(callback);
+            if (status != ResumableDownload.TYPE_SUCCESS) {
+                return status;
+            }
+            e.printStackTrace();
+            return ResumableDownload.TYPE_FAILED;
+        } finally {
+            recycleBuffer(buffer);
+            CloseUtils.close(response);
+        }
+    }
+
+    private static int checkStatus(Callback callback) {
+        if (callback.isCanceled()) {
+            return ResumableDownload.TYPE_CANCELED;
+        } else if (callback.isPaused()) {
+            return ResumableDownload.TYPE_PAUSED;
+        }
+        return ResumableDownload.TYPE_SUCCESS;
+    }
+
+    /**
+     * 暂停 / 取消时调用，直接断开所有分段的连接，不必等到下一次 read 返回
+     */
+    public void stop() {
+        stopped = true;
+        for (Call call : calls) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * 进度按字节和时间节流：距离上次通知至少 PROGRESS_INTERVAL_MS 且新增至少 1%，最后一次总会通知
+     */
+    private void notifyProgress(long total, Callback callback) {
+        long now = System.currentTimeMillis();
+        long lastBytes = lastProgressBytes.get();
+        boolean finished = total >= contentLength;
+        if (!finished && (now - lastProgressTime < PROGRESS_INTERVAL_MS
+                || total - lastBytes < contentLength / 100)) {
+            return;
+        }
+        if (lastProgressBytes.compareAndSet(lastBytes, total)) {
+            lastProgressTime = now;
+            callback.onProgress(total, contentLength);
+        }
+    }
+
+    private static ByteBuffer obtainBuffer() {
+        ByteBuffer buffer = BUFFER_POOL.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private static void recycleBuffer(ByteBuffer buffer) {
+        if (buffer != null && BUFFER_POOL.size() < MAX_POOLED_BUFFERS) {
+            BUFFER_POOL.offer(buffer);
+        }
+    }
+
+    private void checkpoint(long total) {
+        long last = lastCheckpoint.get();
+        if (total - last >= CHECKPOINT_BYTES && lastCheckpoint.compareAndSet(last, total)) {
+            writeSegments();
+        }
+    }
+
+    /**
+     * 先写临时文件再 rename，避免进程被杀时留下半个 .seg
+     */
+    private synchronized void writeSegments() {
+        File tmp = new File(segmentFile.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new FileWriter(tmp);
+            StringBuilder sb = new StringBuilder();
+            sb.append(contentLength).append(' ').append(segments.size()).append('\n');
+            sb.append(validator != null ? validator : "").append('\n');
+            for (Segment segment : segments) {
+                sb.append(segment.start).append(' ').append(segment.end).append(' ')
+                        .append(segment.downloaded.get()).append('\n');
+            }
+            writer.write(sb.toString());
+            writer.close();
+            writer = null;
+            if (!tmp.renameTo(segmentFile)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            CloseUtils.close(writer);
+        }
+    }
+
+    /**
+     * 读取 .seg，文件不存在或者损坏时返回 null
+     */
+    static Checkpoint readCheckpoint(File segmentFile) {
+        if (!segmentFile.exists()) {
+            return null;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(segmentFile));
+            String[] header = reader.readLine().split(" ");
+            long contentLength = Long.parseLong(header[0]);
+            int count = Integer.parseInt(header[1]);
+            String validator = reader.readLine();
+            List<Segment> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String[] parts = reader.readLine().split(" ");
+                list.add(new Segment(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+            }
+            if (list.isEmpty()) {
+                return null;
+            }
+            return new Checkpoint(contentLength, validator.isEmpty() ? null : validator, list);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            CloseUtils.close(reader);
+        }
+    }
+
+    static class Checkpoint {
+        final long contentLength;
+        final String validator;
+        final List<Segment> segments;
+
+        Checkpoint(long contentLength, String validator, List<Segment> segments) {
+            this.contentLength = contentLength;
+            this.validator = validator;
+            this.segments = segments;
+        }
+
+        /**
+         * 第一个未完成分段的断点，全部完成时为 contentLength
+         */
+        long nextPosition() {
+            for (Segment segment : segments) {
+                if (!segment.isDone()) {
+                    return segment.position();
+                }
+            }
+            return contentLength;
+        }
+    }
+
+    static class Segment {
+        final long start;
+        final long end;
+        final AtomicLong downloaded;
+
+        Segment(long start, long end, long downloaded) {
+            this.start = start;
+            this.end = end;
+            this.downloaded = new AtomicLong(downloaded);
+        }
+
+        long position() {
+            return start + downloaded.get();
+        }
+
+        boolean isDone() {
+            return start + downloaded.get() > end;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.lvfq.code.uploadfile;
+
+/**
+ * AimdLimiter
+ *
+ * @date 2026/10/17
+ * @desc : 按 AIMD（加性增、乘性减）调整并发数，用于上传队列。
+ * <p>
+ * 1. 每连续成功 limit 次（大约一轮），并发数 +1；
+ * 2. 请求失败，或者估算的总吞吐量跌到平均值的一半以下（网络拥塞），并发数减半；
+ * 3. 总吞吐量按 单个请求的速率 * 当前并发数 估算，用指数加权平均平滑。
+ * 不依赖 Android，可以在 JVM 上做基准测试。
+ */
+
+public class AimdLimiter {
+
+    private static final float BACKOFF_RATIO = 0.5f;
+    // 吞吐量低于平均值的这个比例时视为拥塞
+    private static final float CONGESTION_RATIO = 0.5f;
+    // 吞吐量指数加权平均的权重
+    private static final float EWMA_WEIGHT = 0.2f;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private int limit;
+    private int successCount;
+    // 字节 / 毫秒
+    private double avgThroughput;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param bytes       本次请求上传的字节数
+     * @param durationMs  本次请求耗时
+     * @param concurrency 请求期间的并发数
+     */
+    public synchronized void onSuccess(long bytes, long durationMs, int concurrency) {
+        double throughput = (double) bytes / Math.max(1, durationMs) * Math.max(1, concurrency);
+        if (avgThroughput > 0 && throughput < avgThroughput * CONGESTION_RATIO) {
+            // 拥塞时不把这次的低值计入平均，避免平均值被拉低后失去判断依据
+            backOff();
+            return;
+        }
+        avgThroughput = avgThroughput == 0 ? throughput
+                : avgThroughput * (1 - EWMA_WEIGHT) + throughput * EWMA_WEIGHT;
+        if (++successCount >= limit) {
+            successCount = 0;
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    public synchronized void onFailure() {
+        backOff();
+    }
+
+    private void backOff() {
+        successCount = 0;
+        limit = Math.max(minLimit, (int) (limit * BACKOFF_RATIO));
+    }
+
+    /**
+     * @return 平均总吞吐量，字节 / 秒
+     */
+    public synchronized long getThroughput() {
+        return (long) (avgThroughput * 1000);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AimdLimiter{limit=" + limit + ", throughput=" + getThroughput() / 1024 + "KB/s}";
+    }
+}
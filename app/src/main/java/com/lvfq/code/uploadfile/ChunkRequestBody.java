@@ -0,0 +1,84 @@
+package com.lvfq.code.uploadfile;
+
+import com.lvfq.code.designpatterns.imageload.CloseUtils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * ChunkRequestBody
+ *
+ * @date 2026/10/17
+ * @desc : 文件中 [offset, offset + length) 这一段作为请求体，写入时直接从文件读到 Okio 的缓冲，不读成 byte[]。
+ */
+
+public class ChunkRequestBody extends RequestBody {
+
+    // Okio 一个 Segment 的大小
+    private static final long WRITE_SIZE = 8 * 1024;
+
+    public interface ProgressListener {
+        /**
+         * @param written 本段已经写出的字节数，重试时会从 0 开始
+         */
+        void onWrite(long written);
+    }
+
+    private final MediaType contentType;
+    private final File file;
+    private final long offset;
+    private final long length;
+    private final ProgressListener listener;
+
+    public ChunkRequestBody(MediaType contentType, File file, long offset, long length, ProgressListener listener) {
+        this.contentType = contentType;
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        this.listener = listener;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        FileInputStream inputStream = null;
+        Source source = null;
+        try {
+            inputStream = new FileInputStream(file);
+            inputStream.getChannel().position(offset);
+            source = Okio.source(inputStream);
+            long written = 0;
+            while (written < length) {
+                long read = source.read(sink.buffer(), Math.min(WRITE_SIZE, length - written));
+                if (read == -1) {
+                    throw new EOFException("file changed while uploading: " + file);
+                }
+                written += read;
+                sink.emitCompleteSegments();
+                if (listener != null) {
+                    listener.onWrite(written);
+                }
+            }
+        } finally {
+            CloseUtils.close(source);
+            CloseUtils.close(inputStream);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.lvfq.code.uploadfile;
+
+import com.lvfq.code.designpatterns.imageload.CloseUtils;
+import com.lvfq.code.http.RequestService;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * ChunkedUpload
+ *
+ * @date 2026/10/17
+ * @desc : 分块上传。文件按 chunkSize 切块，每块一个 multipart 请求（带 uploadId、块序号和 Content-Range），
+ * 已完成的块记录在 checkpointDir 下的断点文件中，失败或者进程被杀后只重传没有完成的块。
+ * <p>
+ * 断点文件名为 uploadId + CHECKPOINT_SUFFIX，uploadId 由文件路径、大小和修改时间计算，文件变了就重新上传。格式：
+ * <pre>
+ *     uploadId chunkSize chunkCount
+ *     0,1,2                     （已完成的块）
+ * </pre>
+ */
+
+public class ChunkedUpload {
+
+    public static final int TYPE_SUCCESS = 0;
+    public static final int TYPE_FAILED = 1;
+    public static final int TYPE_PAUSED = 2;
+    public static final int TYPE_CANCELED = 3;
+
+    static final String CHECKPOINT_SUFFIX = ".up";
+    static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    // 单个块失败后的重试次数和初始间隔，间隔每次翻倍
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    public interface Callback {
+        boolean isCanceled();
+
+        boolean isPaused();
+
+        void onProgress(long uploaded, long total);
+    }
+
+    private final RequestService service;
+    private final File file;
+    private final File checkpointFile;
+    private final String uploadId;
+    private final long totalSize;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final BitSet done;
+
+    private final List<Call<String>> calls = new CopyOnWriteArrayList<>();
+    private volatile boolean stopped;
+
+    public ChunkedUpload(RequestService service, File file, File checkpointDir) {
+        this(service, file, checkpointDir, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedUpload(RequestService service, File file, File checkpointDir, int chunkSize) {
+        this.service = service;
+        this.file = file;
+        this.totalSize = file.length();
+        this.uploadId = uploadIdOf(file);
+        this.checkpointFile = new File(checkpointDir, uploadId + CHECKPOINT_SUFFIX);
+        BitSet saved = readCheckpoint(checkpointFile, uploadId, chunkSize);
+        this.chunkSize = chunkSize;
+        this.chunkCount = (int) Math.max(1, (totalSize + chunkSize - 1) / chunkSize);
+        this.done = saved != null ? saved : new BitSet(chunkCount);
+        checkpointDir.mkdirs();
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * 已经完成的字节数
+     */
+    public synchronized long getUploadedSize() {
+        long size = 0;
+        for (int i = done.nextSetBit(0); i >= 0; i = done.nextSetBit(i + 1)) {
+            size += chunkLength(i);
+        }
+        return size;
+    }
+
+    /**
+     * 还没有完成的块
+     */
+    public synchronized List<Integer> pendingChunks() {
+        List<Integer> list = new ArrayList<>();
+        for (int i = done.nextClearBit(0); i < chunkCount; i = done.nextClearBit(i + 1)) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    public synchronized boolean isComplete() {
+        return done.cardinality() == chunkCount;
+    }
+
+    /**
+     * 顺序上传所有未完成的块，阻塞直到结束
+     *
+     * @return TYPE_*
+     */
+    public int run(final Callback callback) {
+        for (int index : pendingChunks()) {
+            int status = uploadWithRetry(index, callback);
+            if (status != TYPE_SUCCESS) {
+                return status;
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * 上传一个块，失败时按指数退避重试
+     *
+     * @return TYPE_*
+     */
+    int uploadWithRetry(int index, final Callback callback) {
+        final long uploadedBefore = getUploadedSize();
+        for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+            int status = checkStatus(callback);
+            if (status != TYPE_SUCCESS) {
+                return status;
+            }
+            try {
+                boolean success = uploadChunk(index, new ChunkRequestBody.ProgressListener() {
+                    @Override
+                    public void onWrite(long written) {
+                        callback.onProgress(uploadedBefore + written, totalSize);
+                    }
+                });
+                if (success) {
+                    return TYPE_SUCCESS;
+                }
+            } catch (IOException e) {
+                // stop() 断开连接时会抛出异常，此时以暂停 / 取消状态为准
+                int current = checkStatus(callback);
+                if (current != TYPE_SUCCESS) {
+                    return current;
+                }
+                e.printStackTrace();
+            }
+            if (attempt < MAX_RETRIES) {
+                try {
+                    Thread.sleep(RETRY_DELAY_MS << attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return TYPE_PAUSED;
+                }
+            }
+        }
+        return TYPE_FAILED;
+    }
+
+    private static int checkStatus(Callback callback) {
+        if (callback.isCanceled()) {
+            return TYPE_CANCELED;
+        } else if (callback.isPaused()) {
+            return TYPE_PAUSED;
+        }
+        return TYPE_SUCCESS;
+    }
+
+    /**
+     * 发送一个块，不重试，成功后记录断点。UploadManager 并行上传时直接调用
+     *
+     * @return 服务器是否接收成功
+     */
+    boolean uploadChunk(int index, ChunkRequestBody.ProgressListener listener) throws IOException {
+        long offset = (long) index * chunkSize;
+        long length = chunkLength(index);
+        ChunkRequestBody body = new ChunkRequestBody(OCTET_STREAM, file, offset, length, listener);
+        MultipartBody.Part part = MultipartBody.Part.createFormData("fileName", file.getName(), body);
+        String contentRange = "bytes " + offset + "-" + (offset + length - 1) + "/" + totalSize;
+        Call<String> call = service.uploadChunk(uploadId, index, chunkCount, contentRange, part);
+        calls.add(call);
+        try {
+            if (stopped) {
+                call.cancel();
+            }
+            Response<String> response = call.execute();
+            if (response.isSuccessful()) {
+                markDone(index);
+                return true;
+            }
+            return false;
+        } finally {
+            calls.remove(call);
+        }
+    }
+
+    /**
+     * 全部完成后删除断点文件
+     *
+     * @return TYPE_*
+     */
+    int finish() {
+        if (!isComplete()) {
+            return TYPE_FAILED;
+        }
+        checkpointFile.delete();
+        return TYPE_SUCCESS;
+    }
+
+    /**
+     * 暂停 / 取消时调用，断开正在上传的请求
+     */
+    public void stop() {
+        stopped = true;
+        for (Call<String> call : calls) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * 取消上传，同时删除断点。正在写的断点写完后再删除
+     */
+    public void discard() {
+        stop();
+        synchronized (this) {
+            checkpointFile.delete();
+        }
+    }
+
+    long chunkLength(int index) {
+        return Math.min(chunkSize, totalSize - (long) index * chunkSize);
+    }
+
+    /**
+     * stop() 之后结束的块不再记录，断点可能已经被 discard 删除，或者由新的 ChunkedUpload 接着写
+     */
+    synchronized void markDone(int index) {
+        if (stopped) {
+            return;
+        }
+        done.set(index);
+        writeCheckpoint();
+    }
+
+    /**
+     * 先写临时文件再 rename，避免进程被杀时留下半个断点文件
+     */
+    private synchronized void writeCheckpoint() {
+        File tmp = new File(checkpointFile.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new FileWriter(tmp);
+            StringBuilder sb = new StringBuilder();
+            sb.append(uploadId).append(' ').append(chunkSize).append(' ').append(chunkCount).append('\n');
+            for (int i = done.nextSetBit(0); i >= 0; i = done.nextSetBit(i + 1)) {
+                if (sb.charAt(sb.length() - 1) != '\n') {
+                    sb.append(',');
+                }
+                sb.append(i);
+            }
+            sb.append('\n');
+            writer.write(sb.toString());
+            writer.close();
+            writer = null;
+            if (!tmp.renameTo(checkpointFile)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            CloseUtils.close(writer);
+        }
+    }
+
+    /**
+     * 读取断点，文件不存在、损坏或者块大小变了都返回 null
+     */
+    static BitSet readCheckpoint(File checkpointFile, String uploadId, int chunkSize) {
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(checkpointFile));
+            String[] header = reader.readLine().split(" ");
+            if (!uploadId.equals(header[0]) || Integer.parseInt(header[1]) != chunkSize) {
+                return null;
+            }
+            int chunkCount = Integer.parseInt(header[2]);
+            BitSet done = new BitSet(chunkCount);
+            String line = reader.readLine();
+            if (line != null && !line.isEmpty()) {
+                for (String index : line.split(",")) {
+                    done.set(Integer.parseInt(index));
+                }
+            }
+            return done;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            CloseUtils.close(reader);
+        }
+    }
+
+    /**
+     * 同一个文件（路径、大小、修改时间都相同）每次得到相同的 uploadId，服务器据此拼接各个块
+     */
+    static String uploadIdOf(File file) {
+        String key = file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] bytes = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            return String.valueOf(key.hashCode());
+        }
+    }
+}
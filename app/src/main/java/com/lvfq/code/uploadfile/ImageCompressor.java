@@ -0,0 +1,117 @@
+package com.lvfq.code.uploadfile;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.lvfq.code.designpatterns.imageload.BitmapDecoder;
+import com.lvfq.code.designpatterns.imageload.CloseUtils;
+import com.lvfq.code.util.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * ImageCompressor
+ *
+ * @date 2026/10/17
+ * @desc : 上传前的压缩：长边缩小到 maxSize 以内，按 EXIF 角度摆正，重新编码为 JPEG。
+ * 输出文件名由原图的完整路径、大小和修改时间计算，不同目录下的同名图片不会冲突；
+ * 输出文件已经存在时直接复用，这样断点续传时 uploadId 不会变。上传完成或者取消后由调用方 delete。在后台线程调用。
+ */
+
+public class ImageCompressor {
+
+    public static final int DEFAULT_MAX_SIZE = 1920;
+    public static final int DEFAULT_QUALITY = 85;
+    // 小于这个大小、尺寸也不超的 JPEG 直接上传原图
+    private static final long SKIP_BYTES = 300 * 1024;
+
+    /**
+     * @return 压缩后的文件，不需要压缩或者解码失败时返回原文件
+     */
+    public static File compress(File source, File outDir, int maxSize, int quality) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(source.getPath(), options);
+        int width = options.outWidth;
+        int height = options.outHeight;
+        if (width <= 0 || height <= 0) {
+            return source;
+        }
+        int degree = FileUtils.readPictureDegree(source.getPath());
+        if (Math.max(width, height) <= maxSize && source.length() <= SKIP_BYTES && degree == 0
+                && "image/jpeg".equals(options.outMimeType)) {
+            return source;
+        }
+
+        File out = outputFileOf(source, outDir, maxSize, quality);
+        if (out.exists()) {
+            return out;
+        }
+        outDir.mkdirs();
+
+        // 先用 inSampleSize 在解码时缩小，再精确缩放到 maxSize
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = BitmapDecoder.calculateInSampleSize(width, height, maxSize, maxSize);
+        Bitmap bitmap = BitmapFactory.decodeFile(source.getPath(), options);
+        if (bitmap == null) {
+            return source;
+        }
+        float scale = (float) maxSize / Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (scale < 1) {
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * scale),
+                    Math.round(bitmap.getHeight() * scale), true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+                bitmap = scaled;
+            }
+        }
+        if (degree != 0) {
+            Bitmap rotated = FileUtils.rotaingImageView(degree, bitmap);
+            if (rotated != bitmap) {
+                bitmap.recycle();
+                bitmap = rotated;
+            }
+        }
+
+        // 先写临时文件，写完整后再 rename，中途被杀不会留下半张图
+        File tmp = new File(out.getPath() + ".tmp");
+        OutputStream os = null;
+        try {
+            os = new BufferedOutputStream(new FileOutputStream(tmp));
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, os);
+            os.close();
+            os = null;
+            if (tmp.renameTo(out)) {
+                return out;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            CloseUtils.close(os);
+            bitmap.recycle();
+            tmp.delete();
+        }
+        return source;
+    }
+
+    /**
+     * 删除 compress 为 source 生成的文件，没有生成过时什么都不做
+     */
+    public static void delete(File source, File outDir, int maxSize, int quality) {
+        File out = outputFileOf(source, outDir, maxSize, quality);
+        if (out.exists()) {
+            out.delete();
+        }
+    }
+
+    /**
+     * 原图变了（大小或者修改时间不同）会得到新的文件名，不会复用旧的压缩结果
+     */
+    static File outputFileOf(File source, File outDir, int maxSize, int quality) {
+        return new File(outDir, ChunkedUpload.uploadIdOf(source) + "_" + maxSize + "_" + quality + ".jpg");
+    }
+}
@@ -4,26 +4,18 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
-import android.text.TextUtils;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
 import com.lvfq.code.R;
-import com.lvfq.code.http.HttpClient;
 import com.lvfq.library.utils.LvLog;
 
-import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import me.lvfq.multi_image_selector.MultiImageSelectorActivity;
-import okhttp3.MediaType;
-import okhttp3.MultipartBody;
-import okhttp3.RequestBody;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 
 /**
  * UploadFileActivity
@@ -40,7 +32,8 @@ public class UploadFileActivity extends AppCompatActivity {
     private Button btn_upload;
     private Button btn_choose;
     private ImageView iv_upload;
-    private String imgUrl;
+    private final ArrayList<String> imgUrls = new ArrayList<>();
+    private UploadManager uploadManager;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -52,11 +45,32 @@ public class UploadFileActivity extends AppCompatActivity {
 
         iv_upload = (ImageView) findViewById(R.id.upload_iv);
 
+        uploadManager = UploadManager.getInstance(this);
+        uploadManager.setOnUploadListener(new UploadManager.OnUploadListener() {
+            @Override
+            public void onProgress(int progress) {
+                btn_upload.setText("上传中 " + progress + "%");
+            }
+
+            @Override
+            public void onStateChanged(UploadManager.UploadInfo info) {
+                LvLog.i(info.path + " " + info.getState());
+                updateButton();
+            }
+
+            @Override
+            public void onCanceled(String path) {
+                updateButton();
+            }
+        });
+        // 上次进程留下的任务
+        updateButton();
+
         btn_choose.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 Intent intent = new Intent(UploadFileActivity.this, MultiImageSelectorActivity.class);
-                intent.putExtra(MultiImageSelectorActivity.EXTRA_SELECT_MODE, MultiImageSelectorActivity.MODE_SINGLE);
+                intent.putExtra(MultiImageSelectorActivity.EXTRA_SELECT_COUNT, 9);
                 UploadFileActivity.this.startActivityForResult(intent, 2);
             }
         });
@@ -64,7 +78,7 @@ public class UploadFileActivity extends AppCompatActivity {
         btn_upload.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (TextUtils.isEmpty(imgUrl)) {
+                if (imgUrls.isEmpty()) {
                     return;
                 }
                 http_Upload();
@@ -73,25 +87,40 @@ public class UploadFileActivity extends AppCompatActivity {
     }
 
 
+    /**
+     * 选中的图片全部加入上传队列，压缩后分块并行上传。
+     * 队列由 UploadManager 持有，离开页面后继续上传，失败后再次点击只重传没有完成的块
+     */
     private void http_Upload() {
-        File file = new File(imgUrl);
-        RequestBody body = RequestBody.create(MediaType.parse("multipart/form-data"), file);
-        MultipartBody.Part part = MultipartBody.Part.createFormData("fileName", file.getName(), body);
-        HttpClient.getService().uploadFile("测试数据", part).enqueue(new Callback<String>() {
-            @Override
-            public void onResponse(Call<String> call, Response<String> response) {
-                if (response.isSuccessful()) {
-                    LvLog.i("success");
-                } else {
-                    LvLog.i("Error");
-                }
-            }
+        uploadManager.enqueueAll(imgUrls);
+    }
 
-            @Override
-            public void onFailure(Call<String> call, Throwable t) {
-                LvLog.i("Failure");
+    private void updateButton() {
+        int active = 0;
+        int failed = 0;
+        for (UploadManager.UploadInfo info : uploadManager.getUploads()) {
+            switch (info.getState()) {
+                case QUEUED:
+                case RUNNING:
+                    active++;
+                    break;
+                case PAUSED:
+                case FAILED:
+                    failed++;
+                    break;
             }
-        });
+        }
+        if (active > 0) {
+            btn_upload.setText("上传中 " + uploadManager.getTotalProgress() + "%");
+        } else {
+            btn_upload.setText(failed > 0 ? "继续上传" : "上传");
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        uploadManager.setOnUploadListener(null);
     }
 
     @Override
@@ -101,9 +130,10 @@ public class UploadFileActivity extends AppCompatActivity {
         }
         if (requestCode == 2) {
             List<String> list = data.getStringArrayListExtra(MultiImageSelectorActivity.EXTRA_RESULT);
-            if (list != null && list.size() >= 0) {
-                imgUrl = list.get(0);
-                Glide.with(this).load(imgUrl).into(iv_upload);
+            if (list != null && list.size() > 0) {
+                imgUrls.clear();
+                imgUrls.addAll(list);
+                Glide.with(this).load(imgUrls.get(0)).into(iv_upload);
             }
         }
     }
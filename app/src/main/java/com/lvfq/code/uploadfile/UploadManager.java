@@ -0,0 +1,565 @@
+package com.lvfq.code.uploadfile;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.lvfq.code.http.HttpClient;
+import com.lvfq.code.http.RequestService;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UploadManager
+ *
+ * @date 2026/10/17
+ * @desc : 批量上传队列，进程内单例。
+ * <p>
+ * 每个文件一个状态机：QUEUED -> RUNNING -> DONE / PAUSED / FAILED，PAUSED / FAILED 可以重新进入 QUEUED。
+ * 每个文件先在单独的线程中压缩并读取断点（ChunkedUpload），然后以块为单位并行上传：
+ * 所有文件的块共用一个并发上限，由 AimdLimiter 按成功 / 失败和吞吐量调整，按加入顺序优先上传前面的文件。
+ * 块失败后放回队头，按连续失败次数退避，连续失败 MAX_CHUNK_FAILURES 次后该文件标记为 FAILED。
+ * <p>
+ * 状态保存在 SharedPreferences 中，进程被杀后 getInstance() 会重新排队，已完成的块由断点文件跳过。
+ * 完成（DONE）的任务只保留在内存中，SharedPreferences 里的记录和压缩后的图片在完成或取消时删除。
+ * 除了 getInstance，所有方法都在主线程调用，块上传的结果也回到主线程处理，所以不需要加锁。
+ */
+
+public class UploadManager {
+
+    private static final String PREFS_NAME = "upload_manager";
+    private static final String COMPRESS_DIR_NAME = "upload_compress";
+    private static final String CHECKPOINT_DIR_NAME = "upload";
+
+    private static final int INITIAL_CONCURRENCY = 2;
+    private static final int MIN_CONCURRENCY = 1;
+    private static final int MAX_CONCURRENCY = 6;
+    private static final int MAX_CHUNK_FAILURES = 5;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long PROGRESS_INTERVAL_MS = 300;
+
+    public enum State {
+        QUEUED, RUNNING, PAUSED, FAILED, DONE
+    }
+
+    public static class UploadInfo {
+        public final String path;
+        State state;
+        long uploaded;
+        long total;
+        // 正在上传中的块已经写出的字节数，由上传线程更新
+        final AtomicLong inFlight = new AtomicLong();
+
+        UploadInfo(String path, State state) {
+            this.path = path;
+            this.state = state;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getProgress() {
+            if (state == State.DONE) {
+                return 100;
+            }
+            return total <= 0 ? 0 : (int) (Math.min(total, uploaded + inFlight.get()) * 100 / total);
+        }
+    }
+
+    public interface OnUploadListener {
+        /**
+         * @param progress 队列中所有文件的总进度
+         */
+        void onProgress(int progress);
+
+        void onStateChanged(UploadInfo info);
+
+        /**
+         * 取消后任务会从队列中移除
+         */
+        void onCanceled(String path);
+    }
+
+    private static class Job {
+        final UploadInfo info;
+        ChunkedUpload upload;
+        boolean preparing;
+        // 待上传的块
+        final ArrayDeque<Integer> pending = new ArrayDeque<>();
+        // 正在上传的块数
+        int running;
+        // 连续失败次数
+        int failures;
+        // 失败退避，在这个时间之前不再上传该文件的块
+        long retryAt;
+
+        Job(UploadInfo info) {
+            this.info = info;
+        }
+    }
+
+    private static volatile UploadManager sInstance;
+
+    public static UploadManager getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (UploadManager.class) {
+                if (sInstance == null) {
+                    Context appContext = context.getApplicationContext();
+                    sInstance = new UploadManager(appContext, HttpClient.getService(), appContext.getCacheDir(), true);
+                    sInstance.restore();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    private final SharedPreferences mPrefs;
+    private final RequestService mService;
+    private final File mCacheDir;
+    private final boolean mCompress;
+    private OnUploadListener mListener;
+
+    // 按加入顺序排队
+    private final LinkedHashMap<String, Job> mJobs = new LinkedHashMap<>();
+    // 已经取消、但还在压缩或者还有块没有结束的任务，同一个文件重新加入后等它结束再 prepare
+    private final HashMap<String, Job> mCanceling = new HashMap<>();
+    private final AimdLimiter mLimiter = new AimdLimiter(INITIAL_CONCURRENCY, MIN_CONCURRENCY, MAX_CONCURRENCY);
+    private int mRunningChunks;
+
+    // 块上传线程数等于并发上限的最大值，实际并发由 mLimiter 控制
+    private final ExecutorService mChunkExecutor = Executors.newFixedThreadPool(MAX_CONCURRENCY);
+    // 压缩很占内存，一次只压缩一张
+    private final ExecutorService mPrepareExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private boolean mProgressScheduled;
+
+    private final Runnable mScheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            schedule();
+        }
+    };
+
+    private final Runnable mProgressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mProgressScheduled = false;
+            notifyProgress();
+            if (mRunningChunks > 0) {
+                scheduleProgress();
+            }
+        }
+    };
+
+    /**
+     * @param cacheDir 压缩后的图片和断点文件放在这里
+     * @param compress 上传前是否压缩图片
+     */
+    public UploadManager(Context context, RequestService service, File cacheDir, boolean compress) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mService = service;
+        mCacheDir = cacheDir;
+        mCompress = compress;
+    }
+
+    public void setOnUploadListener(OnUploadListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 恢复上次进程中的任务，QUEUED / RUNNING 的重新排队，PAUSED / FAILED 保持原状，DONE 的记录直接删除
+     */
+    public void restore() {
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            String path = entry.getKey();
+            if (mJobs.containsKey(path) || !(entry.getValue() instanceof String)) {
+                continue;
+            }
+            try {
+                State state = State.valueOf((String) entry.getValue());
+                if (state == State.DONE) {
+                    mPrefs.edit().remove(path).apply();
+                    continue;
+                }
+                if (state == State.RUNNING) {
+                    state = State.QUEUED;
+                }
+                mJobs.put(path, new Job(new UploadInfo(path, state)));
+            } catch (RuntimeException e) {
+                mPrefs.edit().remove(path).apply();
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * 加入队列，已经在上传或排队的文件忽略，暂停 / 失败 / 已完成的重新排队
+     */
+    public void enqueue(String path) {
+        Job job = mJobs.get(path);
+        if (job == null) {
+            job = new Job(new UploadInfo(path, State.QUEUED));
+            mJobs.put(path, job);
+        } else if (job.info.state == State.QUEUED || job.info.state == State.RUNNING) {
+            return;
+        }
+        job.failures = 0;
+        job.retryAt = 0;
+        changeState(job, State.QUEUED);
+        schedule();
+    }
+
+    public void enqueueAll(List<String> paths) {
+        for (String path : paths) {
+            enqueue(path);
+        }
+    }
+
+    /**
+     * 暂停，保留断点。正在上传的块会被断开，恢复时重新读取断点
+     */
+    public void pause(String path) {
+        Job job = mJobs.get(path);
+        if (job == null || (job.info.state != State.QUEUED && job.info.state != State.RUNNING)) {
+            return;
+        }
+        stop(job);
+        changeState(job, State.PAUSED);
+        schedule();
+    }
+
+    /**
+     * 取消，删除断点、压缩后的图片并从队列中移除
+     */
+    public void cancel(String path) {
+        Job job = mJobs.remove(path);
+        if (job == null) {
+            return;
+        }
+        if (job.upload != null) {
+            job.upload.discard();
+        }
+        stop(job);
+        // 还在压缩或者还有块在读时，等它们结束后再删除
+        if (job.preparing || job.running > 0) {
+            mCanceling.put(path, job);
+        } else {
+            deleteCompressed(path);
+        }
+        mPrefs.edit().remove(path).apply();
+        if (mListener != null) {
+            mListener.onCanceled(path);
+        }
+        schedule();
+    }
+
+    public void pauseAll() {
+        for (String path : new ArrayList<>(mJobs.keySet())) {
+            pause(path);
+        }
+    }
+
+    /**
+     * 从列表中清除已经完成的任务，它们在 SharedPreferences 中的记录完成时已经删除
+     */
+    public void clearDone() {
+        for (Job job : new ArrayList<>(mJobs.values())) {
+            if (job.info.state == State.DONE) {
+                mJobs.remove(job.info.path);
+            }
+        }
+    }
+
+    public List<UploadInfo> getUploads() {
+        List<UploadInfo> list = new ArrayList<>(mJobs.size());
+        for (Job job : mJobs.values()) {
+            list.add(job.info);
+        }
+        return list;
+    }
+
+    /**
+     * 队列中所有文件的总进度，还没有压缩完、不知道大小的文件不计入
+     */
+    public int getTotalProgress() {
+        long uploaded = 0;
+        long total = 0;
+        for (Job job : mJobs.values()) {
+            UploadInfo info = job.info;
+            if (info.total <= 0) {
+                continue;
+            }
+            total += info.total;
+            uploaded += info.state == State.DONE ? info.total : Math.min(info.total, info.uploaded + info.inFlight.get());
+        }
+        return total == 0 ? 0 : (int) (uploaded * 100 / total);
+    }
+
+    public AimdLimiter getLimiter() {
+        return mLimiter;
+    }
+
+    /**
+     * 先为排队中的文件读取断点，再按加入顺序分配块，直到达到并发上限
+     */
+    private void schedule() {
+        long now = SystemClock.elapsedRealtime();
+        long nextRetry = Long.MAX_VALUE;
+        for (Job job : mJobs.values()) {
+            State state = job.info.state;
+            if (state != State.QUEUED && state != State.RUNNING) {
+                continue;
+            }
+            if (job.upload == null) {
+                // 暂停 / 取消前发出的块还没有结束时先不读取断点，避免两个 ChunkedUpload 同时写断点文件
+                if (!job.preparing && job.running == 0 && !mCanceling.containsKey(job.info.path)) {
+                    prepare(job);
+                }
+                continue;
+            }
+            if (job.retryAt > now) {
+                nextRetry = Math.min(nextRetry, job.retryAt);
+                continue;
+            }
+            while (mRunningChunks < mLimiter.getLimit() && !job.pending.isEmpty()) {
+                submitChunk(job, job.pending.poll());
+            }
+        }
+        mHandler.removeCallbacks(mScheduleRunnable);
+        if (nextRetry != Long.MAX_VALUE) {
+            mHandler.postDelayed(mScheduleRunnable, nextRetry - now);
+        }
+        if (mRunningChunks > 0) {
+            scheduleProgress();
+        }
+    }
+
+    /**
+     * 后台压缩图片、读取断点
+     */
+    private void prepare(final Job job) {
+        job.preparing = true;
+        final String path = job.info.path;
+        mPrepareExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = new File(path);
+                ChunkedUpload upload = null;
+                if (file.exists() && file.length() > 0) {
+                    if (mCompress) {
+                        file = ImageCompressor.compress(file, new File(mCacheDir, COMPRESS_DIR_NAME),
+                                ImageCompressor.DEFAULT_MAX_SIZE, ImageCompressor.DEFAULT_QUALITY);
+                    }
+                    upload = new ChunkedUpload(mService, file, new File(mCacheDir, CHECKPOINT_DIR_NAME));
+                }
+                final ChunkedUpload result = upload;
+                final List<Integer> pending = upload != null ? upload.pendingChunks() : null;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPrepared(job, result, pending);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPrepared(Job job, ChunkedUpload upload, List<Integer> pending) {
+        job.preparing = false;
+        if (mJobs.get(job.info.path) != job) {
+            // 已经取消
+            if (upload != null) {
+                upload.discard();
+            }
+            onCanceledJobIdle(job);
+            return;
+        }
+        if (job.info.state != State.QUEUED && job.info.state != State.RUNNING) {
+            // 压缩期间被暂停，恢复时重新读取断点
+            return;
+        }
+        if (upload == null) {
+            changeState(job, State.FAILED);
+            schedule();
+            return;
+        }
+        job.upload = upload;
+        job.pending.clear();
+        job.pending.addAll(pending);
+        job.info.total = upload.getTotalSize();
+        job.info.uploaded = upload.getUploadedSize();
+        if (pending.isEmpty()) {
+            complete(job);
+        }
+        schedule();
+    }
+
+    private void submitChunk(final Job job, final int index) {
+        mRunningChunks++;
+        job.running++;
+        if (job.info.state != State.RUNNING) {
+            changeState(job, State.RUNNING);
+        }
+        final ChunkedUpload upload = job.upload;
+        final int concurrency = mRunningChunks;
+        final long length = upload.chunkLength(index);
+        mChunkExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long start = SystemClock.elapsedRealtime();
+                final long[] lastWritten = new long[1];
+                boolean success = false;
+                try {
+                    success = upload.uploadChunk(index, new ChunkRequestBody.ProgressListener() {
+                        @Override
+                        public void onWrite(long written) {
+                            // OkHttp 重试时会从 0 重新写，这里按差值累加
+                            job.info.inFlight.addAndGet(written - lastWritten[0]);
+                            lastWritten[0] = written;
+                        }
+                    });
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                job.info.inFlight.addAndGet(-lastWritten[0]);
+                final boolean result = success;
+                final long duration = SystemClock.elapsedRealtime() - start;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onChunkFinished(job, upload, index, result, length, duration, concurrency);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onChunkFinished(Job job, ChunkedUpload upload, int index, boolean success,
+                                 long length, long duration, int concurrency) {
+        mRunningChunks--;
+        job.running--;
+        if (mJobs.get(job.info.path) != job) {
+            // 已经取消
+            onCanceledJobIdle(job);
+            return;
+        }
+        if (job.upload != upload || job.info.state != State.RUNNING) {
+            // 已经暂停 / 失败，断点中的记录会在下次 prepare 时读取
+            schedule();
+            return;
+        }
+        if (success) {
+            mLimiter.onSuccess(length, duration, concurrency);
+            job.failures = 0;
+            job.info.uploaded += length;
+            save(job.info);
+        } else {
+            mLimiter.onFailure();
+            job.pending.addFirst(index);
+            if (++job.failures >= MAX_CHUNK_FAILURES) {
+                stop(job);
+                changeState(job, State.FAILED);
+                schedule();
+                return;
+            }
+            job.retryAt = SystemClock.elapsedRealtime() + RETRY_DELAY_MS * job.failures;
+        }
+        if (job.pending.isEmpty() && job.running == 0) {
+            complete(job);
+        }
+        schedule();
+    }
+
+    /**
+     * 取消的任务压缩完、所有块都结束后删除压缩后的图片，重新加入的同一个文件这时才 prepare
+     */
+    private void onCanceledJobIdle(Job job) {
+        String path = job.info.path;
+        if (job.preparing || job.running > 0 || mCanceling.get(path) != job) {
+            schedule();
+            return;
+        }
+        mCanceling.remove(path);
+        // 取消后又重新加入的，压缩后的图片还要用
+        if (!mJobs.containsKey(path)) {
+            deleteCompressed(path);
+        }
+        schedule();
+    }
+
+    private void complete(Job job) {
+        int status = job.upload.finish();
+        if (status == ChunkedUpload.TYPE_SUCCESS) {
+            deleteCompressed(job.info.path);
+        }
+        changeState(job, status == ChunkedUpload.TYPE_SUCCESS ? State.DONE : State.FAILED);
+        job.upload = null;
+        notifyProgress();
+    }
+
+    /**
+     * 删除压缩后的图片，暂停 / 失败时保留，继续上传时 uploadId 才不会变
+     */
+    private void deleteCompressed(String path) {
+        if (mCompress) {
+            ImageCompressor.delete(new File(path), new File(mCacheDir, COMPRESS_DIR_NAME),
+                    ImageCompressor.DEFAULT_MAX_SIZE, ImageCompressor.DEFAULT_QUALITY);
+        }
+    }
+
+    /**
+     * 断开正在上传的块，下次排队时重新 prepare
+     */
+    private void stop(Job job) {
+        if (job.upload != null) {
+            job.upload.stop();
+            job.upload = null;
+        }
+        job.pending.clear();
+    }
+
+    private void scheduleProgress() {
+        if (!mProgressScheduled) {
+            mProgressScheduled = true;
+            mHandler.postDelayed(mProgressRunnable, PROGRESS_INTERVAL_MS);
+        }
+    }
+
+    private void notifyProgress() {
+        if (mListener != null) {
+            mListener.onProgress(getTotalProgress());
+        }
+    }
+
+    private void changeState(Job job, State state) {
+        job.info.state = state;
+        save(job.info);
+        if (mListener != null) {
+            mListener.onStateChanged(job.info);
+        }
+    }
+
+    /**
+     * 完成的任务不需要恢复，直接删除记录
+     */
+    private void save(UploadInfo info) {
+        if (info.state == State.DONE) {
+            mPrefs.edit().remove(info.path).apply();
+        } else {
+            mPrefs.edit().putString(info.path, info.state.name()).apply();
+        }
+    }
+}
@@ -15,6 +15,8 @@ import android.provider.MediaStore;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.lvfq.code.designpatterns.imageload.BitmapPool;
+
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -189,9 +191,18 @@ public class FileUtils {
         }
         opts.inJustDecodeBounds = false;
         opts.inSampleSize = scale;
-        Bitmap bm = BitmapFactory.decodeFile(fPath, opts).copy(
-                Config.ARGB_8888, false);
-        return bm;
+        opts.inPreferredConfig = Config.ARGB_8888;
+        // 复用池中的 Bitmap 直接作为解码目标，不再 copy 一份
+        BitmapPool pool = BitmapPool.getInstance();
+        if (pool.applyInBitmap(opts)) {
+            opts.inPurgeable = false;
+            try {
+                return BitmapFactory.decodeFile(fPath, opts);
+            } catch (IllegalArgumentException e) {
+                pool.releaseInBitmap(opts);
+            }
+        }
+        return BitmapFactory.decodeFile(fPath, opts);
     }
 
     /**
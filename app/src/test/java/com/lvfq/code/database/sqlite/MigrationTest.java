@@ -0,0 +1,95 @@
+package com.lvfq.code.database.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Migration.findPath 的路径选择和缺少某一步时的处理
+ */
+public class MigrationTest {
+
+    private static final Migration M_1_2 = new TestMigration(1, 2);
+    private static final Migration M_2_3 = new TestMigration(2, 3);
+    private static final Migration M_3_4 = new TestMigration(3, 4);
+    private static final Migration M_1_3 = new TestMigration(1, 3);
+    private static final Migration M_4_5 = new TestMigration(4, 5);
+
+    @Test
+    public void findPath_chainsEachStep() {
+        Migration[] migrations = {M_1_2, M_2_3, M_3_4};
+
+        assertEquals(Arrays.asList(M_1_2, M_2_3, M_3_4), Migration.findPath(migrations, 1, 4));
+        assertEquals(Arrays.asList(M_2_3, M_3_4), Migration.findPath(migrations, 2, 4));
+        assertEquals(Collections.singletonList(M_1_2), Migration.findPath(migrations, 1, 2));
+    }
+
+    @Test
+    public void findPath_sameVersionIsEmpty() {
+        List<Migration> path = Migration.findPath(new Migration[]{M_1_2}, 2, 2);
+
+        assertEquals(Collections.<Migration>emptyList(), path);
+    }
+
+    @Test
+    public void findPath_prefersLongestStep() {
+        Migration[] migrations = {M_1_2, M_2_3, M_1_3, M_3_4};
+
+        assertEquals(Arrays.asList(M_1_3, M_3_4), Migration.findPath(migrations, 1, 4));
+    }
+
+    @Test
+    public void findPath_doesNotOvershootTarget() {
+        Migration[] migrations = {M_1_2, M_2_3, M_1_3};
+
+        assertEquals(Collections.singletonList(M_1_2), Migration.findPath(migrations, 1, 2));
+    }
+
+    @Test
+    public void findPath_gapInChainReturnsNull() {
+        // 缺少 3 -> 4
+        Migration[] migrations = {M_1_2, M_2_3, M_4_5};
+
+        assertNull(Migration.findPath(migrations, 1, 5));
+        assertNull(Migration.findPath(migrations, 3, 5));
+        assertEquals(Arrays.asList(M_1_2, M_2_3), Migration.findPath(migrations, 1, 3));
+        assertEquals(Collections.singletonList(M_4_5), Migration.findPath(migrations, 4, 5));
+    }
+
+    @Test
+    public void findPath_missingFirstStepReturnsNull() {
+        assertNull(Migration.findPath(new Migration[]{M_2_3}, 1, 3));
+        assertNull(Migration.findPath(new Migration[0], 1, 2));
+    }
+
+    @Test
+    public void findPath_appMigrationsReachCurrentVersion() {
+        for (int from = 1; from < SqlDataBaseHelper.DATABASE_VERSION; from++) {
+            List<Migration> path = Migration.findPath(SqlDataBaseHelper.MIGRATIONS, from,
+                    SqlDataBaseHelper.DATABASE_VERSION);
+            assertEquals(SqlDataBaseHelper.DATABASE_VERSION - from, path.size());
+        }
+    }
+
+    private static class TestMigration extends Migration {
+        TestMigration(int startVersion, int endVersion) {
+            super(startVersion, endVersion);
+        }
+
+        @Override
+        public void migrate(SQLiteDatabase db) {
+        }
+
+        @Override
+        public String toString() {
+            return startVersion + " -> " + endVersion;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.lvfq.code.designpatterns.imageload;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ImageScheduler 暂停期间任务留在队列中：恢复后后进先出，超出上限时丢弃最早的
+ */
+public class ImageSchedulerTest {
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+    private ImageScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new ImageScheduler(1, 1, 2);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void pausedTasks_runNewestFirstAfterResume() throws InterruptedException {
+        scheduler.pause();
+        CountDownLatch latch = new CountDownLatch(2);
+        scheduler.submitNetwork(record("a", latch));
+        scheduler.submitNetwork(record("b", latch));
+
+        Thread.sleep(100);
+        assertEquals(Collections.<String>emptyList(), executed);
+
+        scheduler.resume();
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("b", "a"), executed);
+    }
+
+    @Test
+    public void pausedTasks_overQueueSizeDropEldest() throws InterruptedException {
+        scheduler.pause();
+        CountDownLatch latch = new CountDownLatch(2);
+        // 第一个任务也在队列中，没有被线程提前取走
+        Future<?> eldest = scheduler.submitNetwork(record("a", latch));
+        scheduler.submitNetwork(record("b", latch));
+        scheduler.submitNetwork(record("c", latch));
+
+        assertTrue(eldest.isCancelled());
+        assertEquals(1, scheduler.getDroppedCount());
+
+        scheduler.resume();
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("c", "b"), executed);
+    }
+
+    private Runnable record(final String name, final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                executed.add(name);
+                latch.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.lvfq.code.designpatterns.imageload;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SizeBucketPool 的分桶选择和容量限制
+ */
+public class SizeBucketPoolTest {
+
+    private final List<byte[]> evicted = new ArrayList<>();
+    private SizeBucketPool<byte[]> pool;
+
+    @Before
+    public void setUp() {
+        pool = new SizeBucketPool<>(1000, new SizeBucketPool.Adapter<byte[]>() {
+            @Override
+            public int sizeOf(byte[] item) {
+                return item.length;
+            }
+
+            @Override
+            public void onEvicted(byte[] item) {
+                evicted.add(item);
+            }
+        });
+    }
+
+    @Test
+    public void get_returnsSmallestBucketNotSmallerThanRequest() {
+        byte[] small = new byte[100];
+        byte[] medium = new byte[200];
+        byte[] large = new byte[400];
+        pool.put(large);
+        pool.put(small);
+        pool.put(medium);
+
+        assertSame(medium, pool.get(150));
+        assertSame(small, pool.get(100));
+        assertSame(large, pool.get(101));
+        assertEquals(0, pool.size());
+        assertEquals(3, pool.hitCount());
+    }
+
+    @Test
+    public void get_missesWhenOnlyMuchLargerItemsArePooled() {
+        byte[] large = new byte[400];
+        pool.put(large);
+
+        // 400 > 99 * MAX_SIZE_MULTIPLE
+        assertNull(pool.get(99));
+        assertEquals(1, pool.missCount());
+        // 400 == 100 * MAX_SIZE_MULTIPLE 仍然可以复用
+        assertSame(large, pool.get(100));
+    }
+
+    @Test
+    public void get_missesWhenNothingIsLargeEnough() {
+        pool.put(new byte[100]);
+
+        assertNull(pool.get(101));
+        assertEquals(100, pool.size());
+    }
+
+    @Test
+    public void get_sameSizeIsFirstInFirstOut() {
+        byte[] first = new byte[100];
+        byte[] second = new byte[100];
+        pool.put(first);
+        pool.put(second);
+
+        assertSame(first, pool.get(100));
+        assertSame(second, pool.get(100));
+    }
+
+    @Test
+    public void put_evictsEldestWhenOverMaxSize() {
+        byte[] a = new byte[400];
+        byte[] b = new byte[400];
+        byte[] c = new byte[300];
+        pool.put(a);
+        pool.put(b);
+        pool.put(c);
+
+        assertEquals(1, evicted.size());
+        assertSame(a, evicted.get(0));
+        assertEquals(700, pool.size());
+        assertEquals(1, pool.evictionCount());
+        assertSame(b, pool.get(400));
+    }
+
+    @Test
+    public void put_rejectsItemLargerThanMaxSize() {
+        assertFalse(pool.put(new byte[1001]));
+        assertFalse(pool.put(new byte[0]));
+        assertTrue(pool.put(new byte[1000]));
+        assertEquals(1000, pool.size());
+        assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    public void trimToSize_evictsUntilUnderLimit() {
+        pool.put(new byte[100]);
+        pool.put(new byte[200]);
+        pool.put(new byte[300]);
+
+        pool.trimToSize(300);
+
+        assertEquals(300, pool.size());
+        assertEquals(2, evicted.size());
+        pool.clear();
+        assertEquals(0, pool.size());
+        assertEquals(3, evicted.size());
+    }
+}
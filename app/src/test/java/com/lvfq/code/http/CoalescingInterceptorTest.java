@@ -0,0 +1,303 @@
+package com.lvfq.code.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * CoalescingInterceptor 的合并、流式共享、请求头区分和取消，服务器由 MockWebServer 模拟
+ */
+public class CoalescingInterceptorTest {
+
+    private final MockWebServer server = new MockWebServer();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final GatedDispatcher dispatcher = new GatedDispatcher();
+    private CoalescingInterceptor interceptor;
+    private OkHttpClient client;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        server.setDispatcher(dispatcher);
+        server.start();
+        url = server.url("/front/server").toString();
+        interceptor = new CoalescingInterceptor();
+        client = new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        dispatcher.gate.countDown();
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void concurrentIdenticalGets_shareOneResponse() throws Exception {
+        dispatcher.enqueueGated(new MockResponse().setBody("A"));
+
+        Future<String> leader = executor.submit(get(new Request.Builder().url(url).build()));
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        Future<String> follower = executor.submit(get(new Request.Builder().url(url).build()));
+        Thread.sleep(100);
+        dispatcher.gate.countDown();
+
+        assertEquals("A", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("A", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, interceptor.getSavedCount(url));
+    }
+
+    @Test
+    public void differentHeaders_areNotCoalesced() throws Exception {
+        dispatcher.enqueueGated(new MockResponse().setBody("A"));
+        dispatcher.enqueue(new MockResponse().setBody("B"));
+
+        Future<String> first = executor.submit(get(new Request.Builder().url(url)
+                .header("Authorization", "user-a").build()));
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        Future<String> second = executor.submit(get(new Request.Builder().url(url)
+                .header("Authorization", "user-b").build()));
+
+        assertEquals("B", second.get(5, TimeUnit.SECONDS));
+        dispatcher.gate.countDown();
+        assertEquals("A", first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, interceptor.getSavedCount(url));
+    }
+
+    @Test
+    public void leaderBody_isStreamedNotBuffered() throws Exception {
+        // 64 KB，每 100ms 发送 8 KB，全部发完约 800ms
+        dispatcher.enqueue(new MockResponse().setBody(new Buffer().write(new byte[64 * 1024]))
+                .throttleBody(8 * 1024, 100, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+        InputStream in = response.body().byteStream();
+        assertTrue(in.read() != -1);
+        long firstByteMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        response.close();
+
+        assertTrue("first byte after " + firstByteMillis + "ms", firstByteMillis < 400);
+    }
+
+    @Test
+    public void follower_readsWhileLeaderIsStreaming() throws Exception {
+        byte[] body = new byte[64 * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        dispatcher.enqueue(new MockResponse().setBody(new Buffer().write(body))
+                .throttleBody(8 * 1024, 100, TimeUnit.MILLISECONDS));
+
+        Response leader = client.newCall(new Request.Builder().url(url).build()).execute();
+        Future<byte[]> follower = executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+                try {
+                    return response.body().bytes();
+                } finally {
+                    response.close();
+                }
+            }
+        });
+        // 等第二个请求加入后再开始读，开始读时没有等待请求就不会复制
+        Thread.sleep(100);
+        byte[] leaderBytes = leader.body().bytes();
+
+        assertEquals(new Buffer().write(body).sha1(), new Buffer().write(leaderBytes).sha1());
+        assertEquals(new Buffer().write(body).sha1(), new Buffer().write(follower.get(5, TimeUnit.SECONDS)).sha1());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void requestAfterLeaderStartedReading_isNotCoalesced() throws Exception {
+        dispatcher.enqueue(new MockResponse().setBody(new Buffer().write(new byte[64 * 1024]))
+                .throttleBody(8 * 1024, 100, TimeUnit.MILLISECONDS));
+        dispatcher.enqueue(new MockResponse().setBody("B"));
+
+        Response leader = client.newCall(new Request.Builder().url(url).build()).execute();
+        assertTrue(leader.body().byteStream().read() != -1);
+
+        assertEquals("B", get(new Request.Builder().url(url).build()).call());
+        leader.close();
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, interceptor.getSavedCount(url));
+    }
+
+    @Test
+    public void leaderCanceled_followerIssuesOwnRequest() throws Exception {
+        dispatcher.enqueueGated(new MockResponse().setBody("A"));
+        dispatcher.enqueue(new MockResponse().setBody("B"));
+
+        final Call leaderCall = client.newCall(new Request.Builder().url(url).build());
+        Future<String> leader = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return leaderCall.execute().body().string();
+            }
+        });
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        Future<String> follower = executor.submit(get(new Request.Builder().url(url).build()));
+        Thread.sleep(100);
+        leaderCall.cancel();
+
+        assertEquals("B", follower.get(5, TimeUnit.SECONDS));
+        try {
+            leader.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (java.util.concurrent.ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, interceptor.getSavedCount(url));
+    }
+
+    @Test
+    public void leaderClosedEarly_followerIssuesOwnRequest() throws Exception {
+        dispatcher.enqueueGated(new MockResponse().setBody("A"));
+        dispatcher.enqueue(new MockResponse().setBody("B"));
+
+        Future<Response> leader = executor.submit(new Callable<Response>() {
+            @Override
+            public Response call() throws Exception {
+                return client.newCall(new Request.Builder().url(url).build()).execute();
+            }
+        });
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        Future<String> follower = executor.submit(get(new Request.Builder().url(url).build()));
+        Thread.sleep(100);
+        dispatcher.gate.countDown();
+        // 第一个请求拿到响应头后不读响应体就关闭，第二个请求还没有读到数据
+        leader.get(5, TimeUnit.SECONDS).close();
+
+        assertEquals("B", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void follower_honorsCancel() throws Exception {
+        dispatcher.enqueueGated(new MockResponse().setBody("A"));
+
+        Future<String> leader = executor.submit(get(new Request.Builder().url(url).build()));
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        final Call call = client.newCall(new Request.Builder().url(url).build());
+        Future<String> follower = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Response response = call.execute();
+                try {
+                    return response.body().string();
+                } finally {
+                    response.close();
+                }
+            }
+        });
+        Thread.sleep(100);
+        long start = System.nanoTime();
+        call.cancel();
+        try {
+            follower.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (java.util.concurrent.ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        dispatcher.gate.countDown();
+        assertEquals("A", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void follower_issuesOwnRequestAfterTimeout() throws Exception {
+        client = new OkHttpClient.Builder()
+                .addInterceptor(interceptor)
+                .connectTimeout(100, TimeUnit.MILLISECONDS)
+                .writeTimeout(100, TimeUnit.MILLISECONDS)
+                .readTimeout(100, TimeUnit.MILLISECONDS)
+                .build();
+        // 第一个请求的响应头一直不返回，第二个请求等过三个超时之和后自己重新发出
+        dispatcher.enqueueGated(new MockResponse().setBody("A"));
+        dispatcher.enqueue(new MockResponse().setBody("B"));
+
+        OkHttpClient slowClient = client.newBuilder().readTimeout(5, TimeUnit.SECONDS).build();
+        Future<String> leader = executor.submit(get(slowClient, new Request.Builder().url(url).build()));
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+
+        assertEquals("B", get(new Request.Builder().url(url).build()).call());
+        dispatcher.gate.countDown();
+        assertEquals("A", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    private Callable<String> get(Request request) {
+        return get(client, request);
+    }
+
+    private static Callable<String> get(final OkHttpClient client, final Request request) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Response response = client.newCall(request).execute();
+                try {
+                    return response.body().string();
+                } finally {
+                    response.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * 按顺序返回响应，enqueueGated 的响应要等 gate 打开后才返回，用来模拟迟迟不返回响应头的服务器
+     */
+    private static class GatedDispatcher extends Dispatcher {
+        final CountDownLatch gate = new CountDownLatch(1);
+        private final BlockingQueue<MockResponse> responses = new LinkedBlockingQueue<>();
+        private final BlockingQueue<MockResponse> gated = new LinkedBlockingQueue<>();
+
+        void enqueue(MockResponse response) {
+            responses.add(response);
+        }
+
+        void enqueueGated(MockResponse response) {
+            gated.add(response);
+            responses.add(response);
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            MockResponse response = responses.take();
+            if (gated.remove(response)) {
+                gate.await();
+            }
+            return response;
+        }
+    }
+}
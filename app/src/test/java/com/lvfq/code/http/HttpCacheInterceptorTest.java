@@ -0,0 +1,156 @@
+package com.lvfq.code.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * HttpCacheInterceptor 的 maxAge / staleWhileRevalidate / staleIfError，服务器由 MockWebServer 模拟
+ */
+public class HttpCacheInterceptorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private Cache cache;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+        cache = new Cache(folder.newFolder("http"), 1024 * 1024);
+        url = server.url("/front/server").toString();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void maxAge_appliedWhenServerSendsNoCacheHeaders() throws IOException {
+        server.enqueue(new MockResponse().setBody("A"));
+        HttpCacheInterceptor interceptor = new HttpCacheInterceptor().policy(url, 60, 0, 0);
+        OkHttpClient client = interceptor.install(newBuilder());
+
+        assertEquals("A", get(client));
+        assertEquals("A", get(client));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, interceptor.getPolicy(url).hitCount.get());
+    }
+
+    @Test
+    public void maxAge_neverOverridesNoStore() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setBody("A"));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "no-store").setBody("B"));
+        OkHttpClient client = new HttpCacheInterceptor().policy(url, 60, 0, 0).install(newBuilder());
+
+        assertEquals("A", get(client));
+        assertEquals("B", get(client));
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void maxAge_keepsServerCacheControl() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "private, max-age=0").setBody("A"));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "private, max-age=0").setBody("B"));
+        OkHttpClient client = new HttpCacheInterceptor().policy(url, 60, 0, 0).install(newBuilder());
+
+        assertEquals("A", get(client));
+        Response second = client.newCall(new Request.Builder().url(url).build()).execute();
+        assertEquals("B", second.body().string());
+
+        assertEquals("private, max-age=0", second.header("Cache-Control"));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void maxAge_keepsServerExpires() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Expires", "Thu, 01 Jan 1970 00:00:00 GMT").setBody("A"));
+        server.enqueue(new MockResponse().setBody("B"));
+        OkHttpClient client = new HttpCacheInterceptor().policy(url, 60, 0, 0).install(newBuilder());
+
+        assertEquals("A", get(client));
+        assertEquals("B", get(client));
+    }
+
+    @Test
+    public void staleWhileRevalidate_returnsStaleAndRefreshesInBackground() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=0").setBody("A"));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=0").setBody("B"));
+        HttpCacheInterceptor interceptor = new HttpCacheInterceptor().policy(url, 60, 600, 0);
+        OkHttpClient client = interceptor.install(newBuilder());
+
+        assertEquals("A", get(client));
+        Response stale = client.newCall(new Request.Builder().url(url).build()).execute();
+        assertEquals("A", stale.body().string());
+        assertNull(stale.networkResponse());
+
+        // 后台更新，等新的响应写入缓存
+        server.takeRequest();
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.writeSuccessCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, cache.writeSuccessCount());
+        assertEquals(1, interceptor.getPolicy(url).staleCount.get());
+    }
+
+    @Test
+    public void staleIfError_returnsCacheWhenServerFails() throws IOException {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=0").setBody("A"));
+        server.enqueue(new MockResponse().setResponseCode(500).setBody("error"));
+        HttpCacheInterceptor interceptor = new HttpCacheInterceptor().policy(url, 60, 0, 24 * 60 * 60);
+        OkHttpClient client = interceptor.install(newBuilder());
+
+        assertEquals("A", get(client));
+        assertEquals("A", get(client));
+
+        assertEquals(1, interceptor.getPolicy(url).errorFallbackCount.get());
+    }
+
+    @Test
+    public void staleIfError_passesErrorThroughWithoutCache() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(500).setBody("error"));
+        OkHttpClient client = new HttpCacheInterceptor().policy(url, 60, 0, 24 * 60 * 60).install(newBuilder());
+
+        Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+        assertEquals(500, response.code());
+        response.close();
+    }
+
+    private OkHttpClient.Builder newBuilder() {
+        return new OkHttpClient.Builder().cache(cache);
+    }
+
+    private String get(OkHttpClient client) throws IOException {
+        Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+        try {
+            return response.body().string();
+        } finally {
+            response.close();
+        }
+    }
+}
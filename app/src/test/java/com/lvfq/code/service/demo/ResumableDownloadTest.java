@@ -0,0 +1,198 @@
+package com.lvfq.code.service.demo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * ResumableDownload 的断点续传和完成判断，服务器由支持 Range / If-Range 的 MockWebServer 模拟
+ */
+public class ResumableDownloadTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private byte[] content;
+    private File file;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        // 3 MB，按 MIN_SEGMENT_SIZE 拆成 3 段
+        content = new byte[3 * 1024 * 1024];
+        new Random(1).nextBytes(content);
+        server.setDispatcher(new RangeDispatcher());
+        server.start();
+        url = server.url("/file.apk").toString();
+        file = new File(folder.getRoot(), "file.apk");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void download_writesPartThenRenames() throws IOException {
+        assertEquals(ResumableDownload.TYPE_SUCCESS, run());
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertFalse(SegmentedDownload.getPartFile(file).exists());
+        assertFalse(SegmentedDownload.getSegmentFile(file).exists());
+    }
+
+    @Test
+    public void download_existingFinalFileIsComplete() throws IOException {
+        write(file, content);
+
+        assertEquals(ResumableDownload.TYPE_SUCCESS, run());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void download_preallocatedPartWithoutCheckpointStartsOver() throws IOException, InterruptedException {
+        // 上次预分配了完整长度，只写了一半，.seg 丢失
+        File part = SegmentedDownload.getPartFile(file);
+        RandomAccessFile raf = new RandomAccessFile(part, "rw");
+        raf.setLength(content.length);
+        raf.write(content, 0, content.length / 2);
+        raf.close();
+
+        assertEquals(ResumableDownload.TYPE_SUCCESS, run());
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertEquals("bytes=0-", server.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void download_resumesFromCheckpoint() throws IOException, InterruptedException {
+        int half = content.length / 2;
+        File part = SegmentedDownload.getPartFile(file);
+        RandomAccessFile raf = new RandomAccessFile(part, "rw");
+        raf.setLength(content.length);
+        raf.write(content, 0, half);
+        raf.close();
+        writeCheckpoint(content.length - 1, half);
+
+        assertEquals(ResumableDownload.TYPE_SUCCESS, run());
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        RecordedRequest probe = server.takeRequest();
+        assertEquals("bytes=" + half + "-", probe.getHeader("Range"));
+        assertEquals(ETAG, probe.getHeader("If-Range"));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void download_finishedCheckpointOnlyRenames() throws IOException {
+        write(SegmentedDownload.getPartFile(file), content);
+        writeCheckpoint(content.length - 1, content.length);
+
+        assertEquals(ResumableDownload.TYPE_SUCCESS, run());
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertFalse(SegmentedDownload.getSegmentFile(file).exists());
+    }
+
+    @Test
+    public void download_changedFileStartsOver() throws IOException {
+        File part = SegmentedDownload.getPartFile(file);
+        RandomAccessFile raf = new RandomAccessFile(part, "rw");
+        raf.setLength(content.length);
+        raf.close();
+        // 记录的是旧版本的 ETag，If-Range 不匹配时服务器返回 200 和完整内容
+        FileWriter writer = new FileWriter(SegmentedDownload.getSegmentFile(file));
+        writer.write(content.length + " 1\n\"v0\"\n0 " + (content.length - 1) + " 100\n");
+        writer.close();
+
+        assertEquals(ResumableDownload.TYPE_SUCCESS, run());
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
+
+    private int run() {
+        return new ResumableDownload(new OkHttpClient(), url, file).run(new SegmentedDownload.Callback() {
+            @Override
+            public boolean isCanceled() {
+                return false;
+            }
+
+            @Override
+            public boolean isPaused() {
+                return false;
+            }
+
+            @Override
+            public void onProgress(long downloaded, long contentLength) {
+            }
+        });
+    }
+
+    /**
+     * 一段 [0, end]，已经下载 downloaded 字节
+     */
+    private void writeCheckpoint(long end, long downloaded) throws IOException {
+        FileWriter writer = new FileWriter(SegmentedDownload.getSegmentFile(file));
+        writer.write(content.length + " 1\n" + ETAG + "\n0 " + end + " " + downloaded + "\n");
+        writer.close();
+    }
+
+    private static void write(File target, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(target);
+        out.write(data);
+        out.close();
+    }
+
+    private class RangeDispatcher extends Dispatcher {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String range = request.getHeader("Range");
+            String ifRange = request.getHeader("If-Range");
+            Matcher matcher = range != null ? RANGE.matcher(range) : null;
+            if (matcher == null || !matcher.matches() || (ifRange != null && !ifRange.equals(ETAG))) {
+                return new MockResponse().setResponseCode(200)
+                        .setHeader("ETag", ETAG)
+                        .setHeader("Accept-Ranges", "bytes")
+                        .setBody(new Buffer().write(content));
+            }
+            long from = Long.parseLong(matcher.group(1));
+            long to = matcher.group(2).isEmpty() ? content.length - 1
+                    : Math.min(content.length - 1, Long.parseLong(matcher.group(2)));
+            if (from >= content.length) {
+                return new MockResponse().setResponseCode(416)
+                        .setHeader("Content-Range", "bytes */" + content.length);
+            }
+            return new MockResponse().setResponseCode(206)
+                    .setHeader("ETag", ETAG)
+                    .setHeader("Content-Range", "bytes " + from + "-" + to + "/" + content.length)
+                    .setBody(new Buffer().write(content, (int) from, (int) (to - from + 1)));
+        }
+    }
+}
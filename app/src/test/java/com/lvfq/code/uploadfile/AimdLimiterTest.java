@@ -0,0 +1,86 @@
+package com.lvfq.code.uploadfile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * AimdLimiter 的加性增、乘性减和上下限
+ */
+public class AimdLimiterTest {
+
+    // 1 KB / ms，每次都一样，不会触发拥塞判断
+    private static final long BYTES = 1024;
+    private static final long DURATION_MS = 1;
+
+    @Test
+    public void additiveIncrease_afterLimitSuccesses() {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 6);
+
+        succeed(limiter, 1);
+        assertEquals(2, limiter.getLimit());
+        succeed(limiter, 1);
+        assertEquals(3, limiter.getLimit());
+        // 并发数为 3 时需要再成功 3 次
+        succeed(limiter, 2);
+        assertEquals(3, limiter.getLimit());
+        succeed(limiter, 1);
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void multiplicativeDecrease_onFailure() {
+        AimdLimiter limiter = new AimdLimiter(6, 1, 6);
+
+        limiter.onFailure();
+        assertEquals(3, limiter.getLimit());
+        limiter.onFailure();
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void failure_resetsSuccessCount() {
+        AimdLimiter limiter = new AimdLimiter(4, 1, 6);
+
+        succeed(limiter, 3);
+        limiter.onFailure();
+        assertEquals(2, limiter.getLimit());
+        succeed(limiter, 1);
+        assertEquals(2, limiter.getLimit());
+        succeed(limiter, 1);
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void multiplicativeDecrease_onCongestion() {
+        AimdLimiter limiter = new AimdLimiter(4, 1, 6);
+        succeed(limiter, 2);
+
+        // 吞吐量跌到平均值的一半以下
+        limiter.onSuccess(BYTES, DURATION_MS * 4, 1);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void limit_isClampedToMinAndMax() {
+        assertEquals(1, new AimdLimiter(0, 1, 6).getLimit());
+        assertEquals(6, new AimdLimiter(10, 1, 6).getLimit());
+        // minLimit 最小为 1，maxLimit 不小于 minLimit
+        assertEquals(1, new AimdLimiter(0, 0, 6).getLimit());
+        assertEquals(3, new AimdLimiter(1, 3, 2).getLimit());
+
+        AimdLimiter limiter = new AimdLimiter(6, 2, 6);
+        succeed(limiter, 12);
+        assertEquals(6, limiter.getLimit());
+        limiter.onFailure();
+        limiter.onFailure();
+        limiter.onFailure();
+        assertEquals(2, limiter.getLimit());
+    }
+
+    private static void succeed(AimdLimiter limiter, int times) {
+        for (int i = 0; i < times; i++) {
+            limiter.onSuccess(BYTES, DURATION_MS, 1);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.lvfq.code.uploadfile;
+
+import com.lvfq.code.http.RequestService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+import retrofit2.converter.scalars.ScalarsConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ChunkedUpload 的分块、断点和续传，服务器由 MockWebServer 模拟；以及 ImageCompressor 输出文件的命名
+ */
+public class ChunkedUploadTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private RequestService service;
+    private File file;
+    private File checkpointDir;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+        service = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(ScalarsConverterFactory.create())
+                .build()
+                .create(RequestService.class);
+        // 2.5 块
+        byte[] content = new byte[CHUNK_SIZE * 5 / 2];
+        new Random(1).nextBytes(content);
+        file = folder.newFile("photo.jpg");
+        FileOutputStream os = new FileOutputStream(file);
+        os.write(content);
+        os.close();
+        checkpointDir = new File(folder.getRoot(), "upload");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void run_uploadsEveryChunkWithContentRange() throws Exception {
+        enqueueOk(3);
+
+        ChunkedUpload upload = new ChunkedUpload(service, file, checkpointDir, CHUNK_SIZE);
+        assertEquals(ChunkedUpload.TYPE_SUCCESS, upload.run(new TestCallback()));
+
+        assertEquals(Arrays.asList("bytes 0-1023/2560", "bytes 1024-2047/2560", "bytes 2048-2559/2560"),
+                takeContentRanges(3));
+        assertFalse(checkpointFile(upload).exists());
+    }
+
+    @Test
+    public void pausedUpload_resumesWithoutResendingFinishedChunks() throws Exception {
+        enqueueOk(1);
+
+        // 第一块写完后暂停，第一块仍然完成，第二块不再发出
+        TestCallback pausing = new TestCallback();
+        pausing.pauseAfter = CHUNK_SIZE;
+        ChunkedUpload first = new ChunkedUpload(service, file, checkpointDir, CHUNK_SIZE);
+        assertEquals(ChunkedUpload.TYPE_PAUSED, first.run(pausing));
+        assertEquals(Arrays.asList("bytes 0-1023/2560"), takeContentRanges(1));
+
+        // 进程被杀后重新创建，从断点文件恢复
+        ChunkedUpload second = new ChunkedUpload(service, file, checkpointDir, CHUNK_SIZE);
+        assertEquals(first.getUploadId(), second.getUploadId());
+        assertEquals(Arrays.asList(1, 2), second.pendingChunks());
+        assertEquals(CHUNK_SIZE, second.getUploadedSize());
+
+        enqueueOk(2);
+        TestCallback callback = new TestCallback();
+        assertEquals(ChunkedUpload.TYPE_SUCCESS, second.run(callback));
+        assertEquals(Arrays.asList("bytes 1024-2047/2560", "bytes 2048-2559/2560"), takeContentRanges(2));
+        assertEquals(file.length(), callback.uploaded);
+        assertEquals(3, server.getRequestCount());
+        assertFalse(checkpointFile(second).exists());
+    }
+
+    @Test
+    public void canceledUpload_sendsNothing() throws Exception {
+        ChunkedUpload upload = new ChunkedUpload(service, file, checkpointDir, CHUNK_SIZE);
+        TestCallback callback = new TestCallback();
+        callback.canceled = true;
+
+        assertEquals(ChunkedUpload.TYPE_CANCELED, upload.run(callback));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void chunkFinishedAfterDiscard_doesNotRewriteCheckpoint() {
+        ChunkedUpload upload = new ChunkedUpload(service, file, checkpointDir, CHUNK_SIZE);
+        upload.discard();
+
+        // 取消前发出的块在取消后才结束
+        upload.markDone(0);
+        assertFalse(checkpointFile(upload).exists());
+        assertEquals(0, upload.getUploadedSize());
+        assertEquals(Arrays.asList(0, 1, 2), new ChunkedUpload(service, file, checkpointDir, CHUNK_SIZE).pendingChunks());
+    }
+
+    @Test
+    public void compressedFileName_dependsOnFullPath() throws IOException {
+        File outDir = folder.newFolder("upload_compress");
+        File a = new File(folder.newFolder("a"), "IMG_0001.jpg");
+        File b = new File(folder.newFolder("b"), "IMG_0001.jpg");
+        assertTrue(a.createNewFile() && b.createNewFile());
+
+        assertNotEquals(ImageCompressor.outputFileOf(a, outDir, 1920, 85),
+                ImageCompressor.outputFileOf(b, outDir, 1920, 85));
+        assertEquals(ImageCompressor.outputFileOf(a, outDir, 1920, 85),
+                ImageCompressor.outputFileOf(a, outDir, 1920, 85));
+        assertNotEquals(ImageCompressor.outputFileOf(a, outDir, 1920, 85),
+                ImageCompressor.outputFileOf(a, outDir, 1080, 85));
+    }
+
+    @Test
+    public void delete_removesCompressedFile() throws IOException {
+        File outDir = folder.newFolder("upload_compress");
+        File out = ImageCompressor.outputFileOf(file, outDir, 1920, 85);
+        assertTrue(out.createNewFile());
+
+        ImageCompressor.delete(file, outDir, 1920, 85);
+        assertFalse(out.exists());
+    }
+
+    private void enqueueOk(int count) {
+        for (int i = 0; i < count; i++) {
+            server.enqueue(new MockResponse().setBody("ok"));
+        }
+    }
+
+    private List<String> takeContentRanges(int count) throws InterruptedException {
+        List<String> ranges = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RecordedRequest request = server.takeRequest();
+            ranges.add(request.getHeader("Content-Range"));
+        }
+        return ranges;
+    }
+
+    private File checkpointFile(ChunkedUpload upload) {
+        return new File(checkpointDir, upload.getUploadId() + ChunkedUpload.CHECKPOINT_SUFFIX);
+    }
+
+    private static class TestCallback implements ChunkedUpload.Callback {
+        boolean canceled;
+        // 已上传的字节数达到这个值后暂停
+        long pauseAfter = Long.MAX_VALUE;
+        long uploaded;
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @Override
+        public boolean isPaused() {
+            return uploaded >= pauseAfter;
+        }
+
+        @Override
+        public void onProgress(long uploaded, long total) {
+            this.uploaded = uploaded;
+        }
+    }
+}
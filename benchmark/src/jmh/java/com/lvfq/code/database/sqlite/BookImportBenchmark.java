@@ -0,0 +1,123 @@
+package com.lvfq.code.database.sqlite;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookImportBenchmark
+ *
+ * @date 2026/10/17
+ * @desc : 导入 10000 行 Book 的耗时，SQLite 通过 sqlite-jdbc 在 JVM 上运行。
+ * <p>
+ * row：和原来的 addBook 一样，每行单独编译 insert、自动提交（每行一个事务）；
+ * batch：和 BookDao.insertAll 一样，一条预编译语句重复绑定，整批一个事务。
+ * journal 对比默认的 DELETE 和 BookDao 使用的 WAL。
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class BookImportBenchmark {
+
+    private static final int ROW_COUNT = 10000;
+
+    @Param({"row", "batch"})
+    public String mode;
+
+    @Param({"DELETE", "WAL"})
+    public String journal;
+
+    private File dbFile;
+    private Connection connection;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException, SQLException {
+        dbFile = File.createTempFile("book", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getPath());
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("pragma journal_mode = " + journal);
+            // 和 Android 默认一致：DELETE 模式 FULL，WAL 模式 NORMAL
+            statement.execute("pragma synchronous = " + ("WAL".equals(journal) ? "NORMAL" : "FULL"));
+            statement.execute("create table Book (id integer primary key autoincrement, author text, price real, pages integer, name text)");
+        } finally {
+            statement.close();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws SQLException {
+        connection.close();
+        dbFile.delete();
+        new File(dbFile.getPath() + "-wal").delete();
+        new File(dbFile.getPath() + "-shm").delete();
+    }
+
+    @Benchmark
+    public int importBooks() throws SQLException {
+        return "batch".equals(mode) ? insertBatch() : insertRowByRow();
+    }
+
+    private int insertRowByRow() throws SQLException {
+        for (int i = 0; i < ROW_COUNT; i++) {
+            PreparedStatement statement = connection.prepareStatement(
+                    "insert into Book (name, author, price, pages) values (?, ?, ?, ?)");
+            try {
+                bind(statement, i);
+                statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        }
+        return ROW_COUNT;
+    }
+
+    private int insertBatch() throws SQLException {
+        connection.setAutoCommit(false);
+        PreparedStatement statement = connection.prepareStatement(
+                "insert into Book (name, author, price, pages) values (?, ?, ?, ?)");
+        try {
+            for (int i = 0; i < ROW_COUNT; i++) {
+                bind(statement, i);
+                statement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            statement.close();
+            connection.setAutoCommit(true);
+        }
+        return ROW_COUNT;
+    }
+
+    private static void bind(PreparedStatement statement, int i) throws SQLException {
+        statement.clearParameters();
+        statement.setString(1, "book " + i);
+        statement.setString(2, "author " + (i % 100));
+        statement.setDouble(3, 10 + i % 90);
+        statement.setInt(4, 100 + i % 900);
+    }
+}
@@ -0,0 +1,50 @@
+package com.lvfq.code.designpatterns.imageload;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheKeyBenchmark
+ *
+ * @date 2026/10/17
+ * @desc : DiskCache 的 url -> 文件名 哈希耗时，String.hashCode 作为下限参考
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheKeyBenchmark {
+
+    @Param({"32", "128", "512"})
+    public int urlLength;
+
+    private String url;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder("http://img.example.com/");
+        while (sb.length() < urlLength) {
+            sb.append((char) ('a' + sb.length() % 26));
+        }
+        url = sb.substring(0, urlLength);
+    }
+
+    @Benchmark
+    public String md5Key() {
+        return DiskCache.hashKey(url);
+    }
+
+    @Benchmark
+    public int stringHashCode() {
+        // String 会缓存 hash，每次新建一个避免只测到缓存
+        return new String(url).hashCode();
+    }
+}
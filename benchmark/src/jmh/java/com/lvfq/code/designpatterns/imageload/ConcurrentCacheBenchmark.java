@@ -0,0 +1,102 @@
+package com.lvfq.code.designpatterns.imageload;
+
+import android.graphics.Bitmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConcurrentCacheBenchmark
+ *
+ * @date 2026/10/17
+ * @desc : 多线程同时 get / put，key 的数量远大于缓存容量，持续触发淘汰（MemoryCache -> BitmapPool）。
+ * 堆大小固定为 256M（见 build.gradle），MemoryCache 约 64M，每张图 64K，约 1000 张。
+ */
+
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConcurrentCacheBenchmark {
+
+    private static final int KEY_COUNT = 4096;
+    // 128 * 128 * 4 = 64K
+    private static final int BITMAP_SIZE = 128;
+
+    private MemoryCache memoryCache;
+    private SizeBucketPool<byte[]> pool;
+    private String[] urls;
+
+    @Setup
+    public void setUp() {
+        memoryCache = new MemoryCache();
+        pool = new SizeBucketPool<>(16 * 1024 * 1024, new SizeBucketPool.Adapter<byte[]>() {
+            @Override
+            public int sizeOf(byte[] item) {
+                return item.length;
+            }
+
+            @Override
+            public void onEvicted(byte[] item) {
+            }
+        });
+        urls = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            urls[i] = "http://img.example.com/feed/" + i + ".jpg";
+        }
+    }
+
+    private String randomUrl() {
+        return urls[ThreadLocalRandom.current().nextInt(KEY_COUNT)];
+    }
+
+    @Benchmark
+    @Group("memoryCache")
+    @GroupThreads(3)
+    public Bitmap memoryGet() {
+        return memoryCache.get(randomUrl());
+    }
+
+    @Benchmark
+    @Group("memoryCache")
+    @GroupThreads(1)
+    public void memoryPut() {
+        // 优先从复用池取，模拟 inBitmap 解码
+        Bitmap bitmap = BitmapPool.getInstance().get(BITMAP_SIZE, BITMAP_SIZE, Bitmap.Config.ARGB_8888);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(BITMAP_SIZE, BITMAP_SIZE, Bitmap.Config.ARGB_8888);
+        }
+        memoryCache.put(randomUrl(), bitmap);
+    }
+
+    @Benchmark
+    @Group("bucketPool")
+    @GroupThreads(2)
+    public byte[] poolGet() {
+        return pool.get(sizeFor(ThreadLocalRandom.current().nextInt(4)));
+    }
+
+    @Benchmark
+    @Group("bucketPool")
+    @GroupThreads(2)
+    public boolean poolPut() {
+        return pool.put(new byte[sizeFor(ThreadLocalRandom.current().nextInt(4))]);
+    }
+
+    /**
+     * 4 种常见缩略图尺寸
+     */
+    private static int sizeFor(int bucket) {
+        int side = 96 << bucket;
+        return side * side;
+    }
+}
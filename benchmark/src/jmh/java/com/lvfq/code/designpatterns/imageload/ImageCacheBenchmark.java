@@ -0,0 +1,99 @@
+package com.lvfq.code.designpatterns.imageload;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImageCacheBenchmark
+ *
+ * @date 2026/10/17
+ * @desc : 单线程下三种 ImageCache 的 get / put 吞吐量，Bitmap 为 byte[] 替身，不包含真实编解码耗时
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ImageCacheBenchmark {
+
+    private static final int KEY_COUNT = 256;
+    // 64 * 64 * 4 = 16K
+    private static final int BITMAP_SIZE = 64;
+
+    @Param({"memory", "disk", "double"})
+    public String cacheType;
+
+    private ImageCache cache;
+    private File cacheDir;
+    private String[] urls;
+    private Bitmap bitmap;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        cacheDir = Files.createTempDirectory("image-cache-bench").toFile();
+        if ("memory".equals(cacheType)) {
+            cache = new MemoryCache();
+        } else if ("disk".equals(cacheType)) {
+            cache = new DiskCache(new File(cacheDir, DiskCache.CACHE_DIR_NAME), DiskCache.DEFAULT_MAX_SIZE);
+        } else {
+            cache = new DoubleCache(new Context(cacheDir));
+        }
+        urls = new String[KEY_COUNT];
+        bitmap = Bitmap.createBitmap(BITMAP_SIZE, BITMAP_SIZE, Bitmap.Config.ARGB_8888);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            urls[i] = "http://img.example.com/feed/" + i + "/thumbnail.jpg?w=240&h=240";
+            cache.put(urls[i], bitmap);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteAll(cacheDir);
+    }
+
+    private String nextUrl() {
+        index = (index + 1) & (KEY_COUNT - 1);
+        return urls[index];
+    }
+
+    @Benchmark
+    public Bitmap getHit() {
+        return cache.get(nextUrl());
+    }
+
+    @Benchmark
+    public Bitmap getMiss() {
+        return cache.get("http://img.example.com/miss/" + index++);
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(nextUrl(), bitmap);
+    }
+
+    private static void deleteAll(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,226 @@
+package com.lvfq.code.uploadfile;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * UploadConcurrencyBenchmark
+ *
+ * @date 2026/10/17
+ * @desc : 一批块上传完成的总耗时，对比 串行 / 固定 8 并发 / AimdLimiter 动态并发。
+ * <p>
+ * 本地 HttpServer 模拟上行链路：每个请求先等待 latencyMs（往返延迟），再按所有请求共享的带宽接收数据，
+ * 同时处理的请求超过 SERVER_CAPACITY 时直接返回 503，客户端退避后重试。
+ * 和 UploadManager 一样，失败的块重新排队，AIMD 的成功 / 失败都反馈给 AimdLimiter。
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UploadConcurrencyBenchmark {
+
+    private static final int CHUNK_COUNT = 32;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // 上行带宽 8MB/s
+    private static final long BANDWIDTH_BYTES_PER_MS = 8 * 1024;
+    private static final int SERVER_CAPACITY = 4;
+    private static final int MAX_THREADS = 8;
+    private static final long RETRY_DELAY_MS = 20;
+
+    @Param({"0", "50", "200"})
+    public int latencyMs;
+
+    @Param({"1", "8", "aimd"})
+    public String strategy;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ExecutorService clientExecutor;
+    private URL url;
+    private byte[] chunk;
+    private final AtomicInteger active = new AtomicInteger();
+    // 链路下一次空闲的时间，所有请求按顺序占用带宽
+    private long linkFreeAt;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleUpload(exchange);
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/upload");
+        clientExecutor = Executors.newFixedThreadPool(MAX_THREADS);
+        chunk = new byte[CHUNK_SIZE];
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        clientExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int uploadBatch() throws InterruptedException {
+        final Dispatcher dispatcher = new Dispatcher(strategy);
+        final CountDownLatch done = new CountDownLatch(CHUNK_COUNT);
+        final AtomicInteger retries = new AtomicInteger();
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            clientExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            int concurrency = dispatcher.acquire();
+                            long start = System.currentTimeMillis();
+                            boolean success = post();
+                            dispatcher.release(success, System.currentTimeMillis() - start, concurrency);
+                            if (success) {
+                                break;
+                            }
+                            retries.incrementAndGet();
+                            Thread.sleep(RETRY_DELAY_MS);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        done.await();
+        return retries.get();
+    }
+
+    private boolean post() {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setFixedLengthStreamingMode(chunk.length);
+            OutputStream out = connection.getOutputStream();
+            out.write(chunk);
+            out.close();
+            int code = connection.getResponseCode();
+            InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                // 读完响应，连接才能复用
+                while (in.read() != -1) {
+                }
+                in.close();
+            }
+            return code == 200;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return false;
+        }
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        byte[] buffer = new byte[8 * 1024];
+        int total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+        }
+        int code = 200;
+        if (active.incrementAndGet() > SERVER_CAPACITY) {
+            code = 503;
+        } else {
+            try {
+                Thread.sleep(latencyMs + reserveLink(total));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        active.decrementAndGet();
+        exchange.sendResponseHeaders(code, -1);
+        exchange.close();
+    }
+
+    /**
+     * 占用共享链路传输 bytes 字节，返回需要等待的毫秒数
+     */
+    private synchronized long reserveLink(int bytes) {
+        long now = System.currentTimeMillis();
+        long start = Math.max(now, linkFreeAt);
+        linkFreeAt = start + bytes / BANDWIDTH_BYTES_PER_MS;
+        return linkFreeAt - now;
+    }
+
+    /**
+     * 控制同时发出的请求数，"1" / "8" 固定并发，"aimd" 由 AimdLimiter 决定
+     */
+    private static class Dispatcher {
+        private final AimdLimiter limiter;
+        private final int fixedLimit;
+        private int running;
+
+        Dispatcher(String strategy) {
+            if ("aimd".equals(strategy)) {
+                limiter = new AimdLimiter(2, 1, MAX_THREADS);
+                fixedLimit = 0;
+            } else {
+                limiter = null;
+                fixedLimit = Integer.parseInt(strategy);
+            }
+        }
+
+        synchronized int acquire() throws InterruptedException {
+            while (running >= limit()) {
+                wait();
+            }
+            return ++running;
+        }
+
+        synchronized void release(boolean success, long durationMs, int concurrency) {
+            running--;
+            if (limiter != null) {
+                if (success) {
+                    limiter.onSuccess(CHUNK_SIZE, durationMs, concurrency);
+                } else {
+                    limiter.onFailure();
+                }
+            }
+            notifyAll();
+        }
+
+        private int limit() {
+            return limiter != null ? limiter.getLimit() : fixedLimit;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * JVM 基准测试用的替身，只保留图片缓存用到的部分
+ */
+public class Context {
+
+    private final File cacheDir;
+
+    public Context(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    public File getExternalCacheDir() {
+        return null;
+    }
+}
@@ -0,0 +1,123 @@
+package android.graphics;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * JVM 基准测试用的替身：像素保存在 byte[] 中，compress 直接写出宽高、格式和原始像素，
+ * 用来衡量缓存本身的开销，不包含真实的编解码耗时。
+ */
+public final class Bitmap {
+
+    public enum Config {
+        ALPHA_8(1), RGB_565(2), ARGB_4444(2), ARGB_8888(4);
+
+        final int bytesPerPixel;
+
+        Config(int bytesPerPixel) {
+            this.bytesPerPixel = bytesPerPixel;
+        }
+    }
+
+    public enum CompressFormat {
+        JPEG, PNG, WEBP
+    }
+
+    private int width;
+    private int height;
+    private Config config;
+    private final byte[] pixels;
+    private final boolean mutable;
+    private boolean recycled;
+    private boolean hasAlpha;
+
+    Bitmap(int width, int height, Config config, byte[] pixels, boolean mutable) {
+        this.width = width;
+        this.height = height;
+        this.config = config;
+        this.pixels = pixels;
+        this.mutable = mutable;
+        this.hasAlpha = config != Config.RGB_565;
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height, config, new byte[width * height * config.bytesPerPixel], true);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public int getRowBytes() {
+        return width * config.bytesPerPixel;
+    }
+
+    public int getByteCount() {
+        return getRowBytes() * height;
+    }
+
+    public int getAllocationByteCount() {
+        return pixels.length;
+    }
+
+    public boolean isMutable() {
+        return mutable;
+    }
+
+    public boolean isRecycled() {
+        return recycled;
+    }
+
+    public void recycle() {
+        recycled = true;
+    }
+
+    public boolean hasAlpha() {
+        return hasAlpha;
+    }
+
+    public void setHasAlpha(boolean hasAlpha) {
+        this.hasAlpha = hasAlpha;
+    }
+
+    public void eraseColor(int color) {
+        Arrays.fill(pixels, 0, getByteCount(), (byte) color);
+    }
+
+    public void reconfigure(int width, int height, Config config) {
+        if (width * height * config.bytesPerPixel > pixels.length) {
+            throw new IllegalArgumentException("Bitmap not large enough to support new configuration");
+        }
+        this.width = width;
+        this.height = height;
+        this.config = config;
+    }
+
+    byte[] getPixels() {
+        return pixels;
+    }
+
+    public boolean compress(CompressFormat format, int quality, OutputStream stream) {
+        try {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(config.ordinal());
+            out.write(pixels, 0, getByteCount());
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
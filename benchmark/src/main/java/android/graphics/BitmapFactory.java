@@ -0,0 +1,54 @@
+package android.graphics;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * JVM 基准测试用的替身，读取 {@link Bitmap#compress} 写出的数据
+ */
+public class BitmapFactory {
+
+    public static class Options {
+        public Bitmap inBitmap;
+        public boolean inJustDecodeBounds;
+        public boolean inMutable;
+        public int inSampleSize;
+        public Bitmap.Config inPreferredConfig = Bitmap.Config.ARGB_8888;
+        public int outWidth;
+        public int outHeight;
+        public String outMimeType;
+    }
+
+    public static Bitmap decodeStream(InputStream is) {
+        return decodeStream(is, null, null);
+    }
+
+    public static Bitmap decodeStream(InputStream is, Object outPadding, Options opts) {
+        try {
+            DataInputStream in = new DataInputStream(is);
+            int width = in.readInt();
+            int height = in.readInt();
+            Bitmap.Config config = Bitmap.Config.values()[in.readInt()];
+            if (opts != null) {
+                opts.outWidth = width;
+                opts.outHeight = height;
+                opts.outMimeType = "image/x-raw";
+                if (opts.inJustDecodeBounds) {
+                    return null;
+                }
+            }
+            Bitmap bitmap;
+            if (opts != null && opts.inBitmap != null) {
+                bitmap = opts.inBitmap;
+                bitmap.reconfigure(width, height, config);
+            } else {
+                bitmap = Bitmap.createBitmap(width, height, config);
+            }
+            in.readFully(bitmap.getPixels(), 0, bitmap.getByteCount());
+            return bitmap;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
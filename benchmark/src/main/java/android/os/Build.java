@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * JVM 基准测试用的替身，只保留图片缓存用到的部分
+ */
+public class Build {
+
+    public static class VERSION {
+        public static final int SDK_INT = VERSION_CODES.O;
+    }
+
+    public static class VERSION_CODES {
+        public static final int KITKAT = 19;
+        public static final int O = 26;
+    }
+}
@@ -0,0 +1,131 @@
+package android.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JVM 基准测试用的替身，行为与 android.util.LruCache 一致：
+ * 同步方法、按 sizeOf 计量、超出容量时从最久未使用开始淘汰并回调 entryRemoved
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> map;
+    private int size;
+    private int maxSize;
+
+    private int putCount;
+    private int evictionCount;
+    private int hitCount;
+    private int missCount;
+
+    public LruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<>(0, 0.75f, true);
+    }
+
+    public final V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        synchronized (this) {
+            V value = map.get(key);
+            if (value != null) {
+                hitCount++;
+                return value;
+            }
+            missCount++;
+        }
+        return null;
+    }
+
+    public final V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+        V previous;
+        synchronized (this) {
+            putCount++;
+            size += sizeOf(key, value);
+            previous = map.put(key, value);
+            if (previous != null) {
+                size -= sizeOf(key, previous);
+            }
+        }
+        if (previous != null) {
+            entryRemoved(false, key, previous, value);
+        }
+        trimToSize(maxSize);
+        return previous;
+    }
+
+    public void trimToSize(int maxSize) {
+        while (true) {
+            K key;
+            V value;
+            synchronized (this) {
+                if (size <= maxSize || map.isEmpty()) {
+                    break;
+                }
+                Map.Entry<K, V> toEvict = map.entrySet().iterator().next();
+                key = toEvict.getKey();
+                value = toEvict.getValue();
+                map.remove(key);
+                size -= sizeOf(key, value);
+                evictionCount++;
+            }
+            entryRemoved(true, key, value, null);
+        }
+    }
+
+    public final V remove(K key) {
+        V previous;
+        synchronized (this) {
+            previous = map.remove(key);
+            if (previous != null) {
+                size -= sizeOf(key, previous);
+            }
+        }
+        if (previous != null) {
+            entryRemoved(false, key, previous, null);
+        }
+        return previous;
+    }
+
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+    }
+
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    public final void evictAll() {
+        trimToSize(-1);
+    }
+
+    public synchronized final int size() {
+        return size;
+    }
+
+    public synchronized final int maxSize() {
+        return maxSize;
+    }
+
+    public synchronized final int hitCount() {
+        return hitCount;
+    }
+
+    public synchronized final int missCount() {
+        return missCount;
+    }
+
+    public synchronized final int putCount() {
+        return putCount;
+    }
+
+    public synchronized final int evictionCount() {
+        return evictionCount;
+    }
+}